@@ -3,9 +3,12 @@ package com.libria.domain;
 import com.libria.exception.AccessDeniedException;
 import com.libria.exception.BookAlreadyExistException;
 import com.libria.exception.BookNotFoundException;
+import com.libria.exception.StaleBookException;
 import jakarta.persistence.DiscriminatorValue;
 import jakarta.persistence.Entity;
 
+import java.util.Collection;
+
 @Entity
 @DiscriminatorValue("ADMIN")
 public class Admin extends User {
@@ -59,38 +62,32 @@ public class Admin extends User {
             throw new AccessDeniedException("Action réservée aux administrateurs.");
         }
 
-        Book existing = lib.getBook(isbn);
-        if (existing == null) {
+        if (!lib.containsBook(isbn)) {
             throw new BookNotFoundException("Livre introuvable !");
         }
 
-        // Mise à jour partielle : on ne modifie que les champs fournis
-        if (updated.getTitle() != null && !updated.getTitle().isBlank()) {
-            existing.setTitle(updated.getTitle());
-        }
-        if (updated.getAuthor() != null && !updated.getAuthor().isBlank()) {
-            existing.setAuthor(updated.getAuthor());
-        }
-        if (updated.getGenre() != null && !updated.getGenre().isBlank()) {
-            existing.setGenre(updated.getGenre());
-        }
-        if (updated.getYear() > 0) {
-            existing.setYear(updated.getYear());
-        }
-        if (updated.getPdf() != null && !updated.getPdf().isBlank()) {
-            existing.setPdf(updated.getPdf());
+        // Mise à jour partielle faite par la Library pour garder ses index cohérents
+        lib.updateBook(isbn, updated);
+    }
+
+    /**
+     * Comme updateBookInLibrary, mais refusée (StaleBookException) si le livre n'est plus à
+     * expectedVersion : une modification faite entre-temps par un autre admin n'est pas écrasée.
+     */
+    public void updateBookInLibrary(Library lib, String isbn, Book updated, long expectedVersion)
+            throws BookNotFoundException, AccessDeniedException, StaleBookException {
+        if (lib == null || isbn == null || isbn.isBlank() || updated == null || expectedVersion < 0) {
+            throw new IllegalArgumentException("Paramètres invalides.");
         }
-        if (updated.getCoverImage() != null && !updated.getCoverImage().isBlank()) {
-            existing.setCoverImage(updated.getCoverImage());
+        if (!"ADMIN".equals(this.getRole())) {
+            throw new AccessDeniedException("Action réservée aux administrateurs.");
         }
 
-        if (updated.isAvailable() != existing.isAvailable()) {
-            if (updated.isAvailable()) {
-                existing.setAvailable(true);
-            } else {
-                existing.setUnavailable(false);
-            }
+        if (!lib.containsBook(isbn)) {
+            throw new BookNotFoundException("Livre introuvable !");
         }
+
+        lib.updateBook(isbn, updated, expectedVersion);
     }
 
     public void setBookAvailability(Library lib, String isbn, boolean available)
@@ -102,12 +99,31 @@ public class Admin extends User {
             throw new AccessDeniedException("Action réservée aux administrateurs.");
         }
 
-        Book existing = lib.getBook(isbn);
-        if (existing == null) {
+        if (!lib.containsBook(isbn)) {
             throw new BookNotFoundException("Livre introuvable !");
         }
 
-        if (available) existing.setAvailable(true);
-        else existing.setUnavailable(false);
+        lib.setAvailability(isbn, available);
+    }
+
+    /**
+     * Applique un lot d'ajouts / mises à jour / suppressions en une seule passe.
+     * Les opérations invalides sont refusées une par une (voir BatchResult), pas tout le lot.
+     */
+    public BatchResult applyBatch(Library lib, BookBatch batch) throws AccessDeniedException {
+        if (lib == null || batch == null) {
+            throw new IllegalArgumentException("Library ou lot ne peut pas être null.");
+        }
+        if (!"ADMIN".equals(this.getRole())) {
+            throw new AccessDeniedException("Action réservée aux administrateurs.");
+        }
+        return lib.applyBatch(batch);
+    }
+
+    public BatchResult addBooksToLibrary(Library lib, Collection<Book> books) throws AccessDeniedException {
+        if (books == null) {
+            throw new IllegalArgumentException("Liste de livres null.");
+        }
+        return applyBatch(lib, BookBatch.adding(books));
     }
-}
\ No newline at end of file
+}
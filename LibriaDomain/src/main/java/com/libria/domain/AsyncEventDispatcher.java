@@ -0,0 +1,118 @@
+package com.libria.domain;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Livraison asynchrone : les écrivains déposent les événements dans une file, un thread
+ * dédié les passe au listener par lots.
+ *
+ * Le dépôt se fait sous les verrous de la Library et ne bloque jamais (offer). Débordement :
+ * au-delà de capacity, l'événement est quand même accepté, et l'écrivain attend une fois ses
+ * verrous rendus (awaitCapacity) que la file redescende. Un listener lent ralentit donc les
+ * écritures sans bloquer les autres clés ni faire grossir la mémoire.
+ */
+final class AsyncEventDispatcher implements LibraryListener, EventSubscription {
+
+    private static final AtomicInteger THREADS = new AtomicInteger();
+
+    private final LibraryListener listener;
+    private final BlockingQueue<LibraryEvent> queue;
+    private final int capacity;
+    private final int maxBatch;
+    private final Object room = new Object();
+    private final Thread worker;
+    private final Runnable onClose;
+    private volatile boolean closed;
+
+    AsyncEventDispatcher(LibraryListener listener, int capacity, int maxBatch, Runnable onClose) {
+        if (capacity < 1 || maxBatch < 1) {
+            throw new IllegalArgumentException("Capacité et taille de lot doivent être positives.");
+        }
+        this.listener = listener;
+        this.queue = new LinkedBlockingQueue<>();   // la limite est capacity, appliquée hors verrous
+        this.capacity = capacity;
+        this.maxBatch = maxBatch;
+        this.onClose = onClose;
+        this.worker = new Thread(this::run, "libria-events-" + THREADS.incrementAndGet());
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    @Override
+    public void onEvent(LibraryEvent event) {
+        if (closed) return;
+        queue.offer(event);
+    }
+
+    /**
+     * Attend qu'il y ait de nouveau de la place dans la file. Appelé par l'écrivain après avoir
+     * rendu ses verrous ; ne fait rien depuis le thread de livraison, ni s'il est arrêté.
+     */
+    void awaitCapacity() {
+        if (Thread.currentThread() == worker) return;
+        synchronized (room) {
+            while (queue.size() >= capacity && !closed && worker.isAlive()) {
+                try {
+                    room.wait(50);
+                } catch (InterruptedException e) {
+                    // l'événement est déjà dans la file : on arrête seulement d'attendre
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void run() {
+        List<LibraryEvent> batch = new ArrayList<>(maxBatch);
+        while (!closed || !queue.isEmpty()) {
+            try {
+                LibraryEvent first = queue.poll(50, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                queue.drainTo(batch, maxBatch - 1);
+                synchronized (room) {
+                    room.notifyAll();
+                }
+                listener.onEvents(List.copyOf(batch));
+            } catch (InterruptedException e) {
+                return;
+            } catch (Throwable e) {
+                // même une Error du listener ne doit pas arrêter la livraison des suivants
+                Thread.currentThread().getUncaughtExceptionHandler().uncaughtException(Thread.currentThread(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    @Override
+    public int pending() {
+        return queue.size();
+    }
+
+    /**
+     * Arrête de recevoir, livre ce qui reste dans la file puis arrête le thread. Appelé depuis
+     * le listener lui-même, on n'attend pas : le thread finit la file après son retour.
+     */
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        onClose.run();
+        synchronized (room) {
+            room.notifyAll();
+        }
+        if (Thread.currentThread() == worker) return;
+        try {
+            worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
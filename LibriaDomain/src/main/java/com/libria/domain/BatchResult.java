@@ -0,0 +1,85 @@
+package com.libria.domain;
+
+import java.util.List;
+
+/**
+ * Résultat d'un BookBatch : une entrée par opération, dans l'ordre du lot.
+ * Une opération refusée n'empêche pas les autres d'être appliquées.
+ */
+public final class BatchResult {
+
+    private final List<Item> items;
+    private final int applied;
+
+    BatchResult(List<Item> items) {
+        this.items = List.copyOf(items);
+        int count = 0;
+        for (Item item : items) {
+            if (item.isApplied()) count++;
+        }
+        this.applied = count;
+    }
+
+    public List<Item> getItems() {
+        return items;
+    }
+
+    public int getApplied() {
+        return applied;
+    }
+
+    public int getRejected() {
+        return items.size() - applied;
+    }
+
+    public boolean isComplete() {
+        return applied == items.size();
+    }
+
+    public static final class Item {
+
+        private final int index;
+        private final String isbn;
+        private final String error;
+
+        Item(int index, String isbn, String error) {
+            this.index = index;
+            this.isbn = isbn;
+            this.error = error;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public String getIsbn() {
+            return isbn;
+        }
+
+        public boolean isApplied() {
+            return error == null;
+        }
+
+        /** Motif du refus, null si l'opération a été appliquée. */
+        public String getError() {
+            return error;
+        }
+
+        @Override
+        public String toString() {
+            return "Item{" +
+                    "index=" + index +
+                    ", isbn='" + isbn + '\'' +
+                    ", error='" + error + '\'' +
+                    '}';
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "BatchResult{" +
+                "applied=" + applied +
+                ", rejected=" + getRejected() +
+                '}';
+    }
+}
@@ -3,12 +3,16 @@ import com.libria.exception.pdfBookMissingException;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.PostLoad;
 import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
+import jakarta.persistence.Version;
 
 import java.util.Objects;
 
 @Entity
-@Table(name = "books")
+@Table(name = "books", indexes = @Index(name = "idx_books_year", columnList = "book_year"))
 public class Book {
     @Id
     @Column(name = "isbn", nullable = false, length = 20)
@@ -28,6 +32,20 @@ public class Book {
     @Column(nullable = false)
     private String pdfPath; //url pour le fichier pdf du livre
 
+    // incrémentée à chaque modification : verrou optimiste en base comme dans la Library.
+    // DEFAULT 0 pour les lignes insérées hors JPA ; base existante : META-INF/sql/upgrade.sql
+    @Version
+    @Column(nullable = false, columnDefinition = "BIGINT NOT NULL DEFAULT 0")
+    private long version;
+
+    // formes de recherche (minuscules sans accents), recalculées à chaque changement du champ
+    @Transient
+    private String titleKey;
+    @Transient
+    private String authorKey;
+    @Transient
+    private String genreKey;
+
 
     //il nous faut un constructeur vide, car dans le libriaService, on recup des books dans les requette HTTP, et
     //il faut pouvoir créer un book vide pour le passer en param
@@ -46,11 +64,11 @@ public class Book {
         if (pdfPath == null || pdfPath.isBlank())
             throw new pdfBookMissingException("Le fichier PDF est obligatoire.");
 
-        this.isbn = isbn;
-        this.title = title;
-        this.author = author;
+        this.isbn = Isbn.normalize(isbn);
+        setTitle(title);
+        setAuthor(author);
         this.year = year;
-        this.genre = genre;
+        setGenre(genre);
         this.available = available;
         this.coverPath = coverPath;
         this.pdfPath = pdfPath;
@@ -104,12 +122,18 @@ public class Book {
         return year;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
     public void setTitle(String title) {
         this.title = title;
+        this.titleKey = SearchKey.fold(title);
     }
 
     public void setAuthor(String author) {
         this.author = author;
+        this.authorKey = SearchKey.fold(author);
     }
 
     public void setYear(int year) {
@@ -118,10 +142,75 @@ public class Book {
 
     public void setGenre(String genre) {
         this.genre = genre;
+        this.genreKey = SearchKey.fold(genre);
+    }
+
+    // JPA remplit les champs directement sans passer par les setters
+    @PostLoad
+    void computeSearchKeys() {
+        setTitle(title);
+        setAuthor(author);
+        setGenre(genre);
     }
 
+    // les auteurs/genres se répètent : le catalogue qui garde le livre n'en garde qu'une
+    // instance, forme de recherche comprise
+    void internMetadata(StringDictionary dictionary) {
+        // clés déjà tenues à jour par les setters : les recalculer créerait des copies neuves
+        if (titleKey == null || authorKey == null || genreKey == null) computeSearchKeys();
+        // une valeur déjà en forme de recherche est sa propre clé (même instance) : une seule
+        // recherche, sinon l'économie serait comptée deux fois pour un seul objet
+        String rawAuthor = author, rawGenre = genre;
+        author = dictionary.canonical(author);
+        authorKey = authorKey == rawAuthor ? author : dictionary.canonical(authorKey);
+        genre = dictionary.canonical(genre);
+        genreKey = genreKey == rawGenre ? genre : dictionary.canonical(genreKey);
+    }
+
+    String titleKey() {
+        return titleKey;
+    }
+
+    String authorKey() {
+        return authorKey;
+    }
+
+    String genreKey() {
+        return genreKey;
+    }
+
+    // indulgent (sondes, vues, DTO) : seuls le constructeur et l'ajout au catalogue vérifient la clé
     public void setIsbn(String isbn) {
-        this.isbn = isbn;
+        this.isbn = Isbn.lookupKey(isbn);
+    }
+
+    // un livre chargé par JPA garde la clé telle qu'en base ; la Library la ramène à la forme canonique
+    void canonicalizeIsbn() {
+        this.isbn = Isbn.normalize(isbn);
+    }
+
+    // version relue d'un snapshot ou du journal, jamais dérivée à nouveau
+    void restoreVersion(long version) {
+        this.version = version;
+    }
+
+    // copie avec la version suivante : la Library modifie la copie puis la publie à la place
+    // de l'ancienne, un livre déjà publié n'est jamais modifié en place
+    Book nextVersion() {
+        Book next = new Book();
+        next.isbn = isbn;
+        next.title = title;
+        next.author = author;
+        next.year = year;
+        next.genre = genre;
+        next.available = available;
+        next.coverPath = coverPath;
+        next.pdfPath = pdfPath;
+        next.titleKey = titleKey;
+        next.authorKey = authorKey;
+        next.genreKey = genreKey;
+        next.version = version + 1;
+        return next;
     }
 
 
@@ -134,7 +223,7 @@ public class Book {
 
     @Override
     public int hashCode() {
-        return Objects.hash(isbn);
+        return isbn == null ? 0 : isbn.hashCode();
     }
 
 
@@ -147,6 +236,7 @@ public class Book {
                 ", year=" + year +
                 ", genre='" + genre + '\'' +
                 ", available=" + available +
+                ", version=" + version +
                 '}';
     }
 }
\ No newline at end of file
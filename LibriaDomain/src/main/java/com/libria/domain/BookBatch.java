@@ -0,0 +1,58 @@
+package com.libria.domain;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Lot de mutations du catalogue (ajouts, mises à jour partielles, suppressions), appliqué
+ * d'un bloc par Library.applyBatch dans l'ordre où les opérations ont été ajoutées.
+ */
+public final class BookBatch {
+
+    enum Kind { ADD, UPDATE, REMOVE }
+
+    record Operation(Kind kind, String isbn, Book book) {
+    }
+
+    private final List<Operation> operations = new ArrayList<>();
+
+    public static BookBatch adding(Collection<Book> books) {
+        BookBatch batch = new BookBatch();
+        for (Book book : books) {
+            batch.add(book);
+        }
+        return batch;
+    }
+
+    public BookBatch add(Book book) {
+        operations.add(new Operation(Kind.ADD, book == null ? null : book.getIsbn(), book));
+        return this;
+    }
+
+    public BookBatch update(String isbn, Book updated) {
+        operations.add(new Operation(Kind.UPDATE, isbn, updated));
+        return this;
+    }
+
+    public BookBatch remove(String isbn) {
+        operations.add(new Operation(Kind.REMOVE, isbn, null));
+        return this;
+    }
+
+    public int size() {
+        return operations.size();
+    }
+
+    List<Operation> operations() {
+        return Collections.unmodifiableList(operations);
+    }
+
+    @Override
+    public String toString() {
+        return "BookBatch{" +
+                "operations=" + operations.size() +
+                '}';
+    }
+}
@@ -0,0 +1,134 @@
+package com.libria.domain;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Recherche multi-critères sur une Library (Library.search / Library.explain).
+ * Tous les critères sont optionnels et se combinent en ET :
+ *
+ *   new BookQuery().author("Victor Hugo").years(1850, 1870).available(true).sortBy(Sort.YEAR).limit(10)
+ *
+ * La Library choisit l'index le plus sélectif comme point d'entrée, les autres critères
+ * ne sont que des filtres sur ces candidats.
+ */
+public final class BookQuery {
+
+    public enum Sort {
+        NONE(null),
+        TITLE(Comparator.comparing(Book::titleKey, Comparator.nullsLast(Comparator.naturalOrder()))),
+        AUTHOR(Comparator.comparing(Book::authorKey, Comparator.nullsLast(Comparator.naturalOrder()))),
+        YEAR(Comparator.comparingInt(Book::getYear)),
+        YEAR_DESC(Comparator.comparingInt(Book::getYear).reversed());
+
+        // départage par ISBN pour un ordre stable d'un appel à l'autre
+        private final Comparator<Book> order;
+
+        Sort(Comparator<Book> order) {
+            this.order = order == null ? null : order.thenComparing(Book::getIsbn);
+        }
+
+        Comparator<Book> order() {
+            return order;
+        }
+    }
+
+    private String title;
+    private String genre;
+    private String author;
+    private Integer fromYear;
+    private Integer toYear;
+    private Boolean available;
+    private Sort sort = Sort.NONE;
+    private int limit = Integer.MAX_VALUE;
+
+    /** Titre contenant ce texte (casse et accents ignorés). */
+    public BookQuery titleContains(String title) {
+        this.title = blankToNull(title);
+        return this;
+    }
+
+    public BookQuery genre(String genre) {
+        this.genre = blankToNull(genre);
+        return this;
+    }
+
+    public BookQuery author(String author) {
+        this.author = blankToNull(author);
+        return this;
+    }
+
+    /** Années de publication entre from et to inclus. */
+    public BookQuery years(int from, int to) {
+        if (from > to) throw new IllegalArgumentException("Intervalle d'années invalide.");
+        this.fromYear = from;
+        this.toYear = to;
+        return this;
+    }
+
+    public BookQuery available(boolean available) {
+        this.available = available;
+        return this;
+    }
+
+    public BookQuery sortBy(Sort sort) {
+        this.sort = sort == null ? Sort.NONE : sort;
+        return this;
+    }
+
+    public BookQuery limit(int limit) {
+        if (limit <= 0) throw new IllegalArgumentException("La limite doit être positive.");
+        this.limit = limit;
+        return this;
+    }
+
+    private static String blankToNull(String s) {
+        return s == null || s.isBlank() ? null : s;
+    }
+
+    String title() {
+        return title;
+    }
+
+    String genre() {
+        return genre;
+    }
+
+    String author() {
+        return author;
+    }
+
+    Integer fromYear() {
+        return fromYear;
+    }
+
+    Integer toYear() {
+        return toYear;
+    }
+
+    Boolean available() {
+        return available;
+    }
+
+    Sort sort() {
+        return sort;
+    }
+
+    int limit() {
+        return limit;
+    }
+
+    @Override
+    public String toString() {
+        List<String> parts = new ArrayList<>();
+        if (title != null) parts.add("title~'" + title + "'");
+        if (genre != null) parts.add("genre='" + genre + "'");
+        if (author != null) parts.add("author='" + author + "'");
+        if (fromYear != null) parts.add("year=" + fromYear + ".." + toYear);
+        if (available != null) parts.add("available=" + available);
+        if (sort != Sort.NONE) parts.add("sort=" + sort);
+        if (limit != Integer.MAX_VALUE) parts.add("limit=" + limit);
+        return "BookQuery" + parts;
+    }
+}
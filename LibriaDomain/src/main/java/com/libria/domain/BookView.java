@@ -0,0 +1,221 @@
+package com.libria.domain;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Poids-mouche sur un enregistrement de l'OffHeapCatalog : les champs sont décodés
+ * seulement quand on les demande.
+ *
+ * Format : [int longueur][int année][byte drapeaux] puis 9 champs [int taille][octets UTF-8]
+ * (taille -1 = null) : isbn, titre, auteur, genre, couverture, pdf, puis la forme de
+ * recherche (SearchKey) du titre, de l'auteur et du genre, puis [long version du livre].
+ *
+ * La version n'est écrite que depuis le format 3 du snapshot : un enregistrement plus ancien
+ * s'arrête après les 9 champs, sa longueur dit si elle est présente.
+ */
+public final class BookView {
+
+    static final int HEADER_BYTES = 9;
+    static final byte AVAILABLE = 1;
+    static final byte DELETED = 2;
+
+    private static final int ISBN = 0, TITLE = 1, AUTHOR = 2, GENRE = 3, COVER = 4, PDF = 5;
+    private static final int FOLDED_TITLE = 6, FOLDED_AUTHOR = 7, FOLDED_GENRE = 8;
+
+    private ByteBuffer buffer;
+    private int offset;
+
+    /** Encode un livre dans le format d'enregistrement ci-dessus. */
+    static byte[] encode(Book book) {
+        String genre = book.getGenre();
+        byte[][] fields = {
+                utf8(book.getIsbn()),
+                utf8(book.getTitle()),
+                utf8(book.getAuthor()),
+                utf8(genre),
+                utf8(book.getCoverImage()),
+                utf8(book.getPdf()),
+                utf8(SearchKey.fold(book.getTitle())),
+                utf8(SearchKey.fold(book.getAuthor())),
+                utf8(SearchKey.fold(genre))
+        };
+        int length = HEADER_BYTES + 8;
+        for (byte[] field : fields) {
+            length += 4 + (field == null ? 0 : field.length);
+        }
+        ByteBuffer record = ByteBuffer.allocate(length);
+        record.putInt(length);
+        record.putInt(book.getYear());
+        record.put(book.isAvailable() ? AVAILABLE : 0);
+        for (byte[] field : fields) {
+            record.putInt(field == null ? -1 : field.length);
+            if (field != null) record.put(field);
+        }
+        record.putLong(book.getVersion());
+        return record.array();
+    }
+
+    private static byte[] utf8(String s) {
+        return s == null ? null : s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    BookView(ByteBuffer buffer, int offset) {
+        this.buffer = buffer;
+        this.offset = offset;
+    }
+
+    void moveTo(ByteBuffer buffer, int offset) {
+        this.buffer = buffer;
+        this.offset = offset;
+    }
+
+    int recordLength() {
+        return buffer.getInt(offset);
+    }
+
+    public int getYear() {
+        return buffer.getInt(offset + 4);
+    }
+
+    public boolean isAvailable() {
+        return (buffer.get(offset + 8) & AVAILABLE) != 0;
+    }
+
+    // enregistrement écrit avant le format 3 : pas de version
+    boolean hasVersion() {
+        return fieldOffset(FOLDED_GENRE + 1) + 8 <= offset + recordLength();
+    }
+
+    public long getVersion() {
+        return hasVersion() ? buffer.getLong(fieldOffset(FOLDED_GENRE + 1)) : 0;
+    }
+
+    boolean isDeleted() {
+        return (buffer.get(offset + 8) & DELETED) != 0;
+    }
+
+    void setAvailable(boolean available) {
+        byte flags = buffer.get(offset + 8);
+        buffer.put(offset + 8, (byte) (available ? flags | AVAILABLE : flags & ~AVAILABLE));
+    }
+
+    void markDeleted() {
+        buffer.put(offset + 8, (byte) (buffer.get(offset + 8) | DELETED));
+    }
+
+    public String getIsbn() {
+        return string(ISBN);
+    }
+
+    public String getTitle() {
+        return string(TITLE);
+    }
+
+    public String getAuthor() {
+        return string(AUTHOR);
+    }
+
+    public String getGenre() {
+        return string(GENRE);
+    }
+
+    public String getCoverImage() {
+        return string(COVER);
+    }
+
+    public String getPdf() {
+        return string(PDF);
+    }
+
+    /** Copie sur le tas, à garder au-delà d'un parcours. */
+    public Book toBook() {
+        Book book = new Book();
+        book.setIsbn(getIsbn());
+        book.setTitle(getTitle());
+        book.setAuthor(getAuthor());
+        book.setYear(getYear());
+        book.setGenre(getGenre());
+        book.setAvailable(isAvailable());
+        book.setCoverImage(getCoverImage());
+        book.setPdf(getPdf());
+        book.restoreVersion(getVersion());
+        return book;
+    }
+
+    boolean isbnEquals(byte[] key) {
+        return fieldEquals(fieldOffset(ISBN), key);
+    }
+
+    // ordre des octets UTF-8 non signés, pour la recherche dichotomique du fichier snapshot
+    int compareIsbn(byte[] key) {
+        int pos = fieldOffset(ISBN);
+        int len = buffer.getInt(pos);
+        int n = Math.min(len, key.length);
+        for (int i = 0; i < n; i++) {
+            int cmp = Byte.compareUnsigned(buffer.get(pos + 4 + i), key[i]);
+            if (cmp != 0) return cmp;
+        }
+        return Integer.compare(len, key.length);
+    }
+
+    boolean foldedAuthorEquals(byte[] key) {
+        return fieldEquals(fieldOffset(FOLDED_AUTHOR), key);
+    }
+
+    boolean foldedGenreEquals(byte[] key) {
+        return fieldEquals(fieldOffset(FOLDED_GENRE), key);
+    }
+
+    // comparaison directe dans le tampon, sans décoder le titre
+    boolean foldedTitleContains(byte[] needle) {
+        int pos = fieldOffset(FOLDED_TITLE);
+        int len = buffer.getInt(pos);
+        if (len < 0) return false;
+        if (needle.length == 0) return true;
+        int from = pos + 4;
+        int last = from + len - needle.length;
+        for (int i = from; i <= last; i++) {
+            if (buffer.get(i) != needle[0]) continue;
+            int j = 1;
+            while (j < needle.length && buffer.get(i + j) == needle[j]) j++;
+            if (j == needle.length) return true;
+        }
+        return false;
+    }
+
+    private boolean fieldEquals(int pos, byte[] key) {
+        int len = buffer.getInt(pos);
+        if (len != key.length) return false;
+        for (int i = 0; i < len; i++) {
+            if (buffer.get(pos + 4 + i) != key[i]) return false;
+        }
+        return true;
+    }
+
+    private int fieldOffset(int field) {
+        int pos = offset + HEADER_BYTES;
+        for (int i = 0; i < field; i++) {
+            int len = buffer.getInt(pos);
+            pos += 4 + Math.max(len, 0);
+        }
+        return pos;
+    }
+
+    private String string(int field) {
+        int pos = fieldOffset(field);
+        int len = buffer.getInt(pos);
+        if (len < 0) return null;
+        byte[] bytes = new byte[len];
+        buffer.get(pos + 4, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String toString() {
+        return "BookView{" +
+                "isbn='" + getIsbn() + '\'' +
+                ", title='" + getTitle() + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,66 @@
+package com.libria.domain;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Colonne de chaînes stockées bout à bout en UTF-8 dans un seul tableau d'octets.
+ * Une ligne réécrite ajoute ses nouveaux octets à la fin : l'ancien espace est
+ * récupéré au prochain compactage du catalogue.
+ */
+final class ByteColumn {
+
+    private byte[] data;
+    private int used;
+    private int[] start;
+    private int[] length;
+
+    ByteColumn(int rows) {
+        this.data = new byte[Math.max(64, rows * 16)];
+        this.start = new int[Math.max(16, rows)];
+        this.length = new int[Math.max(16, rows)];
+    }
+
+    void set(int row, String value) {
+        if (row >= start.length) {
+            int capacity = Math.max(row + 1, start.length * 2);
+            start = Arrays.copyOf(start, capacity);
+            length = Arrays.copyOf(length, capacity);
+        }
+        if (value == null) {
+            start[row] = 0;
+            length[row] = -1;
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (used + bytes.length > data.length) {
+            data = Arrays.copyOf(data, Math.max(used + bytes.length, data.length * 2));
+        }
+        System.arraycopy(bytes, 0, data, used, bytes.length);
+        start[row] = used;
+        length[row] = bytes.length;
+        used += bytes.length;
+    }
+
+    String get(int row) {
+        int len = length[row];
+        return len < 0 ? null : new String(data, start[row], len, StandardCharsets.UTF_8);
+    }
+
+    boolean contentEquals(int row, byte[] other) {
+        int len = length[row];
+        if (len != other.length) return false;
+        return Arrays.equals(data, start[row], start[row] + len, other, 0, other.length);
+    }
+
+    // recherche d'une sous-suite d'octets 8 positions à la fois, sans allocation
+    boolean contains(int row, byte[] needle) {
+        int len = length[row];
+        if (len < 0) return false;
+        return ByteScan.indexOf(data, start[row], start[row] + len, needle) >= 0;
+    }
+
+    long bytes() {
+        return data.length + 8L * start.length;
+    }
+}
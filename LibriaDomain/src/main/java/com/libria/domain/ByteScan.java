@@ -0,0 +1,62 @@
+package com.libria.domain;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Recherche d'une sous-suite d'octets, 8 positions à la fois (SWAR : un long = 8 octets).
+ * Pour chaque bloc on compare en même temps le premier octet du motif aux octets i..i+7
+ * et son dernier octet aux octets i+n-1..i+n+6 ; seules les positions où les deux
+ * correspondent sont vérifiées octet par octet. Les titres repliés étant peu variés, ce
+ * double filtre élimine presque toutes les fausses pistes du premier octet seul.
+ *
+ * Sert aux titres qui n'existent qu'en octets (ColumnarCatalog). Sur les String du tas
+ * (Library, téléchargements d'un user), String.contains reste plus rapide : HotSpot le
+ * compile déjà en instructions vectorielles, sans la copie en octets.
+ */
+final class ByteScan {
+
+    private static final VarHandle LONGS =
+            MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final long ONES = 0x0101010101010101L;
+    private static final long LOW7 = 0x7F7F7F7F7F7F7F7FL;
+
+    private ByteScan() {
+    }
+
+    /** Première position de needle dans data[from, to), -1 s'il n'y est pas. */
+    static int indexOf(byte[] data, int from, int to, byte[] needle) {
+        int n = needle.length;
+        if (n == 0) return from;
+        int lastStart = to - n;
+        if (lastStart < from) return -1;
+        long first = ONES * (needle[0] & 0xff);
+        long last = ONES * (needle[n - 1] & 0xff);
+        int i = from;
+        // les deux lectures restent dans [from, to) tant que i + 7 <= lastStart
+        for (; i + 7 <= lastStart; i += 8) {
+            long hits = zeroBytes(((long) LONGS.get(data, i) ^ first) | ((long) LONGS.get(data, i + n - 1) ^ last));
+            while (hits != 0) {
+                int at = i + (Long.numberOfTrailingZeros(hits) >>> 3);
+                if (middleMatches(data, at, needle)) return at;
+                hits &= hits - 1;
+            }
+        }
+        for (; i <= lastStart; i++) {
+            if (data[i] == needle[0] && data[i + n - 1] == needle[n - 1] && middleMatches(data, i, needle)) return i;
+        }
+        return -1;
+    }
+
+    // 0x80 dans chaque octet nul de x, 0 ailleurs (exact : pas de retenue entre octets)
+    private static long zeroBytes(long x) {
+        return ~(((x & LOW7) + LOW7) | x | LOW7);
+    }
+
+    private static boolean middleMatches(byte[] data, int at, byte[] needle) {
+        int n = needle.length;
+        return n <= 2 || Arrays.equals(data, at + 1, at + n - 1, needle, 1, n - 1);
+    }
+}
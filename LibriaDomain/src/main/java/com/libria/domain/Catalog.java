@@ -0,0 +1,26 @@
+package com.libria.domain;
+
+import com.libria.exception.BookNotFoundException;
+
+import java.util.List;
+
+/**
+ * Opérations de lecture communes à toutes les formes de catalogue
+ * (Library en mémoire, stockage en colonnes, hors tas...).
+ */
+public interface Catalog {
+
+    boolean containsBook(String isbn);
+
+    Book getBook(String isbn) throws BookNotFoundException;
+
+    List<Book> searchByTitle(String title);
+
+    List<Book> searchByGenre(String genre);
+
+    List<Book> searchByAuthor(String author);
+
+    List<Book> listBooks();
+
+    int bookCount();
+}
@@ -0,0 +1,53 @@
+package com.libria.domain;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Catalogue ISBN -> Book de la Library. Les ISBN-13 canoniques sont rangés compactés dans
+ * une LongBookMap ; les autres identifiants (références internes, anciens codes) dans une
+ * map classique. Les clés reçues doivent déjà être normalisées (Isbn.normalize).
+ */
+final class CatalogMap {
+
+    private final LongBookMap packed = new LongBookMap();
+    private final Map<String, Book> others = new ConcurrentHashMap<>();
+
+    Book get(String isbn) {
+        long key = Isbn.pack(isbn);
+        return key == Isbn.NOT_PACKED ? others.get(isbn) : packed.get(key);
+    }
+
+    boolean containsKey(String isbn) {
+        return get(isbn) != null;
+    }
+
+    Book putIfAbsent(Book book) {
+        long key = Isbn.pack(book.getIsbn());
+        return key == Isbn.NOT_PACKED ? others.putIfAbsent(book.getIsbn(), book) : packed.putIfAbsent(key, book);
+    }
+
+    // échange d'une version du livre contre la suivante, refusé si expected n'est plus en place
+    // (comparaison d'identité : Book.equals ne regarde que l'ISBN)
+    boolean replace(Book expected, Book book) {
+        long key = Isbn.pack(book.getIsbn());
+        if (key != Isbn.NOT_PACKED) return packed.replace(key, expected, book);
+        return others.computeIfPresent(book.getIsbn(), (isbn, current) -> current == expected ? book : current) == book;
+    }
+
+    Book remove(String isbn) {
+        long key = Isbn.pack(isbn);
+        return key == Isbn.NOT_PACKED ? others.remove(isbn) : packed.remove(key);
+    }
+
+    int size() {
+        return packed.size() + others.size();
+    }
+
+    List<Book> values() {
+        List<Book> values = packed.values();
+        values.addAll(others.values());
+        return values;
+    }
+}
@@ -0,0 +1,38 @@
+package com.libria.domain;
+
+import com.libria.exception.BookAlreadyExistException;
+import com.libria.exception.BookNotFoundException;
+import com.libria.exception.StaleBookException;
+
+import java.util.List;
+
+/**
+ * Moteur de stockage du catalogue : ce que le service attend pour lire et écrire les livres,
+ * que ceux-ci soient en base (JpaStore), en mémoire (MemoryStore) ou en mémoire avec
+ * snapshot et journal sur disque (SnapshotStore).
+ *
+ * Les ISBN reçus sont déjà résolus par l'appelant (Isbn.normalize). Un moteur ne contrôle
+ * pas les droits et n'ouvre pas de transaction : c'est le rôle de l'appelant.
+ */
+public interface CatalogStore extends Catalog {
+
+    /** Tous les ISBN, sans charger les livres quand le moteur le permet. */
+    List<String> listIsbns();
+
+    List<Book> searchByTitleOrAuthor(String text);
+
+    /** Livres publiés entre from et to inclus, triés par année puis ISBN, au plus limit. */
+    List<Book> searchByYearRange(int from, int to, boolean newestFirst, int limit);
+
+    void addBook(Book book) throws BookAlreadyExistException;
+
+    /**
+     * Mise à jour partielle (seuls les champs fournis changent). expectedVersion : version
+     * lue par le client, null pour ne pas la contrôler. Renvoie le livre à jour.
+     */
+    Book updateBook(String isbn, Book updated, Long expectedVersion)
+            throws BookNotFoundException, StaleBookException;
+
+    /** Retire le livre du catalogue et des téléchargements de tous les users. */
+    void removeBook(String isbn) throws BookNotFoundException;
+}
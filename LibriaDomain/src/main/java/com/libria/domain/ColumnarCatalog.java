@@ -0,0 +1,311 @@
+package com.libria.domain;
+
+import com.libria.exception.BookAlreadyExistException;
+import com.libria.exception.BookNotFoundException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+
+/**
+ * Catalogue stocké par colonnes (struct-of-arrays) pour les très gros catalogues :
+ * années dans un int[], disponibilité dans un bitset, genre codé par un StringDictionary propre au catalogue,
+ * titre et auteur en octets UTF-8 contigus (avec leur forme de recherche, voir SearchKey).
+ *
+ * Les recherches parcourent uniquement ces tableaux primitifs, les Book ne sont créés
+ * que pour les lignes renvoyées. Une suppression marque la ligne, et le tableau est
+ * compacté quand la moitié des lignes sont mortes.
+ *
+ * Les écritures restent dans le paquet, comme celles de PartitionedLibrary : de l'extérieur,
+ * le catalogue se construit d'un bloc par of(livres) et ne se lit qu'ensuite.
+ */
+public class ColumnarCatalog implements Catalog {
+
+    private static final int NO_CODE = -1;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Integer> rowByIsbn = new HashMap<>();
+    private StringDictionary dictionary = new StringDictionary();
+
+    private int rows;      // lignes utilisées, y compris les supprimées
+    private int deleted;
+    private String[] isbns;
+    private int[] years;
+    private int[] genres;        // code du genre tel quel
+    private int[] foldedGenres;  // code du genre en minuscules, pour les recherches
+    private long[] available;    // bitset
+    private long[] dead;         // bitset des lignes supprimées
+    private String[] covers;
+    private String[] pdfs;
+    private ByteColumn titles;
+    private ByteColumn foldedTitles;
+    private ByteColumn authors;
+    private ByteColumn foldedAuthors;
+
+    public ColumnarCatalog() {
+        this(1024);
+    }
+
+    public ColumnarCatalog(int expectedBooks) {
+        allocate(Math.max(16, expectedBooks));
+    }
+
+    public static ColumnarCatalog of(Collection<Book> books) {
+        ColumnarCatalog catalog = new ColumnarCatalog(books.size());
+        for (Book book : books) {
+            catalog.addBook(book);
+        }
+        return catalog;
+    }
+
+    private void allocate(int capacity) {
+        rows = 0;
+        deleted = 0;
+        isbns = new String[capacity];
+        years = new int[capacity];
+        genres = new int[capacity];
+        foldedGenres = new int[capacity];
+        available = new long[(capacity + 63) >>> 6];
+        dead = new long[(capacity + 63) >>> 6];
+        covers = new String[capacity];
+        pdfs = new String[capacity];
+        titles = new ByteColumn(capacity);
+        foldedTitles = new ByteColumn(capacity);
+        authors = new ByteColumn(capacity);
+        foldedAuthors = new ByteColumn(capacity);
+    }
+
+    /* =====================================================
+     *  ÉCRITURES
+     * ===================================================== */
+
+    void addBook(Book book) {
+        if (book == null) throw new IllegalArgumentException("Book null");
+        lock.writeLock().lock();
+        try {
+            if (rowByIsbn.containsKey(book.getIsbn()))
+                throw new BookAlreadyExistException("Livre déjà existant !");
+            int row = rows;
+            ensureCapacity(row + 1);
+            write(row, book);
+            rows++;
+            rowByIsbn.put(book.getIsbn(), row);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void removeBook(String isbn) {
+        if (isbn == null || isbn.isBlank()) throw new IllegalArgumentException("ISBN invalide");
+        isbn = Isbn.lookupKey(isbn);
+        lock.writeLock().lock();
+        try {
+            Integer row = rowByIsbn.remove(isbn);
+            if (row == null)
+                throw new BookNotFoundException("Livre introuvable !");
+            setBit(dead, row, true);
+            isbns[row] = null;
+            covers[row] = null;
+            pdfs[row] = null;
+            deleted++;
+            if (deleted > 1024 && deleted * 2 > rows) compact();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Remplace toutes les colonnes du livre portant le même ISBN. */
+    void replaceBook(Book book) {
+        if (book == null) throw new IllegalArgumentException("Book null");
+        lock.writeLock().lock();
+        try {
+            Integer row = rowByIsbn.get(book.getIsbn());
+            if (row == null)
+                throw new BookNotFoundException("Livre introuvable !");
+            write(row, book);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void write(int row, Book book) {
+        isbns[row] = book.getIsbn();
+        years[row] = book.getYear();
+        genres[row] = book.getGenre() == null ? NO_CODE : dictionary.code(book.getGenre());
+        foldedGenres[row] = book.genreKey() == null ? NO_CODE : dictionary.code(book.genreKey());
+        setBit(available, row, book.isAvailable());
+        setBit(dead, row, false);
+        covers[row] = book.getCoverImage();
+        pdfs[row] = book.getPdf();
+        titles.set(row, book.getTitle());
+        foldedTitles.set(row, book.titleKey());
+        authors.set(row, book.getAuthor());
+        foldedAuthors.set(row, book.authorKey());
+    }
+
+    private void ensureCapacity(int needed) {
+        if (needed <= isbns.length) return;
+        int capacity = Math.max(needed, isbns.length * 2);
+        isbns = Arrays.copyOf(isbns, capacity);
+        years = Arrays.copyOf(years, capacity);
+        genres = Arrays.copyOf(genres, capacity);
+        foldedGenres = Arrays.copyOf(foldedGenres, capacity);
+        available = Arrays.copyOf(available, (capacity + 63) >>> 6);
+        dead = Arrays.copyOf(dead, (capacity + 63) >>> 6);
+        covers = Arrays.copyOf(covers, capacity);
+        pdfs = Arrays.copyOf(pdfs, capacity);
+    }
+
+    // réécrit les lignes vivantes dans des colonnes neuves (récupère aussi les octets orphelins
+    // et les genres qui ne servent plus : les codes sont réattribués par un dictionnaire neuf)
+    private void compact() {
+        List<Book> live = new ArrayList<>(rows - deleted);
+        for (int row = 0; row < rows; row++) {
+            if (!getBit(dead, row)) live.add(materialize(row));
+        }
+        dictionary = dictionary.emptyCopy();
+        allocate(Math.max(16, live.size() * 2));
+        rowByIsbn.clear();
+        for (Book book : live) {
+            write(rows, book);
+            rowByIsbn.put(book.getIsbn(), rows);
+            rows++;
+        }
+    }
+
+    /* =====================================================
+     *  LECTURES
+     * ===================================================== */
+
+    @Override
+    public boolean containsBook(String isbn) {
+        if (isbn == null) return false;
+        String key = Isbn.lookupKey(isbn);
+        lock.readLock().lock();
+        try {
+            return rowByIsbn.containsKey(key);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Book getBook(String isbn) throws BookNotFoundException {
+        if (isbn == null || isbn.isBlank()) {
+            throw new IllegalArgumentException("ISBN invalide.");
+        }
+        lock.readLock().lock();
+        try {
+            Integer row = rowByIsbn.get(Isbn.lookupKey(isbn));
+            if (row == null) {
+                throw new BookNotFoundException("Aucun livre trouvé avec l’ISBN : " + isbn);
+            }
+            return materialize(row);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Book> searchByTitle(String title) {
+        byte[] needle = SearchKey.fold(title).getBytes(StandardCharsets.UTF_8);
+        return scan(row -> foldedTitles.contains(row, needle));
+    }
+
+    @Override
+    public List<Book> searchByGenre(String genre) {
+        if (genre == null) return new ArrayList<>();
+        int code = dictionary.find(SearchKey.fold(genre));
+        if (code == NO_CODE) return new ArrayList<>();
+        return scan(row -> foldedGenres[row] == code);
+    }
+
+    @Override
+    public List<Book> searchByAuthor(String author) {
+        if (author == null) return new ArrayList<>();
+        byte[] folded = SearchKey.fold(author).getBytes(StandardCharsets.UTF_8);
+        return scan(row -> foldedAuthors.contentEquals(row, folded));
+    }
+
+    /** Livres publiés entre from et to inclus. */
+    public List<Book> searchByYearRange(int from, int to) {
+        return scan(row -> years[row] >= from && years[row] <= to);
+    }
+
+    public List<Book> searchByAvailability(boolean isAvailable) {
+        return scan(row -> getBit(available, row) == isAvailable);
+    }
+
+    @Override
+    public List<Book> listBooks() {
+        return scan(row -> true);
+    }
+
+    @Override
+    public int bookCount() {
+        lock.readLock().lock();
+        try {
+            return rows - deleted;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Taille approximative des colonnes en octets. */
+    public long estimatedBytes() {
+        lock.readLock().lock();
+        try {
+            long perRow = 4L * 3 + 8L * 3; // years + 2 codes genre, références isbn/cover/pdf
+            return perRow * isbns.length + 8L * (available.length + dead.length)
+                    + titles.bytes() + foldedTitles.bytes() + authors.bytes() + foldedAuthors.bytes();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<Book> scan(IntPredicate matches) {
+        List<Book> result = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (int row = 0; row < rows; row++) {
+                if (!getBit(dead, row) && matches.test(row)) {
+                    result.add(materialize(row));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    private Book materialize(int row) {
+        Book book = new Book();
+        book.setIsbn(isbns[row]);
+        book.setTitle(titles.get(row));
+        book.setAuthor(authors.get(row));
+        book.setYear(years[row]);
+        book.setGenre(genres[row] == NO_CODE ? null : dictionary.decode(genres[row]));
+        book.setAvailable(getBit(available, row));
+        book.setCoverImage(covers[row]);
+        book.setPdf(pdfs[row]);
+        return book;
+    }
+
+    private static boolean getBit(long[] bits, int index) {
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    private static void setBit(long[] bits, int index, boolean value) {
+        if (value) bits[index >>> 6] |= 1L << index;
+        else bits[index >>> 6] &= ~(1L << index);
+    }
+
+    @Override
+    public String toString() {
+        return "ColumnarCatalog{" +
+                "books=" + bookCount() +
+                '}';
+    }
+}
@@ -0,0 +1,433 @@
+package com.libria.domain;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Ensemble d'entiers compressé, découpé comme un Roaring bitmap : les 16 bits de poids fort
+ * choisissent un conteneur, les 16 bits de poids faible sont rangés dedans.
+ * Un conteneur peu rempli est un char[] trié (2 octets par valeur), au-delà de 4096 valeurs
+ * il devient un bitmap de 65536 bits (8 Ko) : on garde la forme la plus petite, à ceci près
+ * qu'un bitmap qui se vide ne redevient tableau que sous 3584 valeurs.
+ *
+ * Intersection, union et cardinalité travaillent conteneur par conteneur, par mots de 64 bits
+ * pour les bitmaps. Pas thread-safe : c'est l'appelant qui synchronise.
+ */
+public final class CompactBitmap {
+
+    private static final int ARRAY_MAX = 4096;
+    // un bitmap ne redevient tableau qu'un peu en dessous : un compte qui oscille autour de
+    // ARRAY_MAX ne convertit pas le conteneur à chaque ajout / retrait
+    private static final int BITMAP_MIN = ARRAY_MAX - 512;
+    private static final int BITMAP_WORDS = 1024;
+
+    private char[] keys;
+    private Object[] containers;   // char[] trié (rempli sur counts[i]) ou long[BITMAP_WORDS]
+    private int[] counts;
+    private int size;
+
+    public CompactBitmap() {
+        this.keys = new char[4];
+        this.containers = new Object[4];
+        this.counts = new int[4];
+    }
+
+    public static CompactBitmap of(int... values) {
+        CompactBitmap bitmap = new CompactBitmap();
+        for (int value : values) {
+            bitmap.add(value);
+        }
+        return bitmap;
+    }
+
+    /* =====================================================
+     *  Écritures
+     * ===================================================== */
+
+    /** Ajoute value, renvoie false si elle y était déjà. */
+    public boolean add(int value) {
+        char hi = (char) (value >>> 16);
+        char lo = (char) value;
+        int i = findKey(hi);
+        if (i < 0) {
+            i = -(i + 1);
+            insertContainer(i, hi, new char[4]);
+        }
+        Object container = containers[i];
+        if (container instanceof long[] bits) {
+            if (!setBit(bits, lo)) return false;
+        } else {
+            char[] values = (char[]) container;
+            int count = counts[i];
+            int pos = Arrays.binarySearch(values, 0, count, lo);
+            if (pos >= 0) return false;
+            pos = -(pos + 1);
+            if (count == ARRAY_MAX) {
+                long[] bits = toBitmap(values, count);
+                setBit(bits, lo);
+                containers[i] = bits;
+            } else {
+                if (count == values.length) {
+                    values = Arrays.copyOf(values, Math.min(ARRAY_MAX, count * 2));
+                    containers[i] = values;
+                }
+                System.arraycopy(values, pos, values, pos + 1, count - pos);
+                values[pos] = lo;
+            }
+        }
+        counts[i]++;
+        return true;
+    }
+
+    /** Retire value, renvoie false si elle n'y était pas. */
+    public boolean remove(int value) {
+        int i = findKey((char) (value >>> 16));
+        if (i < 0) return false;
+        char lo = (char) value;
+        Object container = containers[i];
+        if (container instanceof long[] bits) {
+            long mask = 1L << lo;
+            if ((bits[lo >>> 6] & mask) == 0) return false;
+            bits[lo >>> 6] &= ~mask;
+            if (--counts[i] < BITMAP_MIN) containers[i] = toArray(bits, counts[i]);
+        } else {
+            char[] values = (char[]) container;
+            int count = counts[i];
+            int pos = Arrays.binarySearch(values, 0, count, lo);
+            if (pos < 0) return false;
+            System.arraycopy(values, pos + 1, values, pos, count - pos - 1);
+            counts[i]--;
+            if (values.length > 16 && counts[i] < values.length / 4) {
+                containers[i] = Arrays.copyOf(values, values.length / 2);
+            }
+        }
+        if (counts[i] == 0) removeContainer(i);
+        return true;
+    }
+
+    /* =====================================================
+     *  Lectures
+     * ===================================================== */
+
+    public boolean contains(int value) {
+        int i = findKey((char) (value >>> 16));
+        if (i < 0) return false;
+        char lo = (char) value;
+        Object container = containers[i];
+        if (container instanceof long[] bits) {
+            return (bits[lo >>> 6] & (1L << lo)) != 0;
+        }
+        return Arrays.binarySearch((char[]) container, 0, counts[i], lo) >= 0;
+    }
+
+    public int cardinality() {
+        int total = 0;
+        for (int i = 0; i < size; i++) {
+            total += counts[i];
+        }
+        return total;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /** Valeurs dans l'ordre croissant (non signé). */
+    public void forEach(IntConsumer action) {
+        for (int i = 0; i < size; i++) {
+            int base = keys[i] << 16;
+            Object container = containers[i];
+            if (container instanceof long[] bits) {
+                for (int w = 0; w < BITMAP_WORDS; w++) {
+                    long word = bits[w];
+                    while (word != 0) {
+                        action.accept(base | (w << 6) + Long.numberOfTrailingZeros(word));
+                        word &= word - 1;
+                    }
+                }
+            } else {
+                char[] values = (char[]) container;
+                for (int j = 0; j < counts[i]; j++) {
+                    action.accept(base | values[j]);
+                }
+            }
+        }
+    }
+
+    public int[] toArray() {
+        int[] result = new int[cardinality()];
+        int[] n = {0};
+        forEach(value -> result[n[0]++] = value);
+        return result;
+    }
+
+    /** Octets occupés par les conteneurs (hors en-têtes d'objets). */
+    public long sizeInBytes() {
+        long bytes = 0;
+        for (int i = 0; i < size; i++) {
+            bytes += containers[i] instanceof long[] ? 8L * BITMAP_WORDS : 2L * ((char[]) containers[i]).length;
+        }
+        return bytes + 10L * keys.length;
+    }
+
+    public CompactBitmap copy() {
+        CompactBitmap copy = new CompactBitmap();
+        copy.keys = Arrays.copyOf(keys, keys.length);
+        copy.counts = Arrays.copyOf(counts, counts.length);
+        copy.containers = new Object[containers.length];
+        for (int i = 0; i < size; i++) {
+            Object c = containers[i];
+            copy.containers[i] = c instanceof long[] bits ? bits.clone() : ((char[]) c).clone();
+        }
+        copy.size = size;
+        return copy;
+    }
+
+    /* =====================================================
+     *  Opérations ensemblistes
+     * ===================================================== */
+
+    public static CompactBitmap and(CompactBitmap a, CompactBitmap b) {
+        CompactBitmap result = new CompactBitmap();
+        int i = 0, j = 0;
+        while (i < a.size && j < b.size) {
+            int cmp = Character.compare(a.keys[i], b.keys[j]);
+            if (cmp < 0) {
+                i++;
+            } else if (cmp > 0) {
+                j++;
+            } else {
+                Object x = a.containers[i], y = b.containers[j];
+                if (x instanceof char[] xa && y instanceof char[] ya) {
+                    // cas courant (petits ensembles) : fusion sans passer par un bitmap
+                    char[] values = new char[Math.max(4, Math.min(a.counts[i], b.counts[j]))];
+                    int count = mergeAnd(xa, a.counts[i], ya, b.counts[j], values);
+                    if (count > 0) {
+                        result.insertContainer(result.size, a.keys[i], values);
+                        result.counts[result.size - 1] = count;
+                    }
+                } else {
+                    long[] bits = new long[BITMAP_WORDS];
+                    int count = andInto(x, a.counts[i], y, b.counts[j], bits);
+                    if (count > 0) result.append(a.keys[i], bits, count);
+                }
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    private static int mergeAnd(char[] x, int xCount, char[] y, int yCount, char[] out) {
+        int p = 0, q = 0, n = 0;
+        while (p < xCount && q < yCount) {
+            if (x[p] < y[q]) p++;
+            else if (x[p] > y[q]) q++;
+            else {
+                out[n++] = x[p];
+                p++;
+                q++;
+            }
+        }
+        return n;
+    }
+
+    public static CompactBitmap or(CompactBitmap a, CompactBitmap b) {
+        CompactBitmap result = new CompactBitmap();
+        int i = 0, j = 0;
+        while (i < a.size || j < b.size) {
+            int cmp = i == a.size ? 1 : j == b.size ? -1 : Character.compare(a.keys[i], b.keys[j]);
+            long[] bits = new long[BITMAP_WORDS];
+            int count;
+            char key;
+            if (cmp <= 0) {
+                key = a.keys[i];
+                count = orInto(bits, a.containers[i], a.counts[i]);
+                if (cmp == 0) {
+                    count = orInto(bits, b.containers[j], b.counts[j]);
+                    j++;
+                }
+                i++;
+            } else {
+                key = b.keys[j];
+                count = orInto(bits, b.containers[j], b.counts[j]);
+                j++;
+            }
+            result.append(key, bits, count);
+        }
+        return result;
+    }
+
+    /** Taille de l'intersection, sans la construire. */
+    public static int andCardinality(CompactBitmap a, CompactBitmap b) {
+        int total = 0;
+        int i = 0, j = 0;
+        while (i < a.size && j < b.size) {
+            int cmp = Character.compare(a.keys[i], b.keys[j]);
+            if (cmp < 0) {
+                i++;
+            } else if (cmp > 0) {
+                j++;
+            } else {
+                total += andCount(a.containers[i], a.counts[i], b.containers[j], b.counts[j]);
+                i++;
+                j++;
+            }
+        }
+        return total;
+    }
+
+    // intersection de deux conteneurs écrite dans out (bitmap vide), renvoie sa cardinalité
+    private static int andInto(Object x, int xCount, Object y, int yCount, long[] out) {
+        if (x instanceof long[] xb && y instanceof long[] yb) {
+            int count = 0;
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                out[w] = xb[w] & yb[w];
+                count += Long.bitCount(out[w]);
+            }
+            return count;
+        }
+        if (x instanceof long[]) {
+            return andInto(y, yCount, x, xCount, out);
+        }
+        char[] values = (char[]) x;
+        int count = 0;
+        for (int k = 0; k < xCount; k++) {
+            char v = values[k];
+            boolean present = y instanceof long[] yb
+                    ? (yb[v >>> 6] & (1L << v)) != 0
+                    : Arrays.binarySearch((char[]) y, 0, yCount, v) >= 0;
+            if (present) {
+                out[v >>> 6] |= 1L << v;
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static int andCount(Object x, int xCount, Object y, int yCount) {
+        if (x instanceof long[] xb && y instanceof long[] yb) {
+            int count = 0;
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                count += Long.bitCount(xb[w] & yb[w]);
+            }
+            return count;
+        }
+        if (x instanceof long[]) {
+            return andCount(y, yCount, x, xCount);
+        }
+        char[] values = (char[]) x;
+        int count = 0;
+        if (y instanceof long[] yb) {
+            for (int k = 0; k < xCount; k++) {
+                if ((yb[values[k] >>> 6] & (1L << values[k])) != 0) count++;
+            }
+            return count;
+        }
+        // deux tableaux triés : fusion
+        char[] other = (char[]) y;
+        int p = 0, q = 0;
+        while (p < xCount && q < yCount) {
+            if (values[p] < other[q]) p++;
+            else if (values[p] > other[q]) q++;
+            else {
+                count++;
+                p++;
+                q++;
+            }
+        }
+        return count;
+    }
+
+    // ajoute le conteneur dans out, renvoie la cardinalité de out
+    private static int orInto(long[] out, Object container, int count) {
+        if (container instanceof long[] bits) {
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                out[w] |= bits[w];
+            }
+        } else {
+            char[] values = (char[]) container;
+            for (int k = 0; k < count; k++) {
+                setBit(out, values[k]);
+            }
+        }
+        int total = 0;
+        for (long word : out) {
+            total += Long.bitCount(word);
+        }
+        return total;
+    }
+
+    /* =====================================================
+     *  Conteneurs
+     * ===================================================== */
+
+    private int findKey(char hi) {
+        return Arrays.binarySearch(keys, 0, size, hi);
+    }
+
+    // ajout en fin (clés croissantes), sous la forme la plus compacte
+    private void append(char key, long[] bits, int count) {
+        insertContainer(size, key, count <= ARRAY_MAX ? toArray(bits, count) : bits);
+        counts[size - 1] = count;
+    }
+
+    private void insertContainer(int i, char key, Object container) {
+        if (size == keys.length) {
+            int capacity = size * 2;
+            keys = Arrays.copyOf(keys, capacity);
+            containers = Arrays.copyOf(containers, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+        }
+        System.arraycopy(keys, i, keys, i + 1, size - i);
+        System.arraycopy(containers, i, containers, i + 1, size - i);
+        System.arraycopy(counts, i, counts, i + 1, size - i);
+        keys[i] = key;
+        containers[i] = container;
+        counts[i] = 0;
+        size++;
+    }
+
+    private void removeContainer(int i) {
+        System.arraycopy(keys, i + 1, keys, i, size - i - 1);
+        System.arraycopy(containers, i + 1, containers, i, size - i - 1);
+        System.arraycopy(counts, i + 1, counts, i, size - i - 1);
+        containers[--size] = null;
+    }
+
+    private static boolean setBit(long[] bits, char lo) {
+        long mask = 1L << lo;
+        if ((bits[lo >>> 6] & mask) != 0) return false;
+        bits[lo >>> 6] |= mask;
+        return true;
+    }
+
+    private static long[] toBitmap(char[] values, int count) {
+        long[] bits = new long[BITMAP_WORDS];
+        for (int k = 0; k < count; k++) {
+            setBit(bits, values[k]);
+        }
+        return bits;
+    }
+
+    private static char[] toArray(long[] bits, int count) {
+        char[] values = new char[Math.max(4, count)];
+        int n = 0;
+        for (int w = 0; w < BITMAP_WORDS && n < count; w++) {
+            long word = bits[w];
+            while (word != 0) {
+                values[n++] = (char) ((w << 6) + Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+        return values;
+    }
+
+    @Override
+    public String toString() {
+        return "CompactBitmap{" +
+                "cardinality=" + cardinality() +
+                ", containers=" + size +
+                '}';
+    }
+}
@@ -0,0 +1,201 @@
+package com.libria.domain;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Filtre de cuckoo sur des clés texte (ISBN) : "absent" est certain, "peut-être présent"
+ * se trompe avec une probabilité de l'ordre de 8 / 65536 quand le filtre est plein.
+ * Contrairement à un filtre de Bloom on peut retirer une clé (à condition qu'elle ait
+ * été ajoutée, sinon on efface l'empreinte d'une autre).
+ *
+ * Chaque clé laisse une empreinte de 16 bits dans l'un de ses deux seaux de 4 places ;
+ * l'autre seau se déduit de l'empreinte seule, ce qui permet de déplacer les empreintes.
+ * Le filtre ne peut pas grandir (les clés ne sont pas gardées) : add() renvoie false quand
+ * il est plein, et il faut le reconstruire plus grand.
+ */
+public final class CuckooFilter {
+
+    private static final int SLOTS = 4;
+    private static final int MAX_KICKS = 500;
+
+    private final short[] table;        // 0 = place libre
+    private final int bucketMask;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private int size;
+
+    /** Filtre prévu pour environ expected clés (taux de remplissage visé ~ 84 %). */
+    public CuckooFilter(int expected) {
+        if (expected < 0) throw new IllegalArgumentException("Capacité négative");
+        long buckets = Math.max(1, (long) Math.ceil(expected / (SLOTS * 0.84)));
+        long pow = Long.highestOneBit(buckets);
+        if (pow < buckets) pow <<= 1;
+        if (pow * SLOTS > Integer.MAX_VALUE - 8) throw new IllegalArgumentException("Capacité trop grande");
+        this.table = new short[(int) pow * SLOTS];
+        this.bucketMask = (int) pow - 1;
+    }
+
+    /* =====================================================
+     *  Hachage
+     * ===================================================== */
+
+    // FNV-1a 64 bits sur l'UTF-8 puis mélange final de murmur3
+    private static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static short fingerprint(long hash) {
+        int fp = (int) (hash >>> 48);
+        return (short) (fp == 0 ? 1 : fp);
+    }
+
+    private int alternate(int bucket, short fp) {
+        return (bucket ^ (int) mix(fp & 0xffff)) & bucketMask;
+    }
+
+    /* =====================================================
+     *  Opérations
+     * ===================================================== */
+
+    /** Ajoute la clé ; false si le filtre est plein (il faut alors le reconstruire). */
+    public boolean add(String key) {
+        long h = hash(key);
+        short fp = fingerprint(h);
+        int b1 = (int) h & bucketMask;
+        lock.writeLock().lock();
+        try {
+            if (place(b1, fp) || place(alternate(b1, fp), fp)) {
+                size++;
+                return true;
+            }
+            // les deux seaux sont pleins : on déloge des empreintes de proche en proche
+            int bucket = ThreadLocalRandom.current().nextBoolean() ? b1 : alternate(b1, fp);
+            short carried = fp;
+            short[] evicted = new short[MAX_KICKS];
+            int[] from = new int[MAX_KICKS];
+            for (int kick = 0; kick < MAX_KICKS; kick++) {
+                int slot = bucket * SLOTS + ThreadLocalRandom.current().nextInt(SLOTS);
+                evicted[kick] = table[slot];
+                from[kick] = slot;
+                short out = table[slot];
+                table[slot] = carried;
+                carried = out;
+                bucket = alternate(bucket, carried);
+                if (place(bucket, carried)) {
+                    size++;
+                    return true;
+                }
+            }
+            // échec : on défait les déplacements pour ne perdre aucune empreinte
+            for (int kick = MAX_KICKS - 1; kick >= 0; kick--) {
+                table[from[kick]] = evicted[kick];
+            }
+            return false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** false : la clé n'a certainement pas été ajoutée. */
+    public boolean mightContain(String key) {
+        long h = hash(key);
+        short fp = fingerprint(h);
+        int b1 = (int) h & bucketMask;
+        lock.readLock().lock();
+        try {
+            return holds(b1, fp) || holds(alternate(b1, fp), fp);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Retire une clé ajoutée auparavant ; false si son empreinte n'est pas là. */
+    public boolean remove(String key) {
+        long h = hash(key);
+        short fp = fingerprint(h);
+        int b1 = (int) h & bucketMask;
+        lock.writeLock().lock();
+        try {
+            if (clear(b1, fp) || clear(alternate(b1, fp), fp)) {
+                size--;
+                return true;
+            }
+            return false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private boolean place(int bucket, short fp) {
+        int base = bucket * SLOTS;
+        for (int i = base; i < base + SLOTS; i++) {
+            if (table[i] == 0) {
+                table[i] = fp;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean holds(int bucket, short fp) {
+        int base = bucket * SLOTS;
+        for (int i = base; i < base + SLOTS; i++) {
+            if (table[i] == fp) return true;
+        }
+        return false;
+    }
+
+    private boolean clear(int bucket, short fp) {
+        int base = bucket * SLOTS;
+        for (int i = base; i < base + SLOTS; i++) {
+            if (table[i] == fp) {
+                table[i] = 0;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /* =====================================================
+     *  Statistiques
+     * ===================================================== */
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int capacity() {
+        return table.length;
+    }
+
+    /**
+     * Taux de faux positifs attendu au remplissage actuel : une clé absente compare son
+     * empreinte aux 2 × 4 places de ses seaux, chacune occupée avec la probabilité du taux
+     * de remplissage.
+     */
+    public double expectedFalsePositiveRate() {
+        double load = (double) size() / table.length;
+        return 1 - Math.pow(1 - 1.0 / 65535, 2 * SLOTS * load);
+    }
+}
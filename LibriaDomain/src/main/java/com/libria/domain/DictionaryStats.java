@@ -0,0 +1,46 @@
+package com.libria.domain;
+
+/**
+ * Statistiques du StringDictionary : nombre de valeurs distinctes, nombre de passages,
+ * instances dupliquées remplacées par la canonique et mémoire estimée ainsi économisée.
+ */
+public final class DictionaryStats {
+
+    private final int distinctValues;
+    private final long lookups;
+    private final long deduplicated;
+    private final long estimatedBytesSaved;
+
+    DictionaryStats(int distinctValues, long lookups, long deduplicated, long estimatedBytesSaved) {
+        this.distinctValues = distinctValues;
+        this.lookups = lookups;
+        this.deduplicated = deduplicated;
+        this.estimatedBytesSaved = estimatedBytesSaved;
+    }
+
+    public int getDistinctValues() {
+        return distinctValues;
+    }
+
+    public long getLookups() {
+        return lookups;
+    }
+
+    public long getDeduplicated() {
+        return deduplicated;
+    }
+
+    public long getEstimatedBytesSaved() {
+        return estimatedBytesSaved;
+    }
+
+    @Override
+    public String toString() {
+        return "DictionaryStats{" +
+                "distinctValues=" + distinctValues +
+                ", lookups=" + lookups +
+                ", deduplicated=" + deduplicated +
+                ", estimatedBytesSaved=" + estimatedBytesSaved +
+                '}';
+    }
+}
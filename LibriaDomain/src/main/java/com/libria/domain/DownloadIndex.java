@@ -0,0 +1,271 @@
+package com.libria.domain;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Relation user × livre des téléchargements, dans les deux sens : chaque livre et chaque
+ * user reçoit un identifiant entier dense, et on garde un CompactBitmap des users par livre
+ * et des livres par user. "Qui a téléchargé cet ISBN", "qu'ont ces users en commun" sont
+ * alors des opérations sur bitmaps, sans parcourir les listes des users.
+ *
+ * Chaque ligne (un user ou un livre) est son propre verrou : deux téléchargements de users
+ * et de livres différents ne se bloquent pas. Ordre des verrous : la ligne user avant la
+ * ligne livre. Une ligne qui se vide est rendue et son identifiant resservira, les bitmaps
+ * restent donc denses quand les users et les livres tournent.
+ */
+final class DownloadIndex {
+
+    private static final class Row {
+        final int id;
+        final String key;
+        CompactBitmap bits = new CompactBitmap();
+        boolean retired;   // identifiant rendu : la ligne ne sert plus (lu sous son verrou)
+
+        Row(int id, String key) {
+            this.id = id;
+            this.key = key;
+        }
+    }
+
+    // Un côté de la relation : clé <-> identifiant. Lecture sans verrou, attribution et
+    // restitution des identifiants sous le moniteur du côté (jamais de verrou de ligne pris dessous).
+    private static final class Side {
+        private final Map<String, Row> byKey = new ConcurrentHashMap<>();
+        private final ArrayDeque<Integer> free = new ArrayDeque<>();
+        private volatile Row[] byId = new Row[64];
+        private int next;
+
+        Row get(String key) {
+            return byKey.get(key);
+        }
+
+        // une ligne rendue garde sa place jusqu'à ce que l'identifiant resserve
+        Row row(int id) {
+            return byId[id];
+        }
+
+        Row getOrCreate(String key) {
+            Row row = byKey.get(key);
+            if (row != null) return row;
+            synchronized (this) {
+                row = byKey.get(key);
+                if (row != null) return row;
+                int id = free.isEmpty() ? next++ : free.pop();
+                Row[] rows = byId;
+                if (id == rows.length) rows = Arrays.copyOf(rows, id * 2);
+                rows[id] = row = new Row(id, key);
+                byId = rows;
+                byKey.put(key, row);
+                return row;
+            }
+        }
+
+        synchronized int allocated() {
+            return next;
+        }
+
+        // appelé sous le verrou de la ligne, une fois son bitmap vide
+        void retireIfEmpty(Row row) {
+            if (!row.bits.isEmpty()) return;
+            row.retired = true;
+            synchronized (this) {
+                byKey.remove(row.key, row);
+                free.push(row.id);
+            }
+        }
+    }
+
+    private final Side users = new Side();
+    private final Side books = new Side();
+
+    /* =====================================================
+     *  Écritures
+     * ===================================================== */
+
+    boolean add(String userId, String isbn) {
+        while (true) {
+            Row user = users.getOrCreate(userId);
+            Row book = books.getOrCreate(isbn);
+            synchronized (user) {
+                synchronized (book) {
+                    if (user.retired || book.retired) continue;   // vidée entre-temps : on relit
+                    if (!user.bits.add(book.id)) return false;
+                    book.bits.add(user.id);
+                    return true;
+                }
+            }
+        }
+    }
+
+    boolean remove(String userId, String isbn) {
+        while (true) {
+            Row user = users.get(userId);
+            Row book = books.get(isbn);
+            if (user == null || book == null) return false;
+            synchronized (user) {
+                synchronized (book) {
+                    if (user.retired || book.retired) continue;
+                    if (!user.bits.remove(book.id)) return false;
+                    book.bits.remove(user.id);
+                    users.retireIfEmpty(user);
+                    books.retireIfEmpty(book);
+                    return true;
+                }
+            }
+        }
+    }
+
+    /** Oublie tous les téléchargements du user et renvoie les ISBN qu'il avait. */
+    List<String> removeUser(String userId) {
+        while (true) {
+            Row user = users.get(userId);
+            if (user == null) return List.of();
+            synchronized (user) {
+                if (user.retired) continue;
+                List<String> isbns = new ArrayList<>(user.bits.cardinality());
+                user.bits.forEach(id -> {
+                    Row book = books.row(id);
+                    synchronized (book) {
+                        isbns.add(book.key);
+                        book.bits.remove(user.id);
+                        books.retireIfEmpty(book);
+                    }
+                });
+                user.bits = new CompactBitmap();
+                users.retireIfEmpty(user);
+                return isbns;
+            }
+        }
+    }
+
+    /**
+     * Oublie tous les téléchargements du livre et renvoie les users qui l'avaient.
+     * La ligne livre ne peut pas être gardée pendant qu'on prend celles des users (ordre
+     * des verrous) : on relit ses users puis on les retire un par un, jusqu'à ce qu'elle soit vide.
+     */
+    List<String> removeBook(String isbn) {
+        List<String> holders = new ArrayList<>();
+        while (true) {
+            Row book = books.get(isbn);
+            if (book == null) return holders;
+            int[] userIds;
+            synchronized (book) {
+                if (book.retired) continue;
+                userIds = book.bits.toArray();
+            }
+            if (userIds.length == 0) return holders;
+            for (int id : userIds) {
+                Row user = users.row(id);
+                synchronized (user) {
+                    synchronized (book) {
+                        if (book.retired || !user.bits.remove(book.id)) continue;
+                        book.bits.remove(user.id);
+                        holders.add(user.key);
+                        users.retireIfEmpty(user);
+                        books.retireIfEmpty(book);
+                    }
+                }
+            }
+        }
+    }
+
+    /* =====================================================
+     *  Lectures
+     * ===================================================== */
+
+    int downloadCount(String isbn) {
+        return read(books, isbn, 0, book -> book.bits.cardinality());
+    }
+
+    // sous le verrou du livre, ses users ne peuvent pas être rendus : leurs clés sont sûres
+    List<String> downloadersOf(String isbn) {
+        return read(books, isbn, List.of(), book -> keys(users, book.bits));
+    }
+
+    List<String> booksOf(String userId) {
+        return read(users, userId, List.of(), user -> keys(books, user.bits));
+    }
+
+    /** ISBN téléchargés par tous les users donnés (intersection, en partant du plus petit). */
+    List<String> commonBooks(Collection<String> userIds) {
+        List<Row> rows = new ArrayList<>(userIds.size());
+        List<CompactBitmap> sets = new ArrayList<>(userIds.size());
+        for (String userId : userIds) {
+            Row user = copy(users, userId, sets);
+            if (user == null) return List.of();
+            rows.add(user);
+        }
+        if (sets.isEmpty()) return List.of();
+        sets.sort(Comparator.comparingInt(CompactBitmap::cardinality));
+        CompactBitmap common = sets.get(0);
+        for (int i = 1; i < sets.size() && !common.isEmpty(); i++) {
+            common = CompactBitmap.and(common, sets.get(i));
+        }
+        return liveBooks(common, book -> rows.stream().allMatch(user -> book.bits.contains(user.id)));
+    }
+
+    /** ISBN téléchargés par au moins un des users donnés. */
+    List<String> anyBooks(Collection<String> userIds) {
+        List<Row> rows = new ArrayList<>(userIds.size());
+        List<CompactBitmap> sets = new ArrayList<>(userIds.size());
+        for (String userId : userIds) {
+            Row user = copy(users, userId, sets);
+            if (user != null) rows.add(user);
+        }
+        CompactBitmap union = new CompactBitmap();
+        for (CompactBitmap set : sets) union = CompactBitmap.or(union, set);
+        return liveBooks(union, book -> rows.stream().anyMatch(user -> book.bits.contains(user.id)));
+    }
+
+    /** Nombre de users ayant téléchargé les deux livres. */
+    int coDownloads(String isbnA, String isbnB) {
+        List<CompactBitmap> sets = new ArrayList<>(2);
+        if (copy(books, isbnA, sets) == null || copy(books, isbnB, sets) == null) return 0;
+        return CompactBitmap.andCardinality(sets.get(0), sets.get(1));
+    }
+
+    // identifiants déjà attribués (users + livres), rendus compris
+    int allocatedIds() {
+        return users.allocated() + books.allocated();
+    }
+
+    private static <T> T read(Side side, String key, T none, Function<Row, T> reader) {
+        while (true) {
+            Row row = side.get(key);
+            if (row == null) return none;
+            synchronized (row) {
+                if (!row.retired) return reader.apply(row);
+            }
+        }
+    }
+
+    // copie le bitmap de la ligne dans into et renvoie la ligne (null si la clé est absente)
+    private static Row copy(Side side, String key, List<CompactBitmap> into) {
+        return read(side, key, null, row -> {
+            into.add(row.bits.copy());
+            return row;
+        });
+    }
+
+    // Les identifiants calculés hors verrou ont pu être rendus puis réattribués : on ne garde
+    // que les livres encore vivants qui vérifient toujours la condition, lue sous leur verrou.
+    private List<String> liveBooks(CompactBitmap ids, Predicate<Row> stillMatches) {
+        List<String> result = new ArrayList<>(ids.cardinality());
+        ids.forEach(id -> {
+            Row book = books.row(id);
+            synchronized (book) {
+                if (!book.retired && stillMatches.test(book)) result.add(book.key);
+            }
+        });
+        return result;
+    }
+
+    private static List<String> keys(Side side, CompactBitmap bitmap) {
+        List<String> result = new ArrayList<>(bitmap.cardinality());
+        bitmap.forEach(id -> result.add(side.row(id).key));
+        return result;
+    }
+}
@@ -0,0 +1,51 @@
+package com.libria.domain;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Téléchargements d'un user en mémoire : un Set de livres (égalité par ISBN) dans l'ordre
+ * des téléchargements, indexé par ISBN. replace() met la nouvelle version d'un livre à la
+ * place de l'ancienne en temps constant, sans toucher à l'ordre.
+ */
+final class DownloadSet extends AbstractSet<Book> {
+
+    private final Map<String, Book> byIsbn = new LinkedHashMap<>();
+
+    @Override
+    public boolean add(Book book) {
+        return byIsbn.putIfAbsent(book.getIsbn(), book) == null;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return o instanceof Book book && byIsbn.remove(book.getIsbn()) != null;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Book book && byIsbn.containsKey(book.getIsbn());
+    }
+
+    /** Remplace le livre de même ISBN par current ; false s'il n'y en a pas. */
+    boolean replace(Book current) {
+        return byIsbn.replace(current.getIsbn(), current) != null;
+    }
+
+    @Override
+    public Iterator<Book> iterator() {
+        return byIsbn.values().iterator();
+    }
+
+    @Override
+    public int size() {
+        return byIsbn.size();
+    }
+
+    @Override
+    public void clear() {
+        byIsbn.clear();
+    }
+}
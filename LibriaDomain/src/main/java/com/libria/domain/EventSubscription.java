@@ -0,0 +1,11 @@
+package com.libria.domain;
+
+/** Abonnement à une Library, à fermer pour ne plus recevoir d'événements. */
+public interface EventSubscription extends AutoCloseable {
+
+    /** Événements reçus mais pas encore livrés (toujours 0 en mode synchrone). */
+    int pending();
+
+    @Override
+    void close();
+}
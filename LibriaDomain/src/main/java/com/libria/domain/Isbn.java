@@ -0,0 +1,113 @@
+package com.libria.domain;
+
+/**
+ * Forme canonique des ISBN : sans tirets ni espaces, ISBN-10 converti en ISBN-13, clé de
+ * contrôle vérifiée. "2-07-036822-X", "978-2-07-036822-8" et "9782070368228" désignent
+ * ainsi le même livre.
+ *
+ * Un ISBN-13 canonique tient dans un long (13 chiffres < 2^44) : c'est la clé du catalogue
+ * en mémoire. Les identifiants qui ne ressemblent pas à un ISBN (ni 10 ni 13 chiffres)
+ * sont gardés tels quels.
+ */
+public final class Isbn {
+
+    /** Renvoyé par pack() pour un identifiant qui n'est pas un ISBN-13 canonique. */
+    public static final long NOT_PACKED = -1;
+
+    private Isbn() {
+    }
+
+    /**
+     * Forme canonique de raw. Lève IllegalArgumentException pour un ISBN-10 / ISBN-13 dont
+     * la clé de contrôle est fausse.
+     */
+    public static String normalize(String raw) {
+        String key = tryNormalize(raw);
+        if (key == null && raw != null)
+            throw new IllegalArgumentException("ISBN invalide (clé de contrôle) : " + raw);
+        return key;
+    }
+
+    /**
+     * Comme normalize, mais null pour une clé de contrôle fausse. Sans exception : c'est le
+     * chemin de toutes les lectures, un ISBN mal saisi n'y coûte pas une pile d'appels.
+     */
+    public static String tryNormalize(String raw) {
+        if (raw == null) return null;
+        String compact = compact(raw);
+        if (compact == null) return raw;
+        if (compact.length() == 10) {
+            if (check10(compact) != compact.charAt(9)) return null;
+            String body = "978" + compact.substring(0, 9);
+            return body + check13(body);
+        }
+        return check13(compact) == compact.charAt(12) ? compact : null;
+    }
+
+    /**
+     * Clé pour retrouver un livre existant : la forme canonique, ou raw tel quel si sa clé de
+     * contrôle est fausse. Une lecture ne lève donc jamais d'exception sur un ISBN mal saisi,
+     * elle ne trouve simplement rien (sauf une ligne ancienne enregistrée sous cette forme).
+     */
+    public static String lookupKey(String raw) {
+        String key = tryNormalize(raw);
+        return key != null ? key : raw;
+    }
+
+    public static boolean isValid(String raw) {
+        return raw != null && compact(raw) != null && tryNormalize(raw) != null;
+    }
+
+    /** Valeur numérique d'un ISBN-13 canonique, NOT_PACKED pour tout autre identifiant. */
+    public static long pack(String canonical) {
+        if (canonical == null || canonical.length() != 13) return NOT_PACKED;
+        long value = 0;
+        for (int i = 0; i < 13; i++) {
+            char c = canonical.charAt(i);
+            if (c < '0' || c > '9') return NOT_PACKED;
+            value = value * 10 + (c - '0');
+        }
+        // 978 / 979 : pas de zéro en tête, unpack redonne exactement la chaîne
+        return canonical.charAt(0) == '0' ? NOT_PACKED : value;
+    }
+
+    public static String unpack(long packed) {
+        if (packed <= 0) throw new IllegalArgumentException("ISBN compacté invalide : " + packed);
+        return Long.toString(packed);
+    }
+
+    // chiffres seuls si raw a la forme d'un ISBN-10 (dernier caractère X possible) ou
+    // d'un ISBN-13, null sinon
+    private static String compact(String raw) {
+        StringBuilder out = new StringBuilder(13);
+        for (int i = 0; i < raw.length(); i++) {
+            char c = raw.charAt(i);
+            if (c == '-' || c == ' ') continue;
+            if (c >= '0' && c <= '9') {
+                out.append(c);
+            } else if ((c == 'X' || c == 'x') && out.length() == 9) {
+                out.append('X');
+            } else {
+                return null;
+            }
+            if (out.length() > 13) return null;
+        }
+        int n = out.length();
+        if (n == 10) return out.toString();
+        if (n == 13 && out.indexOf("X") < 0) return out.toString();
+        return null;
+    }
+
+    private static char check10(String digits) {
+        int sum = 0;
+        for (int i = 0; i < 9; i++) sum += (10 - i) * (digits.charAt(i) - '0');
+        int check = (11 - sum % 11) % 11;
+        return check == 10 ? 'X' : (char) ('0' + check);
+    }
+
+    private static char check13(String digits) {
+        int sum = 0;
+        for (int i = 0; i < 12; i++) sum += (i % 2 == 0 ? 1 : 3) * (digits.charAt(i) - '0');
+        return (char) ('0' + (10 - sum % 10) % 10);
+    }
+}
@@ -0,0 +1,86 @@
+package com.libria.domain;
+
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Publisher qui émet les éléments d'un itérateur au rythme de la demande du subscriber.
+ * Chaque abonnement ouvre son propre itérateur, rien n'est matérialisé à l'avance.
+ */
+final class IteratorPublisher<T> implements Flow.Publisher<T> {
+
+    private final Supplier<? extends Iterator<? extends T>> source;
+
+    IteratorPublisher(Supplier<? extends Iterator<? extends T>> source) {
+        this.source = source;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+        Objects.requireNonNull(subscriber, "subscriber");
+        IteratorSubscription subscription = new IteratorSubscription(subscriber, source.get());
+        subscriber.onSubscribe(subscription);
+        // une source vide se termine sans attendre de demande
+        subscription.drain();
+    }
+
+    private final class IteratorSubscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super T> subscriber;
+        private final Iterator<? extends T> iterator;
+        private final AtomicLong requested = new AtomicLong();
+        // évite la réentrance quand le subscriber appelle request() depuis onNext
+        private final AtomicInteger wip = new AtomicInteger();
+        private volatile boolean done;
+
+        IteratorSubscription(Flow.Subscriber<? super T> subscriber, Iterator<? extends T> iterator) {
+            this.subscriber = subscriber;
+            this.iterator = iterator;
+        }
+
+        @Override
+        public void request(long n) {
+            if (done) return;
+            if (n <= 0) {
+                done = true;
+                subscriber.onError(new IllegalArgumentException("La demande doit être positive : " + n));
+                return;
+            }
+            requested.getAndAccumulate(n, (current, add) -> {
+                long sum = current + add;
+                return sum < 0 ? Long.MAX_VALUE : sum;
+            });
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            done = true;
+        }
+
+        void drain() {
+            if (wip.getAndIncrement() != 0) return;
+            do {
+                try {
+                    while (!done) {
+                        if (!iterator.hasNext()) {
+                            done = true;
+                            subscriber.onComplete();
+                            break;
+                        }
+                        if (requested.get() == 0) break;
+                        T next = iterator.next();
+                        requested.decrementAndGet();
+                        subscriber.onNext(next);
+                    }
+                } catch (RuntimeException e) {
+                    done = true;
+                    subscriber.onError(e);
+                }
+            } while (wip.decrementAndGet() != 0);
+        }
+    }
+}
@@ -0,0 +1,321 @@
+package com.libria.domain;
+
+import com.libria.exception.BookAlreadyExistException;
+import com.libria.exception.BookNotFoundException;
+import com.libria.exception.StaleBookException;
+import com.libria.exception.UserAlreadyExistException;
+import com.libria.exception.UserNotFoundException;
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityExistsException;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.OptimisticLockException;
+import jakarta.persistence.PersistenceException;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Moteur JPA : livres, users et téléchargements en base. Les méthodes s'exécutent dans la
+ * transaction de l'appelant (ApplicationState, @Transactional) ; les entités renvoyées
+ * sont gérées par son EntityManager.
+ */
+public class JpaStore implements CatalogStore, UserStore {
+
+    private final EntityManager em;
+
+    public JpaStore(EntityManager em) {
+        if (em == null) throw new IllegalArgumentException("EntityManager null");
+        this.em = em;
+    }
+
+    /* =====================================================
+     *  Catalogue
+     * ===================================================== */
+
+    @Override
+    public boolean containsBook(String isbn) {
+        return isbn != null && em.find(Book.class, isbn) != null;
+    }
+
+    @Override
+    public Book getBook(String isbn) throws BookNotFoundException {
+        Book b = isbn == null ? null : em.find(Book.class, isbn);
+        if (b == null) {
+            throw new BookNotFoundException("Livre introuvable pour ISBN " + isbn);
+        }
+        return b;
+    }
+
+    @Override
+    public List<Book> listBooks() {
+        return em.createQuery("SELECT b FROM Book b", Book.class)
+                .getResultList();
+    }
+
+    @Override
+    public List<String> listIsbns() {
+        return em.createQuery("SELECT b.isbn FROM Book b", String.class)
+                .getResultList();
+    }
+
+    @Override
+    public int bookCount() {
+        return em.createQuery("SELECT COUNT(b) FROM Book b", Long.class)
+                .getSingleResult()
+                .intValue();
+    }
+
+    @Override
+    public List<Book> searchByTitle(String title) {
+        if (title == null) title = "";
+        return em.createQuery(
+                        "SELECT b FROM Book b WHERE LOWER(b.title) LIKE LOWER(:t)",
+                        Book.class)
+                .setParameter("t", "%" + title + "%")
+                .getResultList();
+    }
+
+    @Override
+    public List<Book> searchByAuthor(String author) {
+        if (author == null) author = "";
+        return em.createQuery(
+                        "SELECT b FROM Book b WHERE LOWER(b.author) LIKE LOWER(:a)",
+                        Book.class)
+                .setParameter("a", "%" + author + "%")
+                .getResultList();
+    }
+
+    @Override
+    public List<Book> searchByTitleOrAuthor(String q) {
+        if (q == null) q = "";
+        return em.createQuery("""
+                SELECT b FROM Book b
+                WHERE LOWER(b.title)  LIKE LOWER(CONCAT('%', :q, '%'))
+                   OR LOWER(b.author) LIKE LOWER(CONCAT('%', :q, '%'))
+                """, Book.class)
+                .setParameter("q", q)
+                .getResultList();
+    }
+
+    @Override
+    public List<Book> searchByGenre(String genre) {
+        if (genre == null) genre = "";
+        return em.createQuery("""
+                SELECT b FROM Book b
+                WHERE LOWER(b.genre) = LOWER(:g)
+                """, Book.class)
+                .setParameter("g", genre)
+                .getResultList();
+    }
+
+    // la base s'arrête à limit lignes grâce à l'index sur book_year
+    @Override
+    public List<Book> searchByYearRange(int from, int to, boolean newestFirst, int limit) {
+        if (from > to) throw new IllegalArgumentException("Intervalle d'années invalide.");
+        if (limit <= 0) throw new IllegalArgumentException("La limite doit être positive.");
+        String order = newestFirst ? "DESC" : "ASC";
+        return em.createQuery(
+                        "SELECT b FROM Book b WHERE b.year BETWEEN :from AND :to ORDER BY b.year " + order + ", b.isbn",
+                        Book.class)
+                .setParameter("from", from)
+                .setParameter("to", to)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    @Override
+    public void addBook(Book book) throws BookAlreadyExistException {
+        if (book == null) throw new IllegalArgumentException("Book null");
+        // pas de find avant : l'appelant a déjà cherché le livre (derrière le filtre), la clé
+        // primaire tranche la course. flush ici pour que le doublon remonte avec son type.
+        try {
+            em.persist(book);
+            em.flush();
+        } catch (EntityExistsException e) {
+            throw new BookAlreadyExistException("Livre déjà existant !");
+        } catch (PersistenceException e) {
+            throw new BookAlreadyExistException("Livre déjà existant : " + book.getIsbn());
+        }
+    }
+
+    // Pas de verrou sur la ligne : la colonne @Version fait échouer l'écriture si un autre
+    // admin a modifié le livre entre-temps
+    @Override
+    public Book updateBook(String isbn, Book updated, Long expectedVersion)
+            throws BookNotFoundException, StaleBookException {
+        if (updated == null) throw new IllegalArgumentException("Book null");
+        Book existing = getBook(isbn);
+        if (expectedVersion != null && existing.getVersion() != expectedVersion) {
+            throw new StaleBookException("Livre modifié entre-temps (version " + existing.getVersion()
+                    + ", attendue " + expectedVersion + ").");
+        }
+
+        if (updated.getTitle() != null && !updated.getTitle().isBlank()) {
+            existing.setTitle(updated.getTitle());
+        }
+        if (updated.getAuthor() != null && !updated.getAuthor().isBlank()) {
+            existing.setAuthor(updated.getAuthor());
+        }
+        if (updated.getGenre() != null && !updated.getGenre().isBlank()) {
+            existing.setGenre(updated.getGenre());
+        }
+        if (updated.getYear() > 0) {
+            existing.setYear(updated.getYear());
+        }
+        if (updated.getPdf() != null && !updated.getPdf().isBlank()) {
+            existing.setPdf(updated.getPdf());
+        }
+        if (updated.getCoverImage() != null && !updated.getCoverImage().isBlank()) {
+            existing.setCoverImage(updated.getCoverImage());
+        }
+        if (updated.isAvailable() != existing.isAvailable()) {
+            existing.setAvailable(updated.isAvailable());
+        }
+
+        try {
+            // flush ici pour que le conflit de version remonte avec son type, pas au commit
+            em.flush();
+        } catch (OptimisticLockException e) {
+            throw new StaleBookException("Livre modifié entre-temps : " + existing.getIsbn());
+        }
+        return existing;
+    }
+
+    @Override
+    public void removeBook(String isbn) throws BookNotFoundException {
+        Book existing = getBook(isbn);
+
+        // 1) Les users qui avaient le livre : leurs identifiants seulement, sans les charger
+        List<String> holders = em.createQuery(
+                        "SELECT u.userId FROM User u JOIN u.downloadedBooks b WHERE b.isbn = :isbn", String.class)
+                .setParameter("isbn", existing.getIsbn())
+                .getResultList();
+
+        // 2) Enlever le livre de tous les téléchargements : une seule requête sur la table de jointure
+        em.flush();
+        em.createNativeQuery("DELETE FROM user_book_downloads WHERE isbn = ?1")
+                .setParameter(1, existing.getIsbn())
+                .executeUpdate();
+        // Un user déjà chargé a encore le livre dans sa liste. Tout user chargé passe par le
+        // cache partagé (EclipseLink) : seuls ceux qui y sont peuvent être dans le contexte.
+        // getReference les y trouve sans requête ; on les détache puis on les oublie du cache.
+        Cache cache = em.getEntityManagerFactory().getCache();
+        for (String userId : holders) {
+            if (!cache.contains(User.class, userId)) continue;
+            em.detach(em.getReference(User.class, userId));
+            cache.evict(User.class, userId);
+        }
+
+        // 3) Supprimer le livre
+        em.remove(existing);
+    }
+
+    /* =====================================================
+     *  Users et téléchargements
+     * ===================================================== */
+
+    @Override
+    public User getUser(String userId) throws UserNotFoundException {
+        User u = userId == null ? null : em.find(User.class, userId);
+        if (u == null) {
+            throw new UserNotFoundException("Utilisateur introuvable : " + userId);
+        }
+        return u;
+    }
+
+    @Override
+    public User getUserByEmail(String email) throws UserNotFoundException {
+        if (email == null || email.isBlank()) {
+            throw new IllegalArgumentException("Email invalide.");
+        }
+        return em.createQuery(
+                        "SELECT u FROM User u WHERE LOWER(u.email) = :mail",
+                        User.class)
+                .setParameter("mail", email.toLowerCase())
+                .getResultStream()
+                .findFirst()
+                .orElseThrow(() -> new UserNotFoundException("Aucun utilisateur trouvé avec cet email."));
+    }
+
+    @Override
+    public List<User> listUsers() {
+        return em.createQuery("SELECT u FROM User u", User.class)
+                .getResultList();
+    }
+
+    @Override
+    public boolean hasAdmin() {
+        return em.createQuery("SELECT COUNT(a) FROM Admin a", Long.class)
+                .getSingleResult() > 0;
+    }
+
+    @Override
+    public void registerUser(User user) throws UserAlreadyExistException {
+        if (user == null) throw new IllegalArgumentException("User null");
+        if (em.find(User.class, user.getUserId()) != null) {
+            throw new UserAlreadyExistException("Cet utilisateur existe déja !");
+        }
+        if (user.getEmail() != null && emailTaken(user.getEmail(), user.getUserId())) {
+            throw new UserAlreadyExistException("Email déjà utilisé : " + user.getEmail());
+        }
+        em.persist(user);
+    }
+
+    @Override
+    public User updateUser(String userId, String name, String email, String password)
+            throws UserNotFoundException, UserAlreadyExistException {
+        User u = getUser(userId);  // entité gérée : pas besoin de merge
+        if (email != null) {
+            if (emailTaken(email, userId)) {
+                throw new UserAlreadyExistException("Email déjà utilisé : " + email);
+            }
+            u.setEmail(email);
+        }
+        if (name != null) u.setName(name);
+        if (password != null) u.setPassword(password);
+        return u;
+    }
+
+    // email déjà porté par un autre user que userId
+    private boolean emailTaken(String email, String userId) {
+        return em.createQuery(
+                        "SELECT COUNT(u) FROM User u " +
+                                "WHERE LOWER(u.email) = LOWER(:mail) " +
+                                "AND u.userId <> :id",
+                        Long.class)
+                .setParameter("mail", email.toLowerCase())
+                .setParameter("id", userId)
+                .getSingleResult() > 0;
+    }
+
+    @Override
+    public void removeUser(String userId) throws UserNotFoundException {
+        em.remove(getUser(userId));
+    }
+
+    @Override
+    public void addDownload(String userId, String isbn)
+            throws UserNotFoundException, BookNotFoundException, BookAlreadyExistException {
+        User u = getUser(userId);
+        u.downloadBook(getBook(isbn)); // ManyToMany gérée par JPA
+    }
+
+    @Override
+    public void removeDownload(String userId, String isbn) throws UserNotFoundException, BookNotFoundException {
+        User u = getUser(userId);
+        u.removeBook(getBook(isbn));
+    }
+
+    @Override
+    public Map<String, Integer> downloadCounts() {
+        Map<String, Integer> counts = new HashMap<>();
+        for (Object[] row : em.createQuery(
+                        "SELECT b.isbn, COUNT(u) FROM User u JOIN u.downloadedBooks b GROUP BY b.isbn",
+                        Object[].class)
+                .getResultList()) {
+            counts.put((String) row[0], ((Long) row[1]).intValue());
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,40 @@
+package com.libria.domain;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Index secondaire : forme de recherche d'un champ (SearchKey) vers les ISBN concernés.
+ * Utilisé pour le genre et l'auteur, la recherche coûte la taille du résultat.
+ */
+class KeyIndex {
+
+    private final Map<String, Set<String>> isbnsByKey = new ConcurrentHashMap<>();
+
+    // key : valeur déjà passée par SearchKey.fold
+    void add(String isbn, String key) {
+        if (key == null) return;
+        isbnsByKey.compute(key, (k, set) -> {
+            if (set == null) set = ConcurrentHashMap.newKeySet();
+            set.add(isbn);
+            return set;
+        });
+    }
+
+    void remove(String isbn, String key) {
+        if (key == null) return;
+        isbnsByKey.computeIfPresent(key, (k, set) -> {
+            set.remove(isbn);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    // Vue en lecture seule, pas de copie ; key est déjà repliée
+    Set<String> get(String key) {
+        if (key == null) return Set.of();
+        Set<String> set = isbnsByKey.get(key);
+        return set == null ? Set.of() : Collections.unmodifiableSet(set);
+    }
+}
@@ -2,71 +2,767 @@ package com.libria.domain;
 import com.libria.exception.*;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 
-public class Library {
-    private Map<String, Book> catalogByIsbn;
-    private Map<String, User> usersById;
-    private Map<String, User> usersByEmail;
+public class Library implements Catalog {
+    // nombre de verrous pour les écritures (puissance de 2) : deux ISBN/users différents
+    // ne se bloquent que s'ils tombent sur le même verrou
+    private static final int LOCK_STRIPES = 64;
+    private static final long ANY_VERSION = -1;   // mise à jour sans contrôle de version
+
+    // maps concurrentes : les lectures ne prennent jamais de verrou
+    private final CatalogMap catalogByIsbn;
+    private final Map<String, User> usersById;
+    private final Map<String, User> usersByEmail;
+    // nombre d'admins inscrits, tenu à jour par registerUser / removeUser (hasAdmin à chaque login)
+    private final AtomicInteger admins = new AtomicInteger();
+    private final Object[] bookLocks;
+    private final Object[] userLocks;
+    // genres et auteurs des livres de cette Library, une instance par valeur distincte
+    private volatile StringDictionary dictionary = new StringDictionary();
+    private final TrigramIndex titleIndex;
+    private final KeyIndex genreIndex;
+    private final KeyIndex authorIndex;
+    private final YearIndex yearIndex;
+    private final SuggestIndex suggestIndex;
+    // vues immuables publiées à chaque écriture, pour les lecteurs qui parcourent tout
+    private final AtomicReference<Snapshot<Book>> bookSnapshot;
+    private final AtomicReference<Snapshot<User>> userSnapshot;
+    // téléchargements user × livre en bitmaps, pour les questions "qui / en commun"
+    private final DownloadIndex downloads;
+    private final List<LibraryListener> listeners;
+    // journal optionnel : chaque mutation y est ajoutée sous le verrou de sa clé
+    private volatile LibraryJournal journal;
 
     public Library() {
-        this.catalogByIsbn = new HashMap<>();
-        this.usersById = new HashMap<>();
-        this.usersByEmail = new HashMap<>();
+        this.catalogByIsbn = new CatalogMap();
+        this.usersById = new ConcurrentHashMap<>();
+        this.usersByEmail = new ConcurrentHashMap<>();
+        this.bookLocks = newLocks();
+        this.userLocks = newLocks();
+        this.titleIndex = new TrigramIndex();
+        this.genreIndex = new KeyIndex();
+        this.authorIndex = new KeyIndex();
+        this.yearIndex = new YearIndex();
+        this.suggestIndex = new SuggestIndex();
+        this.bookSnapshot = new AtomicReference<>(Snapshot.empty());
+        this.userSnapshot = new AtomicReference<>(Snapshot.empty());
+        this.downloads = new DownloadIndex();
+        this.listeners = new CopyOnWriteArrayList<>();
+    }
+
+    private static Object[] newLocks() {
+        Object[] locks = new Object[LOCK_STRIPES];
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+        return locks;
+    }
+
+    private static int stripeIndex(String key) {
+        int h = key.hashCode();
+        return (h ^ (h >>> 16)) & (LOCK_STRIPES - 1);
+    }
+
+    private static Object stripe(Object[] locks, String key) {
+        return locks[stripeIndex(key)];
+    }
+
+
+    /** Journalise les mutations suivantes (null pour arrêter). */
+    public void attachJournal(LibraryJournal journal) {
+        this.journal = journal;
+    }
+
+    // La mutation est appliquée puis journalisée sous le même verrou (ordre du journal =
+    // ordre des écritures par clé). Une fois le verrou rendu, on attend le fsync, puis de la
+    // place dans les files des abonnés asynchrones (contre-pression sans bloquer les autres clés).
+    private void finishWrite(LibraryJournal journal, long seq) {
+        if (journal != null) journal.awaitDurable(seq);
+        for (LibraryListener listener : listeners) {
+            if (listener instanceof AsyncEventDispatcher async) async.awaitCapacity();
+        }
+    }
+
+    // Journalise une mutation appliquée aux maps mais pas encore publiée (snapshot, événements).
+    // Si l'écriture échoue, undo la défait avant de relancer : la mémoire ne passe pas devant le disque.
+    private static long journaled(LibraryJournal journal, ToLongFunction<LibraryJournal> append, Runnable undo) {
+        if (journal == null) return 0;
+        try {
+            return append.applyAsLong(journal);
+        } catch (JournalException e) {
+            undo.run();
+            throw e;
+        }
     }
 
+    /* =====================================================
+     *  Événements
+     * ===================================================== */
+
+    /**
+     * Abonnement synchrone : le listener est appelé par le thread qui écrit, sous le verrou
+     * de la clé modifiée (ordre garanti par clé).
+     */
+    public EventSubscription subscribe(LibraryListener listener) {
+        if (listener == null) throw new IllegalArgumentException("Listener null");
+        listeners.add(listener);
+        return new EventSubscription() {
+            @Override
+            public int pending() {
+                return 0;
+            }
+
+            @Override
+            public void close() {
+                listeners.remove(listener);
+            }
+        };
+    }
+
+    /**
+     * Abonnement asynchrone : les événements passent par une file de capacity places et sont
+     * livrés par lots d'au plus maxBatch (onEvents). File pleine = les écrivains attendent,
+     * après avoir rendu leurs verrous.
+     * Le listener ne doit pas écrire dans cette Library.
+     */
+    public EventSubscription subscribeAsync(LibraryListener listener, int capacity, int maxBatch) {
+        if (listener == null) throw new IllegalArgumentException("Listener null");
+        AsyncEventDispatcher[] self = new AsyncEventDispatcher[1];
+        self[0] = new AsyncEventDispatcher(listener, capacity, maxBatch, () -> listeners.remove(self[0]));
+        listeners.add(self[0]);
+        return self[0];
+    }
+
+    // un listener en erreur ne doit pas faire échouer une écriture déjà appliquée
+    private void emit(LibraryEvent event) {
+        for (LibraryListener listener : listeners) {
+            try {
+                listener.onEvent(event);
+            } catch (RuntimeException e) {
+                Thread current = Thread.currentThread();
+                current.getUncaughtExceptionHandler().uncaughtException(current, e);
+            }
+        }
+    }
+
+    private boolean observed() {
+        return !listeners.isEmpty();
+    }
 
     public String root() {
         return "Bienvenue chez Libria ;)";
     }
 
     public void registerUser(User user) throws UserAlreadyExistException {
-        if (usersById.containsKey(user.getUserId())) {
-            throw new UserAlreadyExistException("Cet utilisateur existe déja !");
+        String emailKey = user.getEmail().toLowerCase();
+        // le verrou de l'id sérialise register/remove d'un même user, l'unicité de l'email
+        // est garantie par le putIfAbsent atomique
+        LibraryJournal journal = this.journal;
+        long seq = 0;
+        synchronized (stripe(userLocks, user.getUserId())) {
+            if (usersById.putIfAbsent(user.getUserId(), user) != null) {
+                throw new UserAlreadyExistException("Cet utilisateur existe déja !");
+            }
+            if (usersByEmail.putIfAbsent(emailKey, user) != null) {
+                usersById.remove(user.getUserId(), user);
+                throw new UserAlreadyExistException("Cet email est déjà utilisé.");
+            }
+            seq = journaled(journal, j -> j.userRegistered(user), () -> {
+                usersByEmail.remove(emailKey, user);
+                usersById.remove(user.getUserId(), user);
+            });
+            if (user instanceof Admin) admins.incrementAndGet();
+            userSnapshot.updateAndGet(s -> s.with(user.getUserId(), user));
+            // un user rechargé (snapshot, JPA) arrive avec ses téléchargements
+            for (Book book : user.downloadedBooksView()) {
+                if (downloads.add(user.getUserId(), book.getIsbn())) suggestIndex.adjustWeight(book.getIsbn(), 1);
+            }
+            if (observed()) emit(new LibraryEvent.UserRegistered(user));
+        }
+        finishWrite(journal, seq);
+    }
+
+    /**
+     * Change le nom, l'email et/ou le mot de passe (null = inchangé). L'email reste unique :
+     * le nouveau est réservé avant de libérer l'ancien.
+     */
+    void updateUser(String userId, String name, String email, String password)
+            throws UserNotFoundException, UserAlreadyExistException {
+        if (userId == null || userId.isBlank()) {
+            throw new IllegalArgumentException("ID utilisateur invalide.");
         }
-        if (usersByEmail.containsKey(user.getEmail().toLowerCase())) {
-            throw new UserAlreadyExistException("Cet email est déjà utilisé.");
+        LibraryJournal journal = this.journal;
+        long seq = 0;
+        synchronized (stripe(userLocks, userId)) {
+            User user = usersById.get(userId);
+            if (user == null) {
+                throw new UserNotFoundException("Utilisateur introuvable : " + userId);
+            }
+            String oldName = user.getName(), oldEmail = user.getEmail(), oldPassword = user.getPassword();
+            String before = oldEmail.toLowerCase();
+            String after = email == null ? before : email.toLowerCase();
+            if (!before.equals(after)) {
+                User holder = usersByEmail.putIfAbsent(after, user);
+                if (holder != null && holder != user) {
+                    throw new UserAlreadyExistException("Cet email est déjà utilisé.");
+                }
+            }
+            if (email != null) user.setEmail(email);
+            if (name != null) user.setName(name);
+            if (password != null) user.setPassword(password);
+            // l'ancien email n'est libéré qu'une fois la modification journalisée
+            seq = journaled(journal, j -> j.userUpdated(user), () -> {
+                if (!before.equals(after)) usersByEmail.remove(after, user);
+                user.setEmail(oldEmail);
+                user.setName(oldName);
+                user.setPassword(oldPassword);
+            });
+            if (!before.equals(after)) usersByEmail.remove(before, user);
+            if (observed()) emit(new LibraryEvent.UserUpdated(user));
         }
-        usersById.put(user.getUserId(), user);
-        usersByEmail.put(user.getEmail().toLowerCase(), user);
+        finishWrite(journal, seq);
     }
 
     void addBook(Book book) {
         if (book == null) throw new IllegalArgumentException("Book null");
-        if (catalogByIsbn.containsKey(book.getIsbn()))
+        book.canonicalizeIsbn();
+        book.internMetadata(dictionary);
+        LibraryJournal journal = this.journal;
+        long seq = 0;
+        synchronized (stripe(bookLocks, book.getIsbn())) {
+            insertLocked(book);
+            seq = journaled(journal, j -> j.bookAdded(book), () -> deleteLocked(book.getIsbn()));
+            publish(book);
+            if (observed()) emit(new LibraryEvent.BookAdded(book));
+        }
+        finishWrite(journal, seq);
+    }
+
+    BatchResult addBooks(Collection<Book> books) {
+        if (books == null) throw new IllegalArgumentException("Liste de livres null");
+        return applyBatch(BookBatch.adding(books));
+    }
+
+    void removeBook(String rawIsbn) {
+        if (rawIsbn == null || rawIsbn.isBlank()) throw new IllegalArgumentException("ISBN invalide");
+        String isbn = Isbn.lookupKey(rawIsbn);
+        LibraryJournal journal = this.journal;
+        long seq = 0;
+        synchronized (stripe(bookLocks, isbn)) {
+            Book removed = deleteLocked(isbn);
+            seq = journaled(journal, j -> j.bookRemoved(isbn), () -> insertLocked(removed));
+            bookSnapshot.updateAndGet(s -> s.without(isbn));
+            if (observed()) emit(new LibraryEvent.BookRemoved(isbn, removed));
+        }
+        dropDownloads(isbn);
+        finishWrite(journal, seq);
+    }
+
+    // Cascade : l'index inverse donne directement les users qui avaient le livre, sans
+    // parcourir les autres. Appelé après le retrait du catalogue (voir downloadBook).
+    private void dropDownloads(String isbn) {
+        List<String> holders = downloads.removeBook(isbn);
+        if (holders.isEmpty()) return;
+        Book probe = probe(isbn);
+        for (String userId : holders) {
+            synchronized (stripe(userLocks, userId)) {
+                User user = usersById.get(userId);
+                if (user != null) user.discardBook(probe);
+            }
+        }
+    }
+
+    // Book.equals ne regarde que l'ISBN : pas besoin que le livre soit encore au catalogue
+    private static Book probe(String isbn) {
+        Book book = new Book();
+        book.setIsbn(isbn);
+        return book;
+    }
+
+    // appelé sous le verrou de l'ISBN ; le CAS ne fait que publier, il ne bloque personne
+    private void publish(Book book) {
+        bookSnapshot.updateAndGet(s -> s.with(book.getIsbn(), book));
+    }
+
+    private void indexBook(String isbn, Book book) {
+        titleIndex.add(isbn, book.titleKey());
+        genreIndex.add(isbn, book.genreKey());
+        authorIndex.add(isbn, book.authorKey());
+        yearIndex.add(isbn, book.getYear());
+        suggestIndex.put(book, () -> downloads.downloadCount(isbn));
+    }
+
+    private void unindexBook(String isbn, Book book) {
+        titleIndex.remove(isbn, book.titleKey());
+        genreIndex.remove(isbn, book.genreKey());
+        authorIndex.remove(isbn, book.authorKey());
+        yearIndex.remove(isbn, book.getYear());
+        suggestIndex.remove(isbn);
+    }
+
+    // Mise à jour partielle : on ne modifie que les champs fournis, et on garde les index à jour
+    void updateBook(String rawIsbn, Book updated) {
+        updateBook(rawIsbn, updated, ANY_VERSION);
+    }
+
+    /**
+     * Mise à jour optimiste : appliquée seulement si le livre est encore à expectedVersion
+     * (celle lue par l'appelant), sinon StaleBookException et rien n'est modifié.
+     */
+    void updateBook(String rawIsbn, Book updated, long expectedVersion) {
+        if (rawIsbn == null || rawIsbn.isBlank()) throw new IllegalArgumentException("ISBN invalide");
+        if (updated == null) throw new IllegalArgumentException("Book null");
+        String isbn = Isbn.lookupKey(rawIsbn);
+        LibraryJournal journal = this.journal;
+        long seq = 0;
+        synchronized (stripe(bookLocks, isbn)) {
+            Book existing = existingLocked(isbn);
+            Book next = mergeLocked(existing, updated, expectedVersion);
+            seq = journaled(journal, j -> j.bookUpdated(next), () -> swapLocked(next, existing));
+            publish(next);
+            emitUpdate(existing, next);
+        }
+        refreshDownloads(isbn);
+        finishWrite(journal, seq);
+    }
+
+    /**
+     * Rejeu du journal : installe le livre tel qu'enregistré, version comprise. Le dériver
+     * par nextVersion referait passer un If-Match lu avant l'arrêt sur une autre version.
+     */
+    void restoreBook(Book book) {
+        if (book == null) throw new IllegalArgumentException("Book null");
+        book.canonicalizeIsbn();
+        book.internMetadata(dictionary);
+        String isbn = book.getIsbn();
+        LibraryJournal journal = this.journal;
+        long seq = 0;
+        synchronized (stripe(bookLocks, isbn)) {
+            Book existing = existingLocked(isbn);
+            swapLocked(existing, book);
+            seq = journaled(journal, j -> j.bookUpdated(book), () -> swapLocked(book, existing));
+            publish(book);
+            emitUpdate(existing, book);
+        }
+        refreshDownloads(isbn);
+        finishWrite(journal, seq);
+    }
+
+    void setAvailability(String rawIsbn, boolean available) {
+        if (rawIsbn == null || rawIsbn.isBlank()) throw new IllegalArgumentException("ISBN invalide");
+        String isbn = Isbn.lookupKey(rawIsbn);
+        LibraryJournal journal = this.journal;
+        long seq = 0;
+        synchronized (stripe(bookLocks, isbn)) {
+            Book existing = existingLocked(isbn);
+            Book next = existing.nextVersion();
+            next.setAvailable(available);
+            swapLocked(existing, next);
+            seq = journaled(journal, j -> j.bookUpdated(next), () -> swapLocked(next, existing));
+            publish(next);
+            emitUpdate(existing, next);
+        }
+        refreshDownloads(isbn);
+        finishWrite(journal, seq);
+    }
+
+    // Les users gardent le livre tel qu'au téléchargement : on leur passe la version en place.
+    // Appelé après la publication, hors du verrou de l'ISBN (comme dropDownloads).
+    private void refreshDownloads(String isbn) {
+        for (String userId : downloads.downloadersOf(isbn)) {
+            synchronized (stripe(userLocks, userId)) {
+                User user = usersById.get(userId);
+                Book current = catalogByIsbn.get(isbn);
+                if (user != null && current != null) user.refreshBook(current);
+            }
+        }
+    }
+
+    /* Corps des écritures, appelés sous le verrou de l'ISBN : maps et index seulement,
+     * le journal, la publication du snapshot et les événements sont faits par l'appelant.
+     * Chacun se défait par son inverse (insert/delete, swap dans l'autre sens). */
+
+    private void insertLocked(Book book) {
+        if (catalogByIsbn.putIfAbsent(book) != null)
             throw new BookAlreadyExistException("Livre déjà existant !");
-        catalogByIsbn.put(book.getIsbn(), book);
+        indexBook(book.getIsbn(), book);
+    }
+
+    private Book deleteLocked(String isbn) {
+        Book removed = catalogByIsbn.remove(isbn);
+        if (removed == null)
+            throw new BookNotFoundException("Livre introuvable !");
+        unindexBook(isbn, removed);
+        return removed;
     }
 
-    void removeBook(String isbn) {
-        if (isbn == null || isbn.isBlank()) throw new IllegalArgumentException("ISBN invalide");
-        if (!catalogByIsbn.containsKey(isbn))
+    private Book existingLocked(String isbn) {
+        Book existing = catalogByIsbn.get(isbn);
+        if (existing == null)
             throw new BookNotFoundException("Livre introuvable !");
-        catalogByIsbn.remove(isbn);
+        return existing;
+    }
+
+    private void emitUpdate(Book existing, Book next) {
+        if (!observed()) return;
+        List<LibraryEvent.FieldChange> changes = diff(bookFields(existing), bookFields(next));
+        if (!changes.isEmpty()) emit(new LibraryEvent.BookUpdated(next, changes));
+    }
+
+    private static final String[] BOOK_FIELDS = {"title", "author", "year", "genre", "available", "coverImage", "pdf"};
+
+    private static Object[] bookFields(Book book) {
+        return new Object[]{book.getTitle(), book.getAuthor(), book.getYear(), book.getGenre(),
+                book.isAvailable(), book.getCoverImage(), book.getPdf()};
+    }
+
+    private static List<LibraryEvent.FieldChange> diff(Object[] before, Object[] after) {
+        List<LibraryEvent.FieldChange> changes = new ArrayList<>();
+        for (int i = 0; i < BOOK_FIELDS.length; i++) {
+            if (!Objects.equals(before[i], after[i])) {
+                changes.add(new LibraryEvent.FieldChange(BOOK_FIELDS[i], before[i], after[i]));
+            }
+        }
+        return changes;
+    }
+
+    // construit la version suivante du livre à partir des champs fournis, puis l'installe
+    private Book mergeLocked(Book existing, Book updated, long expectedVersion) {
+        if (expectedVersion != ANY_VERSION && existing.getVersion() != expectedVersion)
+            throw new StaleBookException("Livre modifié entre-temps (version " + existing.getVersion()
+                    + ", attendue " + expectedVersion + ").");
+
+        Book next = existing.nextVersion();
+        if (updated.getTitle() != null && !updated.getTitle().isBlank()) {
+            next.setTitle(updated.getTitle());
+        }
+        if (updated.getAuthor() != null && !updated.getAuthor().isBlank()) {
+            next.setAuthor(updated.getAuthor());
+        }
+        if (updated.getGenre() != null && !updated.getGenre().isBlank()) {
+            next.setGenre(updated.getGenre());
+        }
+        if (updated.getYear() > 0) {
+            next.setYear(updated.getYear());
+        }
+        if (updated.getPdf() != null && !updated.getPdf().isBlank()) {
+            next.setPdf(updated.getPdf());
+        }
+        if (updated.getCoverImage() != null && !updated.getCoverImage().isBlank()) {
+            next.setCoverImage(updated.getCoverImage());
+        }
+        next.setAvailable(updated.isAvailable());
+        next.internMetadata(dictionary);
+        swapLocked(existing, next);
+        return next;
+    }
+
+    // Remplace existing par next dans le catalogue (CAS) et déplace les entrées d'index qui
+    // changent. Les lecteurs voient l'une ou l'autre version, jamais un livre à moitié modifié.
+    private void swapLocked(Book existing, Book next) {
+        String isbn = next.getIsbn();
+        if (!catalogByIsbn.replace(existing, next))
+            throw new StaleBookException("Livre modifié entre-temps : " + isbn);
+        if (!Objects.equals(existing.titleKey(), next.titleKey())) {
+            titleIndex.remove(isbn, existing.titleKey());
+            titleIndex.add(isbn, next.titleKey());
+        }
+        if (!Objects.equals(existing.authorKey(), next.authorKey())) {
+            authorIndex.remove(isbn, existing.authorKey());
+            authorIndex.add(isbn, next.authorKey());
+        }
+        if (!Objects.equals(existing.genreKey(), next.genreKey())) {
+            genreIndex.remove(isbn, existing.genreKey());
+            genreIndex.add(isbn, next.genreKey());
+        }
+        if (existing.getYear() != next.getYear()) {
+            yearIndex.remove(isbn, existing.getYear());
+            yearIndex.add(isbn, next.getYear());
+        }
+        // même entrée (le poids est gardé), qui pointe désormais sur la nouvelle version
+        suggestIndex.put(next, () -> 0);
+    }
+
+    /* =====================================================
+     *  Écritures par lots
+     * ===================================================== */
+
+    /**
+     * Applique le lot d'un bloc : les verrous de tous les ISBN concernés sont pris une seule
+     * fois (dans l'ordre, pas d'interblocage), les opérations sont appliquées dans l'ordre du
+     * lot, puis un seul snapshot est publié et un seul fsync attendu.
+     * Une opération invalide est refusée seule, avec son motif dans le résultat.
+     */
+    BatchResult applyBatch(BookBatch batch) {
+        if (batch == null) throw new IllegalArgumentException("Lot null");
+        List<BookBatch.Operation> ops = batch.operations();
+        String[] errors = new String[ops.size()];
+        String[] keys = new String[ops.size()];   // ISBN canoniques
+        boolean[] stripes = new boolean[LOCK_STRIPES];
+        for (int i = 0; i < ops.size(); i++) {
+            BookBatch.Operation op = ops.get(i);
+            errors[i] = validate(op);
+            if (errors[i] != null) continue;
+            // seul l'ajout vérifie la clé de contrôle, les autres opérations cherchent un livre existant
+            keys[i] = op.kind() == BookBatch.Kind.ADD ? Isbn.tryNormalize(op.isbn()) : Isbn.lookupKey(op.isbn());
+            if (keys[i] == null) {
+                errors[i] = "ISBN invalide (clé de contrôle)";
+                continue;
+            }
+            if (op.kind() == BookBatch.Kind.ADD) {
+                op.book().canonicalizeIsbn();
+                op.book().internMetadata(dictionary);
+            }
+            stripes[stripeIndex(keys[i])] = true;
+        }
+
+        LibraryJournal journal = this.journal;
+        long[] seq = {0};
+        JournalException[] failure = new JournalException[1];
+        List<String> removed = new ArrayList<>();
+        List<String> updated = new ArrayList<>();
+        withStripes(bookLocks, stripes, 0, () -> {
+            // ISBN -> version à publier (null = supprimé), appliqué en un seul passage
+            Map<String, Book> changes = new LinkedHashMap<>();
+            List<LibraryEvent> events = new ArrayList<>();
+            for (int i = 0; i < ops.size() && failure[0] == null; i++) {
+                if (errors[i] != null) continue;
+                BookBatch.Operation op = ops.get(i);
+                String isbn = keys[i];
+                try {
+                    switch (op.kind()) {
+                        case ADD -> {
+                            Book book = op.book();
+                            insertLocked(book);
+                            seq[0] = journaled(journal, j -> j.bookAdded(book), () -> deleteLocked(isbn));
+                            changes.put(isbn, book);
+                            events.add(new LibraryEvent.BookAdded(book));
+                        }
+                        case UPDATE -> {
+                            Book existing = existingLocked(isbn);
+                            Book next = mergeLocked(existing, op.book(), ANY_VERSION);
+                            seq[0] = journaled(journal, j -> j.bookUpdated(next), () -> swapLocked(next, existing));
+                            changes.put(isbn, next);
+                            updated.add(isbn);
+                            List<LibraryEvent.FieldChange> diff = diff(bookFields(existing), bookFields(next));
+                            if (!diff.isEmpty()) events.add(new LibraryEvent.BookUpdated(next, diff));
+                        }
+                        case REMOVE -> {
+                            Book gone = deleteLocked(isbn);
+                            seq[0] = journaled(journal, j -> j.bookRemoved(isbn), () -> insertLocked(gone));
+                            changes.put(isbn, null);
+                            removed.add(isbn);
+                            events.add(new LibraryEvent.BookRemoved(isbn, gone));
+                        }
+                    }
+                } catch (BookAlreadyExistException | BookNotFoundException e) {
+                    errors[i] = e.getMessage();
+                } catch (JournalException e) {
+                    // l'opération est défaite ; celles déjà journalisées sont publiées quand même
+                    failure[0] = e;
+                }
+            }
+            bookSnapshot.updateAndGet(s -> {
+                for (Map.Entry<String, Book> change : changes.entrySet()) {
+                    s = change.getValue() == null
+                            ? s.without(change.getKey())
+                            : s.with(change.getKey(), change.getValue());
+                }
+                return s;
+            });
+            if (observed()) events.forEach(this::emit);
+        });
+        for (String isbn : removed) {
+            dropDownloads(isbn);
+        }
+        for (String isbn : updated) {
+            refreshDownloads(isbn);
+        }
+        finishWrite(journal, seq[0]);
+        if (failure[0] != null) throw failure[0];
+
+        List<BatchResult.Item> items = new ArrayList<>(ops.size());
+        for (int i = 0; i < ops.size(); i++) {
+            items.add(new BatchResult.Item(i, ops.get(i).isbn(), errors[i]));
+        }
+        return new BatchResult(items);
+    }
+
+    private static String validate(BookBatch.Operation op) {
+        if (op.isbn() == null || op.isbn().isBlank()) return "ISBN invalide";
+        if (op.kind() != BookBatch.Kind.REMOVE && op.book() == null) return "Book null";
+        return null;
+    }
+
+    // prend récursivement les verrous marqués, par indice croissant, puis exécute action
+    private static void withStripes(Object[] locks, boolean[] stripes, int from, Runnable action) {
+        int i = from;
+        while (i < stripes.length && !stripes[i]) i++;
+        if (i == stripes.length) {
+            action.run();
+            return;
+        }
+        synchronized (locks[i]) {
+            withStripes(locks, stripes, i + 1, action);
+        }
+    }
+
+    // Tous les verrous users, dans l'ordre : aucun user ne change pendant action (snapshot).
+    // À prendre avant le verrou du journal, comme le font les écritures.
+    void withAllUserLocks(Runnable action) {
+        boolean[] all = new boolean[LOCK_STRIPES];
+        Arrays.fill(all, true);
+        withStripes(userLocks, all, 0, action);
+    }
+
+    // Tous les verrous, livres puis users (aucune écriture ne prend un verrou livre sous un
+    // verrou user) : plus aucune mutation n'est entre son journal et sa publication.
+    void withAllLocks(Runnable action) {
+        boolean[] all = new boolean[LOCK_STRIPES];
+        Arrays.fill(all, true);
+        withStripes(bookLocks, all, 0, () -> withAllUserLocks(action));
     }
 
     public void removeUser(String userId) throws UserNotFoundException {
         if (userId == null || userId.isBlank()) {
             throw new IllegalArgumentException("ID utilisateur invalide.");
         }
-        // Vérifie si l'utilisateur existe
-        if (!usersById.containsKey(userId)) {
-            throw new UserNotFoundException("Utilisateur introuvable : " + userId);
+        LibraryJournal journal = this.journal;
+        long seq = 0;
+        synchronized (stripe(userLocks, userId)) {
+            User removed = usersById.remove(userId);
+            if (removed == null) {
+                throw new UserNotFoundException("Utilisateur introuvable : " + userId);
+            }
+            seq = journaled(journal, j -> j.userRemoved(userId), () -> usersById.put(userId, removed));
+            if (removed instanceof Admin) admins.decrementAndGet();
+            // on retire aussi l'entrée email, sinon l'email reste réservé pour toujours
+            // (parcours complet seulement si l'email a été modifié depuis l'inscription)
+            if (!usersByEmail.remove(removed.getEmail().toLowerCase(), removed)) {
+                usersByEmail.values().remove(removed);
+            }
+            userSnapshot.updateAndGet(s -> s.without(userId));
+            for (String isbn : downloads.removeUser(userId)) suggestIndex.adjustWeight(isbn, -1);
+            if (observed()) emit(new LibraryEvent.UserRemoved(userId, removed));
+        }
+        finishWrite(journal, seq);
+    }
+
+    /* =====================================================
+     *  Téléchargements
+     * ===================================================== */
+
+    /** Ajoute le livre aux téléchargements du user et à l'index des téléchargements. */
+    public void downloadBook(String userId, String rawIsbn)
+            throws UserNotFoundException, BookNotFoundException, BookAlreadyExistException {
+        User user = getUser(userId);
+        Book book = getBook(rawIsbn);
+        String isbn = book.getIsbn();
+        LibraryJournal journal = this.journal;
+        long seq = 0;
+        synchronized (stripe(userLocks, userId)) {
+            user.downloadBook(book);
+            downloads.add(userId, isbn);
+            // livre retiré entre-temps : soit removeBook verra notre entrée dans l'index,
+            // soit on la voit disparaître ici et on annule. Livre modifié entre-temps : on garde
+            // la version en place (une mise à jour plus tardive nous verra dans l'index)
+            Book current = catalogByIsbn.get(isbn);
+            if (current == null) {
+                user.discardBook(book);
+                downloads.remove(userId, isbn);
+                throw new BookNotFoundException("Aucun livre trouvé avec l’ISBN : " + isbn);
+            }
+            if (current != book) user.refreshBook(current);
+            seq = journaled(journal, j -> j.downloadAdded(userId, isbn), () -> {
+                user.discardBook(book);
+                downloads.remove(userId, isbn);
+            });
+            suggestIndex.adjustWeight(isbn, 1);
+            if (observed()) emit(new LibraryEvent.DownloadAdded(userId, isbn));
         }
-        // Supprime l'utilisateur de la collection
-        usersById.remove(userId);
+        finishWrite(journal, seq);
     }
 
-    boolean containsBook(String isbn) {
-        return catalogByIsbn.containsKey(isbn);
+    public void removeDownload(String userId, String rawIsbn) throws UserNotFoundException, BookNotFoundException {
+        if (rawIsbn == null || rawIsbn.isBlank()) throw new IllegalArgumentException("ISBN invalide");
+        String isbn = Isbn.lookupKey(rawIsbn);
+        User user = getUser(userId);
+        Book probe = probe(isbn);
+        LibraryJournal journal = this.journal;
+        long seq = 0;
+        synchronized (stripe(userLocks, userId)) {
+            // vérifié puis journalisé avant de retirer : rien à défaire si le journal échoue
+            if (!user.hasBook(probe))
+                throw new BookNotFoundException("Ce livre n'est pas dans votre liste");
+            if (journal != null) seq = journal.downloadRemoved(userId, isbn);
+            user.removeBook(probe);
+            if (downloads.remove(userId, isbn)) suggestIndex.adjustWeight(isbn, -1);
+            if (observed()) emit(new LibraryEvent.DownloadRemoved(userId, isbn));
+        }
+        finishWrite(journal, seq);
     }
 
+    public int downloadCount(String isbn) {
+        return isbn == null ? 0 : downloads.downloadCount(Isbn.lookupKey(isbn));
+    }
+
+    /** Users ayant téléchargé le livre. */
+    public List<User> downloadersOf(String isbn) {
+        if (isbn == null) return new ArrayList<>();
+        return resolve(downloads.downloadersOf(Isbn.lookupKey(isbn)), usersById::get);
+    }
+
+    /** Livres téléchargés par tous les users donnés. */
+    public List<Book> commonDownloads(Collection<String> userIds) {
+        if (userIds == null || userIds.isEmpty()) return new ArrayList<>();
+        return resolve(downloads.commonBooks(userIds), catalogByIsbn::get);
+    }
+
+    /** Livres téléchargés par au moins un des users donnés. */
+    public List<Book> anyDownloads(Collection<String> userIds) {
+        if (userIds == null || userIds.isEmpty()) return new ArrayList<>();
+        return resolve(downloads.anyBooks(userIds), catalogByIsbn::get);
+    }
+
+    /** Nombre de users ayant téléchargé les deux livres. */
+    public int coDownloadCount(String isbnA, String isbnB) {
+        if (isbnA == null || isbnB == null) return 0;
+        return downloads.coDownloads(Isbn.lookupKey(isbnA), Isbn.lookupKey(isbnB));
+    }
+
+    private static <T> List<T> resolve(List<String> keys, Function<String, T> values) {
+        List<T> result = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            T value = values.apply(key);
+            if (value != null) result.add(value);
+        }
+        return result;
+    }
+
+    @Override
+    public boolean containsBook(String isbn) {
+        return isbn != null && catalogByIsbn.containsKey(Isbn.lookupKey(isbn));
+    }
+
+    @Override
     public Book getBook(String isbn) throws BookNotFoundException {
         if (isbn == null || isbn.isBlank()) {
             throw new IllegalArgumentException("ISBN invalide.");
         }
 
-        Book book = catalogByIsbn.get(isbn);
+        Book book = catalogByIsbn.get(Isbn.lookupKey(isbn));
 
         if (book == null) {
             throw new BookNotFoundException("Aucun livre trouvé avec l’ISBN : " + isbn);
@@ -76,48 +772,367 @@ public class Library {
     }
 
 
+    @Override
     public List<Book> searchByTitle(String title) {
-        List<Book> result = new ArrayList<>();
-        for (Book book : catalogByIsbn.values()) {
-            if (book.getTitle().toLowerCase().contains(title.toLowerCase())) {
-                result.add(book);
-            }
-        }
-        return result;
+        return streamByTitle(title).collect(Collectors.toCollection(ArrayList::new));
     }
 
+    @Override
     public List<Book> searchByGenre(String genre) {
-        List<Book> result = new ArrayList<>();
-        for (Book book : catalogByIsbn.values()) {
-            if (book.getGenre().equalsIgnoreCase(genre)) {
-                result.add(book);
+        return streamByGenre(genre).collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    @Override
+    public List<Book> searchByAuthor(String author) {
+        return streamByAuthor(author).collect(Collectors.toCollection(ArrayList::new));
+    }
+
+
+    @Override
+    public List<Book> listBooks() {
+        return new ArrayList<>(catalogByIsbn.values());
+    }
+
+    @Override
+    public int bookCount() {
+        return catalogByIsbn.size();
+    }
+
+    /**
+     * Vue immuable du catalogue à l'instant de l'appel : aucune copie, on peut la garder
+     * et la parcourir autant qu'on veut, les écritures suivantes publient un nouveau Snapshot.
+     */
+    public Snapshot<Book> catalogSnapshot() {
+        return bookSnapshot.get();
+    }
+
+    /* =====================================================
+     *  Lecture paginée / en flux
+     * ===================================================== */
+
+    // Les index ne donnent que des candidats : chaque recherche est (candidats, vérification).
+    // candidates == null veut dire "pas d'index utilisable, parcours complet".
+    private record Lookup(Collection<String> candidates, Predicate<Book> matches) {
+    }
+
+    // la requête est repliée une fois, chaque livre porte déjà sa forme de recherche :
+    // la vérification ne crée aucun objet par livre parcouru
+    // sans trigramme (requête courte), parcours de tout le snapshot : String.contains y est
+    // déjà vectorisé par HotSpot, ByteScan ne sert qu'aux titres stockés en octets
+    private Lookup titleLookup(String title) {
+        String query = SearchKey.fold(title);
+        return new Lookup(titleIndex.candidates(query),
+                book -> book.titleKey() != null && book.titleKey().contains(query));
+    }
+
+    private Lookup genreLookup(String genre) {
+        String key = SearchKey.fold(genre);
+        return new Lookup(genreIndex.get(key), book -> key.equals(book.genreKey()));
+    }
+
+    private Lookup authorLookup(String author) {
+        String key = SearchKey.fold(author);
+        return new Lookup(authorIndex.get(key), book -> key.equals(book.authorKey()));
+    }
+
+    private Stream<Book> stream(Lookup q) {
+        if (q.candidates() == null) {
+            return catalogSnapshot().stream().filter(q.matches());
+        }
+        return q.candidates().stream()
+                .map(catalogByIsbn::get)
+                .filter(Objects::nonNull)
+                .filter(q.matches());
+    }
+
+    // page dans l'ordre du Snapshot, pour que le curseur reste valable entre deux appels
+    private Page<Book> page(Lookup q, String cursor, int limit) {
+        Page.checkLimit(limit);
+        String after = Page.decodeCursor(cursor);
+        if (q.candidates() == null) {
+            return page(catalogSnapshot().iteratorAfter(after), q.matches(), Book::getIsbn, limit);
+        }
+        // on ne trie que les candidats restants, jamais le catalogue
+        List<String> keys = new ArrayList<>();
+        for (String isbn : q.candidates()) {
+            if (after == null || Snapshot.KEY_ORDER.compare(isbn, after) > 0) keys.add(isbn);
+        }
+        keys.sort(Snapshot.KEY_ORDER);
+        Iterator<Book> books = keys.stream()
+                .map(catalogByIsbn::get)
+                .filter(Objects::nonNull)
+                .iterator();
+        return page(books, q.matches(), Book::getIsbn, limit);
+    }
+
+    // une page pleine renvoie toujours un curseur : la dernière page peut donc être vide
+    private static <T> Page<T> page(Iterator<T> it, Predicate<? super T> matches,
+                                    Function<T, String> key, int limit) {
+        List<T> items = new ArrayList<>(Math.min(limit, 64));
+        while (items.size() < limit && it.hasNext()) {
+            T next = it.next();
+            if (matches.test(next)) items.add(next);
+        }
+        String nextCursor = items.size() == limit
+                ? Page.encodeCursor(key.apply(items.get(items.size() - 1)))
+                : null;
+        return new Page<>(items, nextCursor);
+    }
+
+    public Page<Book> listBooks(String cursor, int limit) {
+        return page(new Lookup(null, book -> true), cursor, limit);
+    }
+
+    public Page<Book> searchByTitle(String title, String cursor, int limit) {
+        return page(titleLookup(title), cursor, limit);
+    }
+
+    public Page<Book> searchByGenre(String genre, String cursor, int limit) {
+        return page(genreLookup(genre), cursor, limit);
+    }
+
+    public Page<Book> searchByAuthor(String author, String cursor, int limit) {
+        return page(authorLookup(author), cursor, limit);
+    }
+
+    public Page<User> listUsers(String cursor, int limit) {
+        Page.checkLimit(limit);
+        return page(userSnapshot().iteratorAfter(Page.decodeCursor(cursor)), user -> true, User::getUserId, limit);
+    }
+
+    /* =====================================================
+     *  Requêtes multi-critères
+     * ===================================================== */
+
+    // un critère de BookQuery : estimate = nombre de candidats si un index peut servir de
+    // point d'entrée (-1 sinon), matches = vérification sur un livre
+    private record Criterion(String label, int estimate, Supplier<Collection<String>> candidates,
+                             Predicate<Book> matches) {
+        boolean indexed() {
+            return estimate >= 0;
+        }
+    }
+
+    // ordered : l'accès (index des années) rend déjà les livres dans l'ordre du tri demandé
+    private record Plan(Criterion access, boolean ordered, List<Criterion> criteria, int catalogSize,
+                        BookQuery query) {
+
+        Predicate<Book> matches() {
+            Predicate<Book> all = book -> true;
+            for (Criterion c : criteria) all = all.and(c.matches());
+            return all;
+        }
+
+        String describe() {
+            StringBuilder out = new StringBuilder();
+            if (access == null) {
+                out.append("parcours complet (").append(catalogSize).append(" livres)");
+            } else {
+                out.append("index ").append(access.label())
+                        .append(" (~").append(access.estimate()).append(" candidats sur ")
+                        .append(catalogSize).append(')');
+                if (ordered) out.append(" parcouru dans l'ordre");
             }
+            List<String> filters = new ArrayList<>();
+            for (Criterion c : criteria) {
+                if (c != access) filters.add(c.label());
+            }
+            if (!filters.isEmpty()) out.append(" ; filtres : ").append(String.join(", ", filters));
+            if (query.sort() != BookQuery.Sort.NONE && !ordered) out.append(" ; tri ").append(query.sort());
+            if (query.limit() != Integer.MAX_VALUE) out.append(" ; limite ").append(query.limit());
+            return out.toString();
         }
-        return result;
     }
 
-    public List<Book> searchByAuthor(String author) {
-        List<Book> result = new ArrayList<>();
-        for (Book book : catalogByIsbn.values()) {
-            if (book.getAuthor().equalsIgnoreCase(author)) {
-                result.add(book);
+    // le point d'entrée est l'index qui annonce le moins de candidats ; tous les critères
+    // restent vérifiés sur chaque candidat (le trigramme ne donne qu'un sur-ensemble)
+    private Plan plan(BookQuery query) {
+        if (query == null) throw new IllegalArgumentException("Requête null");
+        List<Criterion> criteria = new ArrayList<>();
+        if (query.title() != null) {
+            String key = SearchKey.fold(query.title());
+            criteria.add(new Criterion("titre '" + key + "'", titleIndex.estimate(key),
+                    () -> titleIndex.candidates(key),
+                    book -> book.titleKey() != null && book.titleKey().contains(key)));
+        }
+        if (query.genre() != null) {
+            String key = SearchKey.fold(query.genre());
+            Set<String> isbns = genreIndex.get(key);
+            criteria.add(new Criterion("genre '" + key + "'", isbns.size(), () -> isbns,
+                    book -> key.equals(book.genreKey())));
+        }
+        if (query.author() != null) {
+            String key = SearchKey.fold(query.author());
+            Set<String> isbns = authorIndex.get(key);
+            criteria.add(new Criterion("auteur '" + key + "'", isbns.size(), () -> isbns,
+                    book -> key.equals(book.authorKey())));
+        }
+        Criterion years = null;
+        if (query.fromYear() != null) {
+            int from = query.fromYear(), to = query.toYear();
+            years = new Criterion("années " + from + ".." + to, yearIndex.count(from, to),
+                    () -> yearIndex.range(from, to, false).toList(),
+                    book -> book.getYear() >= from && book.getYear() <= to);
+            criteria.add(years);
+        }
+        if (query.available() != null) {
+            boolean available = query.available();
+            criteria.add(new Criterion("disponible=" + available, -1, null,
+                    book -> book.isAvailable() == available));
+        }
+        int size = bookCount();
+        Criterion access = null;
+        for (Criterion c : criteria) {
+            if (c.indexed() && c.estimate() < size && (access == null || c.estimate() < access.estimate())) {
+                access = c;
             }
         }
+        // tri par année : si aucun autre index n'est plus sélectif, on parcourt l'index des
+        // années dans l'ordre et la limite arrête le parcours (pas de tri du catalogue)
+        BookQuery.Sort sort = query.sort();
+        if ((sort == BookQuery.Sort.YEAR || sort == BookQuery.Sort.YEAR_DESC) && (access == null || access == years)) {
+            if (years == null) {
+                years = new Criterion("années", size, null, book -> true);
+            }
+            return new Plan(years, true, criteria, size, query);
+        }
+        return new Plan(access, false, criteria, size, query);
+    }
+
+    private Stream<String> orderedYears(BookQuery query) {
+        int from = query.fromYear() == null ? Integer.MIN_VALUE : query.fromYear();
+        int to = query.toYear() == null ? Integer.MAX_VALUE : query.toYear();
+        return yearIndex.range(from, to, query.sort() == BookQuery.Sort.YEAR_DESC);
+    }
+
+    public List<Book> search(BookQuery query) {
+        return search(query, query.sort().order());
+    }
+
+    // requested remplace le tri de la requête (null : ordre des candidats). PartitionedLibrary
+    // y passe toujours un tri départagé par ISBN, pour que la limite de chaque partition
+    // garde les mêmes livres quel que soit le découpage.
+    List<Book> search(BookQuery query, Comparator<Book> requested) {
+        Plan plan = plan(query);
+        Stream<String> isbns = plan.ordered() ? orderedYears(query)
+                : plan.access() == null ? null
+                : plan.access().candidates().get().stream();
+        Stream<Book> candidates = isbns == null
+                ? catalogSnapshot().stream()
+                : isbns.map(catalogByIsbn::get).filter(Objects::nonNull);
+        Stream<Book> matching = candidates.filter(plan.matches());
+
+        Comparator<Book> order = plan.ordered() ? null : requested;
+        int limit = query.limit();
+        if (order == null) {
+            return matching.limit(limit).collect(Collectors.toCollection(ArrayList::new));
+        }
+        if (limit == Integer.MAX_VALUE) {
+            return matching.sorted(order).collect(Collectors.toCollection(ArrayList::new));
+        }
+        // top-k : on ne garde jamais plus de limit livres en mémoire
+        PriorityQueue<Book> top = new PriorityQueue<>(Math.min(limit, 64) + 1, order.reversed());
+        matching.forEach(book -> {
+            top.add(book);
+            if (top.size() > limit) top.poll();
+        });
+        List<Book> result = new ArrayList<>(top);
+        result.sort(order);
         return result;
     }
 
+    /** Plan choisi pour la requête : index d'entrée, estimation, filtres, tri. */
+    public String explain(BookQuery query) {
+        return plan(query).describe();
+    }
 
-    public List<Book> listBooks() {
-        return new ArrayList<>(catalogByIsbn.values());
+    /* =====================================================
+     *  Recherche par année
+     * ===================================================== */
+
+    /** Livres publiés entre from et to inclus, du plus ancien au plus récent. */
+    public List<Book> searchByYearRange(int from, int to) {
+        return streamByYear(from, to, false).collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    /** Parcours paresseux par année : un limit() s'arrête sans lire les années suivantes. */
+    public Stream<Book> streamByYear(int from, int to, boolean newestFirst) {
+        if (from > to) throw new IllegalArgumentException("Intervalle d'années invalide.");
+        return yearIndex.range(from, to, newestFirst)
+                .map(catalogByIsbn::get)
+                .filter(Objects::nonNull);
+    }
+
+    /** Les k livres les plus récents, sans trier le catalogue. */
+    public List<Book> newestBooks(int k) {
+        Page.checkLimit(k);
+        return streamByYear(Integer.MIN_VALUE, Integer.MAX_VALUE, true).limit(k)
+                .collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    public List<Book> oldestBooks(int k) {
+        Page.checkLimit(k);
+        return streamByYear(Integer.MIN_VALUE, Integer.MAX_VALUE, false).limit(k)
+                .collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    /**
+     * Autocomplétion : les limit livres les plus téléchargés dont un mot du titre ou de
+     * l'auteur commence par prefix (accents et casse ignorés).
+     */
+    public List<Book> suggest(String prefix, int limit) {
+        return suggestIndex.suggest(prefix, limit);
+    }
+
+    // Les Stream sont paresseux : un findFirst/limit s'arrête sans parcourir le reste
+    public Stream<Book> streamBooks() {
+        return catalogSnapshot().stream();
+    }
+
+    public Stream<Book> streamByTitle(String title) {
+        return stream(titleLookup(title));
+    }
+
+    public Stream<Book> streamByGenre(String genre) {
+        return stream(genreLookup(genre));
+    }
+
+    public Stream<Book> streamByAuthor(String author) {
+        return stream(authorLookup(author));
+    }
+
+    public Stream<User> streamUsers() {
+        return userSnapshot().stream();
+    }
+
+    // Chaque abonné parcourt le snapshot du moment de son abonnement, au rythme de sa demande
+    public Flow.Publisher<Book> publishBooks() {
+        return new IteratorPublisher<>(() -> catalogSnapshot().iterator());
+    }
+
+    public Flow.Publisher<Book> publishByTitle(String title) {
+        return new IteratorPublisher<>(() -> streamByTitle(title).iterator());
+    }
+
+    public Flow.Publisher<User> publishUsers() {
+        return new IteratorPublisher<>(() -> userSnapshot().iterator());
     }
 
     public User getUser(String userId) throws UserNotFoundException {
-        User user = usersById.get(userId);
+        User user = (userId == null) ? null : usersById.get(userId);
         if (user == null) {
             throw new UserNotFoundException("Utilisateur avec l'ID " + userId + " introuvable.");
         }
         return user;
     }
+    public boolean hasAdmin() {
+        return admins.get() > 0;
+    }
+
+    boolean hasUser(String userId) {
+        return userId != null && usersById.containsKey(userId);
+    }
+
     public User getUserByEmail(String email) throws UserNotFoundException {
         if (email == null || email.isBlank()) {
             throw new IllegalArgumentException("Email invalide.");
@@ -135,6 +1150,33 @@ public class Library {
         return new ArrayList<>(usersById.values());
     }
 
+    public Snapshot<User> userSnapshot() {
+        return userSnapshot.get();
+    }
+
+    // Mémoire économisée par le partage des genres/auteurs entre les livres
+    /**
+     * Repart d'un dictionnaire qui ne garde que les valeurs des livres en place (les mêmes
+     * instances) : auteurs et genres disparus du catalogue sont libérés. Sous tous les
+     * verrous ; appelé par LibraryJournal.checkpoint.
+     */
+    void rebuildDictionary() {
+        withAllLocks(() -> {
+            StringDictionary rebuilt = dictionary.emptyCopy();
+            for (Book book : catalogByIsbn.values()) {
+                rebuilt.adopt(book.getAuthor());
+                rebuilt.adopt(book.authorKey());
+                rebuilt.adopt(book.getGenre());
+                rebuilt.adopt(book.genreKey());
+            }
+            dictionary = rebuilt;
+        });
+    }
+
+    public DictionaryStats dictionaryStats() {
+        return dictionary.stats();
+    }
+
     @Override
     public String toString() {
         return "Library{" +
@@ -0,0 +1,40 @@
+package com.libria.domain;
+
+import java.util.List;
+
+/**
+ * Changement du contenu d'une Library, envoyé aux LibraryListener après la mutation.
+ * Pour une même clé (ISBN, userId) les événements arrivent dans l'ordre des écritures.
+ * BookRemoved vaut aussi retrait du livre chez tous ses lecteurs : pas de DownloadRemoved
+ * individuel dans ce cas.
+ */
+public sealed interface LibraryEvent {
+
+    record BookAdded(Book book) implements LibraryEvent {
+    }
+
+    record BookUpdated(Book book, List<FieldChange> changes) implements LibraryEvent {
+    }
+
+    record BookRemoved(String isbn, Book book) implements LibraryEvent {
+    }
+
+    record UserRegistered(User user) implements LibraryEvent {
+    }
+
+    record UserUpdated(User user) implements LibraryEvent {
+    }
+
+    record UserRemoved(String userId, User user) implements LibraryEvent {
+    }
+
+    record DownloadAdded(String userId, String isbn) implements LibraryEvent {
+    }
+
+    record DownloadRemoved(String userId, String isbn) implements LibraryEvent {
+    }
+
+    /** Champ modifié par une mise à jour, avec l'ancienne et la nouvelle valeur. */
+    record FieldChange(String field, Object before, Object after) {
+    }
+}
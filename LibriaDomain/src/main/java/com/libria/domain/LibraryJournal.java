@@ -0,0 +1,362 @@
+package com.libria.domain;
+
+import com.libria.exception.JournalException;
+import com.libria.exception.LibriaException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Journal des écritures d'une Library : chaque mutation est ajoutée à la fin du fichier
+ * sous forme d'un enregistrement compact, et l'appelant ne rend la main qu'une fois
+ * l'enregistrement sur disque.
+ *
+ * Enregistrement : [int taille][byte type][contenu][int crc32 de type+contenu].
+ * Les fsync sont groupés : un seul thread (le leader) force le fichier pendant que les
+ * autres attendent, et son force() couvre tout ce qui a été écrit avant lui.
+ *
+ * Au redémarrage : Library lib = LibraryJournal.recover(snapshot, journal), puis on rattache
+ * le journal. checkpoint() écrit un nouveau snapshot et vide le journal.
+ */
+public final class LibraryJournal implements AutoCloseable {
+
+    static final byte BOOK_ADDED = 1;
+    static final byte BOOK_REMOVED = 2;
+    static final byte BOOK_UPDATED = 3;
+    static final byte USER_REGISTERED = 4;
+    static final byte USER_REMOVED = 5;
+    static final byte DOWNLOAD_ADDED = 6;
+    static final byte DOWNLOAD_REMOVED = 7;
+    static final byte USER_UPDATED = 8;
+
+    private static final int OVERHEAD = 4 + 1 + 4;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final boolean fsync;
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    private volatile long written;     // numéro du dernier enregistrement écrit
+    private final Object syncMonitor = new Object();
+    private long durable;              // dernier numéro garanti sur disque
+    private boolean syncing;
+
+    private LibraryJournal(Path path, FileChannel channel, boolean fsync) {
+        this.path = path;
+        this.channel = channel;
+        this.fsync = fsync;
+    }
+
+    public static LibraryJournal open(Path path) throws IOException {
+        return open(path, true);
+    }
+
+    /**
+     * Ouvre (ou crée) le journal. Une fin d'enregistrement tronquée par un arrêt brutal est
+     * coupée pour que les ajouts suivants restent lisibles. fsync = false laisse le système
+     * décider quand écrire (plus rapide, mais les dernières écritures peuvent être perdues).
+     */
+    public static LibraryJournal open(Path path, boolean fsync) throws IOException {
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long end = validLength(channel);
+            channel.truncate(end);
+            channel.position(end);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return new LibraryJournal(path, channel, fsync);
+    }
+
+    /** Charge le snapshot s'il existe puis rejoue le journal par-dessus. */
+    public static Library recover(Path snapshot, Path journal) throws IOException {
+        Library library = Files.exists(snapshot) ? SnapshotFile.load(snapshot) : new Library();
+        replay(journal, library);
+        return library;
+    }
+
+    /**
+     * Rejoue le journal sur library (qui ne doit pas avoir de journal attaché) et renvoie le
+     * nombre d'enregistrements appliqués. Le rejeu est idempotent : un enregistrement déjà
+     * présent dans le snapshot ne change rien.
+     */
+    public static int replay(Path journal, Library library) throws IOException {
+        if (!Files.exists(journal)) return 0;
+        int applied = 0;
+        try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.READ)) {
+            Reader reader = new Reader(channel);
+            byte[] payload;
+            while ((payload = reader.next()) != null) {
+                apply(reader.type, payload, library);
+                applied++;
+            }
+        }
+        return applied;
+    }
+
+    private static Book probe(String isbn) {
+        Book book = new Book();
+        book.setIsbn(isbn);
+        return book;
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] pair(String first, String second) {
+        byte[] a = first.getBytes(StandardCharsets.UTF_8);
+        byte[] b = second.getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(8 + a.length + b.length)
+                .putInt(a.length).put(a)
+                .putInt(b.length).put(b)
+                .array();
+    }
+
+    private static void apply(byte type, byte[] payload, Library library) {
+        switch (type) {
+            case BOOK_ADDED, BOOK_UPDATED -> {
+                BookView view = new BookView(ByteBuffer.wrap(payload), 0);
+                Book book = view.toBook();
+                if (!library.containsBook(book.getIsbn())) {
+                    library.addBook(book);
+                } else if (view.hasVersion()) {
+                    library.restoreBook(book);
+                } else {
+                    library.updateBook(book.getIsbn(), book);   // journal d'avant la version
+                }
+            }
+            case BOOK_REMOVED -> {
+                String isbn = new String(payload, StandardCharsets.UTF_8);
+                if (library.containsBook(isbn)) library.removeBook(isbn);
+            }
+            case USER_REGISTERED -> {
+                User user = SnapshotFile.decodeUser(ByteBuffer.wrap(payload), 0, ordinal -> null);
+                if (!library.hasUser(user.getUserId())) library.registerUser(user);
+            }
+            case USER_UPDATED -> {
+                User user = SnapshotFile.decodeUser(ByteBuffer.wrap(payload), 0, ordinal -> null);
+                if (library.hasUser(user.getUserId())) {
+                    library.updateUser(user.getUserId(), user.getName(), user.getEmail(), user.getPassword());
+                }
+            }
+            case USER_REMOVED -> {
+                String userId = new String(payload, StandardCharsets.UTF_8);
+                if (library.hasUser(userId)) library.removeUser(userId);
+            }
+            case DOWNLOAD_ADDED, DOWNLOAD_REMOVED -> {
+                ByteBuffer buffer = ByteBuffer.wrap(payload);
+                String userId = readString(buffer);
+                String isbn = readString(buffer);
+                if (!library.hasUser(userId)) return;
+                boolean present = library.getUser(userId).hasBook(probe(isbn));
+                if (type == DOWNLOAD_ADDED && !present && library.containsBook(isbn)) {
+                    library.downloadBook(userId, isbn);
+                } else if (type == DOWNLOAD_REMOVED && present) {
+                    library.removeDownload(userId, isbn);
+                }
+            }
+            default -> throw new LibriaException("Enregistrement de journal inconnu : " + type);
+        }
+    }
+
+    /* =====================================================
+     *  Écriture (appelée par Library sous le verrou de la clé)
+     * ===================================================== */
+
+    long bookAdded(Book book) {
+        return append(BOOK_ADDED, BookView.encode(book));
+    }
+
+    long bookUpdated(Book book) {
+        return append(BOOK_UPDATED, BookView.encode(book));
+    }
+
+    long bookRemoved(String isbn) {
+        return append(BOOK_REMOVED, isbn.getBytes(StandardCharsets.UTF_8));
+    }
+
+    long userRegistered(User user) {
+        return append(USER_REGISTERED, SnapshotFile.encodeUser(user, List.of()));
+    }
+
+    long userUpdated(User user) {
+        return append(USER_UPDATED, SnapshotFile.encodeUser(user, List.of()));
+    }
+
+    long userRemoved(String userId) {
+        return append(USER_REMOVED, userId.getBytes(StandardCharsets.UTF_8));
+    }
+
+    long downloadAdded(String userId, String isbn) {
+        return append(DOWNLOAD_ADDED, pair(userId, isbn));
+    }
+
+    long downloadRemoved(String userId, String isbn) {
+        return append(DOWNLOAD_REMOVED, pair(userId, isbn));
+    }
+
+    private long append(byte type, byte[] payload) {
+        ByteBuffer record = ByteBuffer.allocate(OVERHEAD + payload.length);
+        record.putInt(payload.length).put(type).put(payload).putInt(crc(type, payload));
+        record.flip();
+        writeLock.lock();
+        try {
+            while (record.hasRemaining()) {
+                channel.write(record);
+            }
+            return ++written;
+        } catch (IOException e) {
+            throw new JournalException("Écriture du journal impossible : " + path, e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Attend que l'enregistrement seq soit sur disque. À appeler hors des verrous de Library,
+     * pour que les autres écrivains puissent ajouter leurs enregistrements au même fsync.
+     */
+    void awaitDurable(long seq) {
+        if (!fsync) return;
+        synchronized (syncMonitor) {
+            while (durable < seq && syncing) {
+                try {
+                    syncMonitor.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new JournalException("Attente du journal interrompue.", e);
+                }
+            }
+            if (durable >= seq) return;
+            syncing = true;
+        }
+        // leader : tout ce qui est écrit jusqu'ici part dans le même force()
+        long target = written;
+        IOException failure = null;
+        try {
+            channel.force(false);
+        } catch (IOException e) {
+            failure = e;
+        }
+        synchronized (syncMonitor) {
+            syncing = false;
+            if (failure == null) durable = Math.max(durable, target);
+            syncMonitor.notifyAll();
+        }
+        if (failure != null) {
+            throw new JournalException("Synchronisation du journal impossible : " + path, failure);
+        }
+    }
+
+    /**
+     * Écrit le snapshot de library puis vide le journal. Tous les verrous de la Library sont
+     * pris d'abord (même ordre que les écritures, avant celui du journal) : aucune mutation
+     * n'est alors journalisée sans être publiée, le snapshot contient tout ce que le journal
+     * perd. SnapshotFile.write reprend les verrous users sans attendre. Le dictionnaire des
+     * métadonnées est reconstruit au passage.
+     */
+    public void checkpoint(Library library, Path snapshot) throws IOException {
+        IOException[] failure = new IOException[1];
+        library.withAllLocks(() -> {
+            writeLock.lock();
+            try {
+                SnapshotFile.write(library, snapshot);
+                channel.truncate(0);
+                channel.position(0);
+                channel.force(true);
+                library.rebuildDictionary();
+            } catch (IOException e) {
+                failure[0] = e;
+            } finally {
+                writeLock.unlock();
+            }
+        });
+        if (failure[0] != null) throw failure[0];
+    }
+
+    /** Taille actuelle du journal en octets. */
+    public long size() throws IOException {
+        return channel.size();
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    @Override
+    public void close() throws IOException {
+        writeLock.lock();
+        try {
+            if (channel.isOpen()) {
+                channel.force(false);
+                channel.close();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /* =====================================================
+     *  Lecture
+     * ===================================================== */
+
+    private static int crc(byte type, byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    // longueur du préfixe d'enregistrements complets et intègres
+    private static long validLength(FileChannel channel) throws IOException {
+        Reader reader = new Reader(channel);
+        while (reader.next() != null) {
+            // on avance jusqu'au premier enregistrement invalide
+        }
+        return reader.position;
+    }
+
+    // lecture séquentielle ; s'arrête sans erreur sur une fin tronquée ou corrompue
+    private static final class Reader {
+        private final FileChannel channel;
+        private final long size;
+        private long position;
+        private byte type;
+
+        Reader(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+        }
+
+        byte[] next() throws IOException {
+            if (size - position < OVERHEAD) return null;
+            ByteBuffer head = ByteBuffer.allocate(5);
+            channel.read(head, position);
+            int length = head.getInt(0);
+            if (length < 0 || length > size - position - OVERHEAD) return null;
+            ByteBuffer body = ByteBuffer.allocate(length + 4);
+            while (body.hasRemaining()) {
+                if (channel.read(body, position + 5 + body.position()) < 0) return null;
+            }
+            byte[] payload = new byte[length];
+            body.get(0, payload);
+            if (crc(head.get(4), payload) != body.getInt(length)) return null;
+            type = head.get(4);
+            position += OVERHEAD + length;
+            return payload;
+        }
+    }
+}
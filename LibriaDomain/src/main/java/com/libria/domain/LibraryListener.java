@@ -0,0 +1,21 @@
+package com.libria.domain;
+
+import java.util.List;
+
+/**
+ * Abonné aux changements d'une Library (Library.subscribe / subscribeAsync).
+ * En mode synchrone, onEvent est appelé par le thread qui écrit, sous le verrou de la clé :
+ * il doit être rapide et ne pas écrire lui-même dans la Library.
+ */
+@FunctionalInterface
+public interface LibraryListener {
+
+    void onEvent(LibraryEvent event);
+
+    /** Livraison par lots (mode asynchrone) ; par défaut un appel à onEvent par événement. */
+    default void onEvents(List<LibraryEvent> events) {
+        for (LibraryEvent event : events) {
+            onEvent(event);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.libria.domain;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Map long -> Book à adressage ouvert (sondage linéaire), pour les ISBN compactés : une
+ * entrée coûte un long et une référence, sans objet Node ni String par clé.
+ *
+ * Découpée en segments : les écritures prennent le moniteur de leur segment, les lectures
+ * ne prennent aucun verrou. Une écriture pose la valeur avant la clé (écritures volatiles),
+ * donc un lecteur qui voit la clé voit le livre. Une suppression laisse la clé en place avec
+ * une valeur null (pierre tombale) pour ne pas casser les sondages en cours ; les pierres
+ * tombales disparaissent quand le segment est recopié.
+ */
+final class LongBookMap {
+
+    private static final int SEGMENTS = 64;
+    private static final long EMPTY = 0;   // les ISBN compactés sont > 0
+
+    private static final class Table {
+        final AtomicLongArray keys;
+        final AtomicReferenceArray<Book> values;
+        final int mask;
+
+        Table(int capacity) {
+            keys = new AtomicLongArray(capacity);
+            values = new AtomicReferenceArray<>(capacity);
+            mask = capacity - 1;
+        }
+    }
+
+    private static final class Segment {
+        volatile Table table = new Table(16);
+        volatile int size;
+        int used;                          // clés posées, pierres tombales comprises
+    }
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+
+    LongBookMap() {
+        for (int i = 0; i < SEGMENTS; i++) segments[i] = new Segment();
+    }
+
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    private Segment segment(long hash) {
+        return segments[(int) (hash >>> 58)];
+    }
+
+    Book get(long key) {
+        long h = mix(key);
+        Table t = segment(h).table;
+        for (int i = (int) h & t.mask; ; i = (i + 1) & t.mask) {
+            long k = t.keys.get(i);
+            if (k == key) return t.values.get(i);
+            if (k == EMPTY) return null;
+        }
+    }
+
+    Book putIfAbsent(long key, Book book) {
+        if (key <= 0) throw new IllegalArgumentException("Clé invalide : " + key);
+        long h = mix(key);
+        Segment s = segment(h);
+        synchronized (s) {
+            Table t = s.table;
+            int i = (int) h & t.mask;
+            for (; ; i = (i + 1) & t.mask) {
+                long k = t.keys.get(i);
+                if (k == key) {
+                    Book existing = t.values.get(i);
+                    if (existing != null) return existing;
+                    t.values.set(i, book);
+                    s.size++;
+                    return null;
+                }
+                if (k == EMPTY) break;
+            }
+            t.values.set(i, book);
+            t.keys.set(i, key);
+            s.size++;
+            s.used++;
+            // remplissage max 1/2 (pierres tombales comprises) : les sondages restent courts
+            if (s.used * 2 > t.keys.length()) rehash(s);
+            return null;
+        }
+    }
+
+    /** Remplace expected par book si c'est bien la valeur en place (comparaison d'identité). */
+    boolean replace(long key, Book expected, Book book) {
+        long h = mix(key);
+        Segment s = segment(h);
+        synchronized (s) {
+            Table t = s.table;
+            for (int i = (int) h & t.mask; ; i = (i + 1) & t.mask) {
+                long k = t.keys.get(i);
+                if (k == key) return expected != null && t.values.compareAndSet(i, expected, book);
+                if (k == EMPTY) return false;
+            }
+        }
+    }
+
+    Book remove(long key) {
+        long h = mix(key);
+        Segment s = segment(h);
+        synchronized (s) {
+            Table t = s.table;
+            for (int i = (int) h & t.mask; ; i = (i + 1) & t.mask) {
+                long k = t.keys.get(i);
+                if (k == key) {
+                    Book removed = t.values.getAndSet(i, null);
+                    if (removed != null) s.size--;
+                    return removed;
+                }
+                if (k == EMPTY) return null;
+            }
+        }
+    }
+
+    // appelé sous le moniteur du segment ; la nouvelle table n'est visible qu'une fois pleine
+    private static void rehash(Segment s) {
+        Table old = s.table;
+        int capacity = old.keys.length();
+        while (s.size * 4 > capacity) capacity *= 2;   // vivants <= 1/4 après recopie
+        Table t = new Table(capacity);
+        for (int i = 0; i < old.keys.length(); i++) {
+            Book book = old.values.get(i);
+            if (book == null) continue;
+            long key = old.keys.get(i);
+            int j = (int) mix(key) & t.mask;
+            while (t.keys.get(j) != EMPTY) j = (j + 1) & t.mask;
+            t.values.set(j, book);
+            t.keys.set(j, key);
+        }
+        s.used = s.size;
+        s.table = t;
+    }
+
+    int size() {
+        int size = 0;
+        for (Segment s : segments) size += s.size;
+        return size;
+    }
+
+    List<Book> values() {
+        List<Book> result = new ArrayList<>(size());
+        for (Segment s : segments) {
+            Table t = s.table;
+            for (int i = 0; i < t.values.length(); i++) {
+                Book book = t.values.get(i);
+                if (book != null) result.add(book);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,228 @@
+package com.libria.domain;
+
+import com.libria.exception.BookNotFoundException;
+import com.libria.exception.UserNotFoundException;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Catalogue en lecture seule sur un fichier SnapshotFile mappé en mémoire.
+ * Les recherches par ISBN / id sont dichotomiques sur les index triés, les livres
+ * et users ne sont décodés que lorsqu'on les renvoie.
+ */
+public final class MappedCatalog implements Catalog {
+
+    private final ByteBuffer buffer;
+    private final int formatVersion;
+    private final int bookCount;
+    private final int userCount;
+    private final long downloadCount;
+    private final int bookIndex;
+    private final int userIndex;
+    private final long catalogVersion;
+
+    MappedCatalog(ByteBuffer buffer) {
+        this.buffer = buffer;
+        if (buffer.capacity() < SnapshotFile.HEADER_BYTES || buffer.getInt(0) != SnapshotFile.MAGIC) {
+            throw new IllegalArgumentException("Ce fichier n'est pas un snapshot Libria.");
+        }
+        this.formatVersion = buffer.getShort(4);
+        if (formatVersion < 1 || formatVersion > SnapshotFile.FORMAT_VERSION) {
+            throw new IllegalArgumentException("Version de snapshot non supportée : " + formatVersion);
+        }
+        this.bookCount = buffer.getInt(8);
+        this.userCount = buffer.getInt(12);
+        this.downloadCount = buffer.getLong(16);
+        this.bookIndex = (int) buffer.getLong(24);
+        this.userIndex = (int) buffer.getLong(32);
+        this.catalogVersion = buffer.getLong(40);
+    }
+
+    public int formatVersion() {
+        return formatVersion;
+    }
+
+    public long catalogVersion() {
+        return catalogVersion;
+    }
+
+    public int userCount() {
+        return userCount;
+    }
+
+    public long downloadCount() {
+        return downloadCount;
+    }
+
+    /* =====================================================
+     *  LIVRES
+     * ===================================================== */
+
+    @Override
+    public int bookCount() {
+        return bookCount;
+    }
+
+    @Override
+    public boolean containsBook(String isbn) {
+        return isbn != null && findBook(Isbn.lookupKey(isbn)) >= 0;
+    }
+
+    @Override
+    public Book getBook(String isbn) throws BookNotFoundException {
+        if (isbn == null || isbn.isBlank()) {
+            throw new IllegalArgumentException("ISBN invalide.");
+        }
+        int ordinal = findBook(Isbn.lookupKey(isbn));
+        if (ordinal < 0) {
+            throw new BookNotFoundException("Aucun livre trouvé avec l’ISBN : " + isbn);
+        }
+        return bookView(ordinal).toBook();
+    }
+
+    // Avant la version 2, les champs de recherche n'étaient qu'en minuscules (accents gardés) :
+    // on replie alors les champs lus. Plus lent, mais le fichier reste lisible jusqu'au
+    // prochain checkpoint, qui le réécrit au format courant.
+    private boolean legacyKeys() {
+        return formatVersion < 2;
+    }
+
+    @Override
+    public List<Book> searchByTitle(String title) {
+        String key = SearchKey.fold(title);
+        if (legacyKeys()) {
+            return scan(view -> view.getTitle() != null && SearchKey.fold(view.getTitle()).contains(key));
+        }
+        byte[] needle = SnapshotFile.utf8(key);
+        return scan(view -> view.foldedTitleContains(needle));
+    }
+
+    @Override
+    public List<Book> searchByGenre(String genre) {
+        if (genre == null) return new ArrayList<>();
+        String key = SearchKey.fold(genre);
+        if (legacyKeys()) return scan(view -> key.equals(SearchKey.fold(view.getGenre())));
+        byte[] folded = SnapshotFile.utf8(key);
+        return scan(view -> view.foldedGenreEquals(folded));
+    }
+
+    @Override
+    public List<Book> searchByAuthor(String author) {
+        if (author == null) return new ArrayList<>();
+        String key = SearchKey.fold(author);
+        if (legacyKeys()) return scan(view -> key.equals(SearchKey.fold(view.getAuthor())));
+        byte[] folded = SnapshotFile.utf8(key);
+        return scan(view -> view.foldedAuthorEquals(folded));
+    }
+
+    @Override
+    public List<Book> listBooks() {
+        return scan(view -> true);
+    }
+
+    BookView bookView(int ordinal) {
+        return new BookView(buffer, buffer.getInt(bookIndex + 4 * ordinal));
+    }
+
+    private int findBook(String isbn) {
+        byte[] key = SnapshotFile.utf8(isbn);
+        int lo = 0, hi = bookCount - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = bookView(mid).compareIsbn(key);
+            if (cmp == 0) return mid;
+            if (cmp < 0) lo = mid + 1;
+            else hi = mid - 1;
+        }
+        return -1;
+    }
+
+    private List<Book> scan(Predicate<BookView> matches) {
+        List<Book> result = new ArrayList<>();
+        BookView cursor = new BookView(buffer, 0);
+        for (int i = 0; i < bookCount; i++) {
+            cursor.moveTo(buffer, buffer.getInt(bookIndex + 4 * i));
+            if (matches.test(cursor)) result.add(cursor.toBook());
+        }
+        return result;
+    }
+
+    /* =====================================================
+     *  UTILISATEURS
+     * ===================================================== */
+
+    public User getUser(String userId) throws UserNotFoundException {
+        int ordinal = userId == null ? -1 : findUser(userId);
+        if (ordinal < 0) {
+            throw new UserNotFoundException("Utilisateur avec l'ID " + userId + " introuvable.");
+        }
+        return decodeUser(userOffset(ordinal), null);
+    }
+
+    public List<User> listUsers() {
+        List<User> users = new ArrayList<>(userCount);
+        for (int i = 0; i < userCount; i++) {
+            users.add(decodeUser(userOffset(i), null));
+        }
+        return users;
+    }
+
+    /** Décode tout le fichier dans une Library modifiable, en partageant les instances Book. */
+    public Library toLibrary() {
+        Library library = new Library();
+        Book[] books = new Book[bookCount];
+        for (int i = 0; i < bookCount; i++) {
+            books[i] = bookView(i).toBook();
+            library.addBook(books[i]);
+        }
+        for (int i = 0; i < userCount; i++) {
+            library.registerUser(decodeUser(userOffset(i), books));
+        }
+        return library;
+    }
+
+    private int userOffset(int ordinal) {
+        return buffer.getInt(userIndex + 4 * ordinal);
+    }
+
+    private int findUser(String userId) {
+        byte[] key = SnapshotFile.utf8(userId);
+        int lo = 0, hi = userCount - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = compareField(userOffset(mid) + 5, key);
+            if (cmp == 0) return mid;
+            if (cmp < 0) lo = mid + 1;
+            else hi = mid - 1;
+        }
+        return -1;
+    }
+
+    // books != null : on réutilise les instances déjà décodées au lieu de relire les livres
+    private User decodeUser(int offset, Book[] books) {
+        return SnapshotFile.decodeUser(buffer, offset,
+                ordinal -> books != null ? books[ordinal] : bookView(ordinal).toBook());
+    }
+
+    private int compareField(int pos, byte[] key) {
+        int len = buffer.getInt(pos);
+        int n = Math.min(len, key.length);
+        for (int i = 0; i < n; i++) {
+            int cmp = Byte.compareUnsigned(buffer.get(pos + 4 + i), key[i]);
+            if (cmp != 0) return cmp;
+        }
+        return Integer.compare(len, key.length);
+    }
+
+    @Override
+    public String toString() {
+        return "MappedCatalog{" +
+                "books=" + bookCount +
+                ", users=" + userCount +
+                ", version=" + formatVersion +
+                '}';
+    }
+}
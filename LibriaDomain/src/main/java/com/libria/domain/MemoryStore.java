@@ -0,0 +1,195 @@
+package com.libria.domain;
+
+import com.libria.exception.BookAlreadyExistException;
+import com.libria.exception.BookNotFoundException;
+import com.libria.exception.StaleBookException;
+import com.libria.exception.UserAlreadyExistException;
+import com.libria.exception.UserNotFoundException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Moteur en mémoire : une Library, avec ses index et ses verrous par clé. Rien ne survit
+ * à un redémarrage (voir SnapshotStore).
+ */
+public class MemoryStore implements CatalogStore, UserStore {
+
+    private final Library library;
+
+    public MemoryStore() {
+        this(new Library());
+    }
+
+    public MemoryStore(Library library) {
+        if (library == null) throw new IllegalArgumentException("Library null");
+        this.library = library;
+    }
+
+    public Library library() {
+        return library;
+    }
+
+    /* =====================================================
+     *  Catalogue
+     * ===================================================== */
+
+    @Override
+    public boolean containsBook(String isbn) {
+        return library.containsBook(isbn);
+    }
+
+    @Override
+    public Book getBook(String isbn) throws BookNotFoundException {
+        return library.getBook(isbn);
+    }
+
+    @Override
+    public List<Book> searchByTitle(String title) {
+        return library.searchByTitle(title);
+    }
+
+    @Override
+    public List<Book> searchByGenre(String genre) {
+        return library.searchByGenre(genre);
+    }
+
+    // sous-chaîne, comme le LIKE du moteur JPA (la Library ne cherche que l'auteur exact) :
+    // l'index des auteurs ne sert pas, on parcourt le catalogue
+    @Override
+    public List<Book> searchByAuthor(String author) {
+        String query = SearchKey.fold(author == null ? "" : author);
+        List<Book> books = new ArrayList<>();
+        for (Book book : library.catalogSnapshot()) {
+            if (book.authorKey() != null && book.authorKey().contains(query)) books.add(book);
+        }
+        return books;
+    }
+
+    @Override
+    public List<Book> searchByTitleOrAuthor(String text) {
+        Set<Book> books = new LinkedHashSet<>(library.searchByTitle(text));
+        books.addAll(searchByAuthor(text));
+        return new ArrayList<>(books);
+    }
+
+    @Override
+    public List<Book> searchByYearRange(int from, int to, boolean newestFirst, int limit) {
+        if (limit <= 0) throw new IllegalArgumentException("La limite doit être positive.");
+        return library.streamByYear(from, to, newestFirst)
+                .limit(limit)
+                .collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    @Override
+    public List<Book> listBooks() {
+        return library.listBooks();
+    }
+
+    @Override
+    public List<String> listIsbns() {
+        List<String> isbns = new ArrayList<>(library.bookCount());
+        for (Book book : library.catalogSnapshot()) isbns.add(book.getIsbn());
+        return isbns;
+    }
+
+    @Override
+    public int bookCount() {
+        return library.bookCount();
+    }
+
+    @Override
+    public void addBook(Book book) throws BookAlreadyExistException {
+        if (book == null) throw new IllegalArgumentException("Book null");
+        library.addBook(book);
+    }
+
+    @Override
+    public Book updateBook(String isbn, Book updated, Long expectedVersion)
+            throws BookNotFoundException, StaleBookException {
+        if (expectedVersion == null) {
+            library.updateBook(isbn, updated);
+        } else {
+            library.updateBook(isbn, updated, expectedVersion);
+        }
+        return library.getBook(isbn);
+    }
+
+    @Override
+    public void removeBook(String isbn) throws BookNotFoundException {
+        library.removeBook(isbn);
+    }
+
+    /* =====================================================
+     *  Users et téléchargements
+     * ===================================================== */
+
+    @Override
+    public User getUser(String userId) throws UserNotFoundException {
+        return library.getUser(userId);
+    }
+
+    @Override
+    public User getUserByEmail(String email) throws UserNotFoundException {
+        return library.getUserByEmail(email);
+    }
+
+    @Override
+    public List<User> listUsers() {
+        return library.listUsers();
+    }
+
+    @Override
+    public boolean hasAdmin() {
+        return library.hasAdmin();
+    }
+
+    @Override
+    public void registerUser(User user) throws UserAlreadyExistException {
+        if (user == null) throw new IllegalArgumentException("User null");
+        library.registerUser(user);
+    }
+
+    @Override
+    public User updateUser(String userId, String name, String email, String password)
+            throws UserNotFoundException, UserAlreadyExistException {
+        library.updateUser(userId, name, email, password);
+        return library.getUser(userId);
+    }
+
+    @Override
+    public void removeUser(String userId) throws UserNotFoundException {
+        library.removeUser(userId);
+    }
+
+    @Override
+    public void addDownload(String userId, String isbn)
+            throws UserNotFoundException, BookNotFoundException, BookAlreadyExistException {
+        library.downloadBook(userId, isbn);
+    }
+
+    @Override
+    public void removeDownload(String userId, String isbn) throws UserNotFoundException, BookNotFoundException {
+        library.removeDownload(userId, isbn);
+    }
+
+    @Override
+    public Map<String, Integer> downloadCounts() {
+        Map<String, Integer> counts = new HashMap<>();
+        for (Book book : library.catalogSnapshot()) {
+            int count = library.downloadCount(book.getIsbn());
+            if (count > 0) counts.put(book.getIsbn(), count);
+        }
+        return counts;
+    }
+
+    @Override
+    public String toString() {
+        return "MemoryStore{" + library + '}';
+    }
+}
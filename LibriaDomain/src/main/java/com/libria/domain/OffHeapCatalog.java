@@ -0,0 +1,406 @@
+package com.libria.domain;
+
+import com.libria.exception.BookAlreadyExistException;
+import com.libria.exception.BookNotFoundException;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Catalogue hors du tas Java : les enregistrements des livres et la table de hachage des ISBN
+ * vivent dans des ByteBuffer directs, le GC ne voit que quelques objets tampons.
+ *
+ * Un enregistrement est immuable une fois écrit (seul l'octet de drapeaux change) :
+ * une mise à jour ajoute un nouvel enregistrement, l'ancien devient de la place perdue
+ * récupérée par compact(). Les BookView lisent les champs à la demande, sans créer de Book.
+ *
+ * Les écritures restent dans le paquet, comme celles de PartitionedLibrary : de l'extérieur,
+ * le catalogue se remplit d'un bloc par of(livres) et ne se lit qu'ensuite.
+ */
+public class OffHeapCatalog implements Catalog {
+
+    static final int DEFAULT_CHUNK_SIZE = 16 << 20;
+
+    // table : [int hash][long adresse+1] ; 0 = vide, -1 = supprimé
+    private static final int SLOT_BYTES = 12;
+    private static final long EMPTY = 0L;
+    private static final long TOMBSTONE = -1L;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final int chunkSize;
+
+    private List<ByteBuffer> chunks = new ArrayList<>();
+    private ByteBuffer table;
+    private int slots;
+    private int live;
+    private int tombstones;
+    private long usedBytes;
+    private long garbageBytes;
+
+    public OffHeapCatalog() {
+        this(DEFAULT_CHUNK_SIZE);
+    }
+
+    public OffHeapCatalog(int chunkSize) {
+        if (chunkSize < 1024) throw new IllegalArgumentException("Taille de bloc trop petite.");
+        this.chunkSize = chunkSize;
+        this.slots = 1024;
+        this.table = ByteBuffer.allocateDirect(slots * SLOT_BYTES);
+    }
+
+    public static OffHeapCatalog of(Collection<Book> books) {
+        OffHeapCatalog catalog = new OffHeapCatalog();
+        for (Book book : books) {
+            catalog.addBook(book);
+        }
+        return catalog;
+    }
+
+    /* =====================================================
+     *  ÉCRITURES
+     * ===================================================== */
+
+    void addBook(Book book) {
+        if (book == null) throw new IllegalArgumentException("Book null");
+        lock.writeLock().lock();
+        try {
+            byte[] key = utf8(book.getIsbn());
+            int hash = hash(book.getIsbn());
+            if (findSlot(hash, key) >= 0)
+                throw new BookAlreadyExistException("Livre déjà existant !");
+            long address = append(book);
+            insert(hash, address);
+            live++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void removeBook(String isbn) {
+        if (isbn == null || isbn.isBlank()) throw new IllegalArgumentException("ISBN invalide");
+        isbn = Isbn.lookupKey(isbn);
+        lock.writeLock().lock();
+        try {
+            int slot = findSlot(hash(isbn), utf8(isbn));
+            if (slot < 0)
+                throw new BookNotFoundException("Livre introuvable !");
+            long address = slotAddress(slot);
+            BookView old = view(address);
+            old.markDeleted();
+            garbageBytes += old.recordLength();
+            table.putLong(slot * SLOT_BYTES + 4, TOMBSTONE);
+            live--;
+            tombstones++;
+            compactIfWasteful();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Remplace l'enregistrement du livre de même ISBN par un nouveau. */
+    void replaceBook(Book book) {
+        if (book == null) throw new IllegalArgumentException("Book null");
+        lock.writeLock().lock();
+        try {
+            int slot = findSlot(hash(book.getIsbn()), utf8(book.getIsbn()));
+            if (slot < 0)
+                throw new BookNotFoundException("Livre introuvable !");
+            BookView old = view(slotAddress(slot));
+            long address = append(book);
+            old.markDeleted();
+            garbageBytes += old.recordLength();
+            table.putLong(slot * SLOT_BYTES + 4, address + 1);
+            compactIfWasteful();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void setAvailability(String isbn, boolean available) {
+        isbn = Isbn.lookupKey(isbn);
+        lock.writeLock().lock();
+        try {
+            BookView view = find(isbn);
+            if (view == null)
+                throw new BookNotFoundException("Livre introuvable !");
+            view.setAvailable(available);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Recopie les enregistrements vivants dans des blocs neufs et reconstruit la table. */
+    public void compact() {
+        lock.writeLock().lock();
+        try {
+            List<ByteBuffer> oldChunks = chunks;
+            chunks = new ArrayList<>();
+            usedBytes = 0;
+            garbageBytes = 0;
+            slots = tableSizeFor(live);
+            table = ByteBuffer.allocateDirect(slots * SLOT_BYTES);
+            tombstones = 0;
+            for (ByteBuffer chunk : oldChunks) {
+                int pos = 0;
+                while (pos < chunk.position()) {
+                    BookView old = new BookView(chunk, pos);
+                    int length = old.recordLength();
+                    if (!old.isDeleted()) {
+                        long address = reserve(length);
+                        chunks.get(chunkIndex(address)).put(chunkOffset(address), chunk, pos, length);
+                        insert(hash(old.getIsbn()), address);
+                    }
+                    pos += length;
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void compactIfWasteful() {
+        if (garbageBytes > chunkSize / 4 && garbageBytes * 2 > usedBytes) compact();
+    }
+
+    /* =====================================================
+     *  LECTURES
+     * ===================================================== */
+
+    @Override
+    public boolean containsBook(String isbn) {
+        if (isbn == null) return false;
+        String key = Isbn.lookupKey(isbn);
+        lock.readLock().lock();
+        try {
+            return findSlot(hash(key), utf8(key)) >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Book getBook(String isbn) throws BookNotFoundException {
+        if (isbn == null || isbn.isBlank()) {
+            throw new IllegalArgumentException("ISBN invalide.");
+        }
+        BookView view = view(isbn);
+        if (view == null) {
+            throw new BookNotFoundException("Aucun livre trouvé avec l’ISBN : " + isbn);
+        }
+        return view.toBook();
+    }
+
+    /**
+     * Vue paresseuse sur l'enregistrement du livre, ou null. La vue reste lisible
+     * même après une mise à jour (elle montre alors l'ancienne version).
+     */
+    public BookView view(String isbn) {
+        if (isbn == null) return null;
+        String key = Isbn.lookupKey(isbn);
+        lock.readLock().lock();
+        try {
+            return find(key);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Parcourt les livres vivants avec une seule vue réutilisée : ne pas la conserver
+     * en dehors du callback (utiliser toBook() pour ça).
+     */
+    public void forEach(Consumer<BookView> action) {
+        lock.readLock().lock();
+        try {
+            BookView cursor = new BookView(null, 0);
+            for (ByteBuffer chunk : chunks) {
+                int pos = 0;
+                while (pos < chunk.position()) {
+                    cursor.moveTo(chunk, pos);
+                    if (!cursor.isDeleted()) action.accept(cursor);
+                    pos += cursor.recordLength();
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Book> searchByTitle(String title) {
+        byte[] needle = utf8(SearchKey.fold(title));
+        return scan(view -> view.foldedTitleContains(needle));
+    }
+
+    @Override
+    public List<Book> searchByGenre(String genre) {
+        if (genre == null) return new ArrayList<>();
+        byte[] folded = utf8(SearchKey.fold(genre));
+        return scan(view -> view.foldedGenreEquals(folded));
+    }
+
+    @Override
+    public List<Book> searchByAuthor(String author) {
+        if (author == null) return new ArrayList<>();
+        byte[] folded = utf8(SearchKey.fold(author));
+        return scan(view -> view.foldedAuthorEquals(folded));
+    }
+
+    @Override
+    public List<Book> listBooks() {
+        return scan(view -> true);
+    }
+
+    @Override
+    public int bookCount() {
+        lock.readLock().lock();
+        try {
+            return live;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Octets réservés hors tas (blocs d'enregistrements + table). */
+    public long offHeapBytes() {
+        lock.readLock().lock();
+        try {
+            return (long) chunks.size() * chunkSize + (long) slots * SLOT_BYTES;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<Book> scan(Predicate<BookView> matches) {
+        List<Book> result = new ArrayList<>();
+        forEach(view -> {
+            if (matches.test(view)) result.add(view.toBook());
+        });
+        return result;
+    }
+
+    /* =====================================================
+     *  Stockage
+     * ===================================================== */
+
+    private static byte[] utf8(String s) {
+        return s == null ? null : s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int hash(String isbn) {
+        int h = isbn.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static int chunkIndex(long address) {
+        return (int) (address >>> 32);
+    }
+
+    private static int chunkOffset(long address) {
+        return (int) address;
+    }
+
+    private BookView view(long address) {
+        return new BookView(chunks.get(chunkIndex(address)), chunkOffset(address));
+    }
+
+    private long slotAddress(int slot) {
+        return table.getLong(slot * SLOT_BYTES + 4) - 1;
+    }
+
+    private BookView find(String isbn) {
+        int slot = findSlot(hash(isbn), utf8(isbn));
+        return slot < 0 ? null : view(slotAddress(slot));
+    }
+
+    private int findSlot(int hash, byte[] key) {
+        int mask = slots - 1;
+        for (int i = hash & mask, probes = 0; probes < slots; i = (i + 1) & mask, probes++) {
+            long stored = table.getLong(i * SLOT_BYTES + 4);
+            if (stored == EMPTY) return -1;
+            if (stored != TOMBSTONE && table.getInt(i * SLOT_BYTES) == hash
+                    && view(stored - 1).isbnEquals(key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void insert(int hash, long address) {
+        if ((live + tombstones + 1) * 2L > slots) {
+            rehash(tableSizeFor(live + 1));
+        }
+        int mask = slots - 1;
+        int i = hash & mask;
+        while (true) {
+            long stored = table.getLong(i * SLOT_BYTES + 4);
+            if (stored == EMPTY || stored == TOMBSTONE) {
+                if (stored == TOMBSTONE) tombstones--;
+                table.putInt(i * SLOT_BYTES, hash);
+                table.putLong(i * SLOT_BYTES + 4, address + 1);
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    private void rehash(int newSlots) {
+        ByteBuffer old = table;
+        int oldSlots = slots;
+        table = ByteBuffer.allocateDirect(newSlots * SLOT_BYTES);
+        slots = newSlots;
+        tombstones = 0;
+        int mask = newSlots - 1;
+        for (int s = 0; s < oldSlots; s++) {
+            long stored = old.getLong(s * SLOT_BYTES + 4);
+            if (stored == EMPTY || stored == TOMBSTONE) continue;
+            int hash = old.getInt(s * SLOT_BYTES);
+            int i = hash & mask;
+            while (table.getLong(i * SLOT_BYTES + 4) != EMPTY) i = (i + 1) & mask;
+            table.putInt(i * SLOT_BYTES, hash);
+            table.putLong(i * SLOT_BYTES + 4, stored);
+        }
+    }
+
+    // taux de remplissage max 1/2, puissance de 2
+    private static int tableSizeFor(int entries) {
+        int size = 1024;
+        while (size < entries * 4L) size <<= 1;
+        return size;
+    }
+
+    private long append(Book book) {
+        byte[] record = BookView.encode(book);
+        long address = reserve(record.length);
+        chunks.get(chunkIndex(address)).put(chunkOffset(address), record);
+        return address;
+    }
+
+    // réserve length octets à la fin du dernier bloc (un enregistrement ne chevauche jamais deux blocs)
+    private long reserve(int length) {
+        if (length > chunkSize) throw new IllegalArgumentException("Livre trop volumineux pour le stockage hors tas.");
+        ByteBuffer current = chunks.isEmpty() ? null : chunks.get(chunks.size() - 1);
+        if (current == null || current.remaining() < length) {
+            current = ByteBuffer.allocateDirect(chunkSize);
+            chunks.add(current);
+        }
+        int offset = current.position();
+        current.position(offset + length);
+        usedBytes += length;
+        return ((long) (chunks.size() - 1) << 32) | offset;
+    }
+
+    @Override
+    public String toString() {
+        return "OffHeapCatalog{" +
+                "books=" + bookCount() +
+                '}';
+    }
+}
@@ -0,0 +1,172 @@
+package com.libria.domain;
+
+import com.libria.exception.BookNotFoundException;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
+
+/**
+ * Catalogue découpé en N Library indépendantes (maps, index, verrous), l'ISBN canonique
+ * choisissant la partition. Une écriture ne touche que sa partition ; une recherche est
+ * lancée sur toutes les partitions en parallèle puis les résultats sont fusionnés par ISBN,
+ * donc dans le même ordre quel que soit le nombre de partitions.
+ *
+ * Les écritures passent par la Library de la partition : admin.addBookToLibrary(
+ * catalog.shardFor(book.getIsbn()), book). Les users et téléchargements restent dans une
+ * Library classique : ce mode ne partitionne que le catalogue.
+ */
+public class PartitionedLibrary implements Catalog {
+
+    // en dessous, le coût de la distribution dépasse celui du parcours
+    private static final int PARALLEL_THRESHOLD = 4096;
+
+    private static final Comparator<Book> BY_ISBN = Comparator.comparing(Book::getIsbn);
+
+    private final Library[] shards;
+    private final ForkJoinPool pool;
+
+    public PartitionedLibrary(int shards) {
+        this(shards, ForkJoinPool.commonPool());
+    }
+
+    public PartitionedLibrary(int shards, ForkJoinPool pool) {
+        if (shards <= 0) throw new IllegalArgumentException("Nombre de partitions invalide.");
+        if (pool == null) throw new IllegalArgumentException("Pool null");
+        this.shards = new Library[shards];
+        for (int i = 0; i < shards; i++) {
+            this.shards[i] = new Library();
+        }
+        this.pool = pool;
+    }
+
+    public int shardCount() {
+        return shards.length;
+    }
+
+    /** La Library qui possède cet ISBN (variantes d'écriture comprises). */
+    public Library shardFor(String isbn) {
+        if (isbn == null || isbn.isBlank()) throw new IllegalArgumentException("ISBN invalide.");
+        int h = Isbn.lookupKey(isbn).hashCode();
+        h ^= h >>> 16;
+        return shards[Math.floorMod(h * 0x9E3779B9, shards.length)];
+    }
+
+    void addBook(Book book) {
+        if (book == null) throw new IllegalArgumentException("Book null");
+        shardFor(book.getIsbn()).addBook(book);
+    }
+
+    void removeBook(String isbn) {
+        shardFor(isbn).removeBook(isbn);
+    }
+
+    void updateBook(String isbn, Book updated) {
+        shardFor(isbn).updateBook(isbn, updated);
+    }
+
+    /* =====================================================
+     *  Lectures
+     * ===================================================== */
+
+    @Override
+    public boolean containsBook(String isbn) {
+        return isbn != null && !isbn.isBlank() && shardFor(isbn).containsBook(isbn);
+    }
+
+    @Override
+    public Book getBook(String isbn) throws BookNotFoundException {
+        return shardFor(isbn).getBook(isbn);
+    }
+
+    @Override
+    public List<Book> searchByTitle(String title) {
+        return gather(shard -> shard.searchByTitle(title), BY_ISBN, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<Book> searchByGenre(String genre) {
+        return gather(shard -> shard.searchByGenre(genre), BY_ISBN, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<Book> searchByAuthor(String author) {
+        return gather(shard -> shard.searchByAuthor(author), BY_ISBN, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Requête composée sur chaque partition (chacune avec son propre plan), fusionnée selon
+     * le tri demandé départagé par ISBN (ISBN seul sans tri) ; la limite est appliquée par
+     * partition avec ce même ordre puis au total, le résultat ne dépend donc pas du découpage.
+     */
+    public List<Book> search(BookQuery query) {
+        if (query == null) throw new IllegalArgumentException("Requête null");
+        Comparator<Book> requested = query.sort().order();
+        Comparator<Book> order = requested == null ? BY_ISBN : requested.thenComparing(BY_ISBN);
+        return gather(shard -> shard.search(query, order), order, query.limit());
+    }
+
+    @Override
+    public List<Book> listBooks() {
+        List<Book> books = new ArrayList<>(bookCount());
+        for (Library shard : shards) books.addAll(shard.listBooks());
+        return books;
+    }
+
+    @Override
+    public int bookCount() {
+        int count = 0;
+        for (Library shard : shards) count += shard.bookCount();
+        return count;
+    }
+
+    // scatter : une tâche par partition, qui trie son propre résultat ;
+    // gather : fusion des listes triées jusqu'à limit
+    private List<Book> gather(Function<Library, List<Book>> search, Comparator<Book> order, int limit) {
+        List<List<Book>> parts = new ArrayList<>(shards.length);
+        if (shards.length == 1 || bookCount() < PARALLEL_THRESHOLD) {
+            for (Library shard : shards) parts.add(sorted(search.apply(shard), order));
+        } else {
+            List<ForkJoinTask<List<Book>>> tasks = new ArrayList<>(shards.length);
+            for (Library shard : shards) {
+                tasks.add(pool.submit(() -> sorted(search.apply(shard), order)));
+            }
+            for (ForkJoinTask<List<Book>> task : tasks) parts.add(task.join());
+        }
+        return merge(parts, order, limit);
+    }
+
+    private static List<Book> sorted(List<Book> books, Comparator<Book> order) {
+        List<Book> copy = new ArrayList<>(books);
+        copy.sort(order);
+        return copy;
+    }
+
+    private static List<Book> merge(List<List<Book>> parts, Comparator<Book> order, int limit) {
+        int total = 0;
+        for (List<Book> part : parts) total += part.size();
+        List<Book> result = new ArrayList<>(Math.min(total, limit));
+        // tête de chaque liste : [partition, position]
+        PriorityQueue<int[]> heads = new PriorityQueue<>(Math.max(1, parts.size()),
+                (a, b) -> order.compare(parts.get(a[0]).get(a[1]), parts.get(b[0]).get(b[1])));
+        for (int i = 0; i < parts.size(); i++) {
+            if (!parts.get(i).isEmpty()) heads.add(new int[]{i, 0});
+        }
+        while (result.size() < limit && !heads.isEmpty()) {
+            int[] head = heads.poll();
+            List<Book> part = parts.get(head[0]);
+            result.add(part.get(head[1]));
+            if (++head[1] < part.size()) heads.add(head);
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "PartitionedLibrary{" +
+                "shards=" + shards.length +
+                ", books=" + bookCount() +
+                '}';
+    }
+}
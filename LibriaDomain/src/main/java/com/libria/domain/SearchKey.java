@@ -0,0 +1,54 @@
+package com.libria.domain;
+
+import java.text.Normalizer;
+import java.util.Locale;
+
+/**
+ * Forme de recherche d'un texte : minuscules et sans accents ("Misérables" -> "miserables",
+ * "Œuvres" -> "oeuvres"). Calculée une fois par livre, jamais pendant une recherche.
+ */
+final class SearchKey {
+
+    private SearchKey() {
+    }
+
+    static String fold(String text) {
+        if (text == null) return null;
+        int i = 0;
+        int n = text.length();
+        boolean ascii = true;
+        for (; i < n; i++) {
+            char c = text.charAt(i);
+            if (c >= 0x80) {
+                ascii = false;
+                break;
+            }
+            if (c >= 'A' && c <= 'Z') break;
+        }
+        if (i == n) return text; // déjà en forme de recherche, aucune copie
+        if (ascii && isAscii(text, i)) return text.toLowerCase(Locale.ROOT);
+
+        String decomposed = Normalizer.normalize(text.toLowerCase(Locale.ROOT), Normalizer.Form.NFD);
+        StringBuilder folded = new StringBuilder(decomposed.length());
+        for (int j = 0; j < decomposed.length(); j++) {
+            char c = decomposed.charAt(j);
+            switch (Character.getType(c)) {
+                case Character.NON_SPACING_MARK, Character.ENCLOSING_MARK, Character.COMBINING_SPACING_MARK -> {
+                }
+                default -> {
+                    if (c == 'œ') folded.append("oe");
+                    else if (c == 'æ') folded.append("ae");
+                    else folded.append(c);
+                }
+            }
+        }
+        return folded.toString();
+    }
+
+    private static boolean isAscii(String text, int from) {
+        for (int i = from; i < text.length(); i++) {
+            if (text.charAt(i) >= 0x80) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,366 @@
+package com.libria.domain;
+
+import java.util.*;
+
+/**
+ * Vue immuable et versionnée d'un ensemble d'objets indexés par une clé (ISBN, userId...).
+ *
+ * C'est un arbre de hachage persistant : with/without renvoient un nouveau Snapshot qui
+ * partage tous les noeuds non modifiés avec l'ancien (on ne recopie que le chemin vers la clé).
+ * Un lecteur peut donc garder un Snapshot et le parcourir sans copie ni verrou,
+ * pendant que la Library en publie de nouveaux.
+ *
+ * L'ordre de parcours est stable : hash de la clé (non signé) puis clé.
+ */
+public final class Snapshot<T> extends AbstractCollection<T> {
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    private static final Snapshot<?> EMPTY = new Snapshot<>(null, 0, 0L);
+
+    private final Object root;
+    private final int size;
+    private final long version;
+
+    private Snapshot(Object root, int size, long version) {
+        this.root = root;
+        this.size = size;
+        this.version = version;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> Snapshot<T> empty() {
+        return (Snapshot<T>) EMPTY;
+    }
+
+    public long version() {
+        return version;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    public T get(String key) {
+        if (key == null) return null;
+        int hash = hash(key);
+        Object node = root;
+        for (int level = 0; node != null; level++) {
+            if (node instanceof Entry<?> e) {
+                return e.key.equals(key) ? value(e) : null;
+            }
+            if (node instanceof Collision c) {
+                int i = c.indexOf(key);
+                return i >= 0 ? value(c.entries[i]) : null;
+            }
+            Branch b = (Branch) node;
+            int bit = 1 << index(hash, level);
+            if ((b.bitmap & bit) == 0) return null;
+            node = b.children[b.position(bit)];
+        }
+        return null;
+    }
+
+    public boolean containsKey(String key) {
+        return get(key) != null;
+    }
+
+    /** Nouveau snapshot où la clé est associée à value (ajout ou remplacement). */
+    public Snapshot<T> with(String key, T value) {
+        Objects.requireNonNull(key, "key");
+        Objects.requireNonNull(value, "value");
+        boolean[] added = new boolean[1];
+        Object newRoot = put(root, 0, new Entry<>(key, hash(key), value), added);
+        return new Snapshot<>(newRoot, added[0] ? size + 1 : size, version + 1);
+    }
+
+    /** Nouveau snapshot sans la clé ; renvoie this si la clé est absente. */
+    public Snapshot<T> without(String key) {
+        if (key == null) return this;
+        Object newRoot = remove(root, 0, key, hash(key));
+        if (newRoot == root) return this;
+        return new Snapshot<>(newRoot, size - 1, version + 1);
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new NodeIterator<>(root, null);
+    }
+
+    /**
+     * Parcours à partir de la première clé strictement après afterKey dans l'ordre du Snapshot
+     * (la clé n'a pas besoin d'être encore présente). Coût O(profondeur) pour se positionner.
+     */
+    public Iterator<T> iteratorAfter(String afterKey) {
+        return new NodeIterator<>(root, afterKey);
+    }
+
+    /** Ordre de parcours des clés : hash non signé puis ordre naturel. */
+    public static final Comparator<String> KEY_ORDER = (a, b) -> compare(hash(a), a, hash(b), b);
+
+    private static int compare(int hashA, String keyA, int hashB, String keyB) {
+        int cmp = Integer.compareUnsigned(hashA, hashB);
+        return cmp != 0 ? cmp : keyA.compareTo(keyB);
+    }
+
+    /* =====================================================
+     *  Noeuds
+     * ===================================================== */
+
+    static int hash(String key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    // on consomme le hash par les bits de poids fort : l'ordre des slots suit l'ordre du hash.
+    // niveaux 0..6 : 6 x 5 bits puis les 2 derniers bits, au-delà seuls des noeuds de collision
+    static int index(int hash, int level) {
+        int shift = 32 - BITS * (level + 1);
+        return shift >= 0 ? (hash >>> shift) & MASK : (hash << -shift) & MASK;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T value(Entry<?> e) {
+        return (T) e.value;
+    }
+
+    private record Entry<T>(String key, int hash, T value) {
+    }
+
+    private static final class Branch {
+        final int bitmap;
+        final Object[] children;
+
+        Branch(int bitmap, Object[] children) {
+            this.bitmap = bitmap;
+            this.children = children;
+        }
+
+        int position(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+    }
+
+    // clés différentes avec exactement le même hash, triées par clé
+    private static final class Collision {
+        final int hash;
+        final Entry<?>[] entries;
+
+        Collision(int hash, Entry<?>[] entries) {
+            this.hash = hash;
+            this.entries = entries;
+        }
+
+        int indexOf(String key) {
+            int lo = 0, hi = entries.length - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                int cmp = entries[mid].key.compareTo(key);
+                if (cmp == 0) return mid;
+                if (cmp < 0) lo = mid + 1;
+                else hi = mid - 1;
+            }
+            return -(lo + 1);
+        }
+    }
+
+    private static int hashOf(Object node) {
+        return node instanceof Entry<?> e ? e.hash : ((Collision) node).hash;
+    }
+
+    private static Object put(Object node, int level, Entry<?> entry, boolean[] added) {
+        if (node == null) {
+            added[0] = true;
+            return entry;
+        }
+        if (node instanceof Entry<?> e) {
+            if (e.key.equals(entry.key)) return entry;
+            added[0] = true;
+            if (e.hash == entry.hash) {
+                Entry<?>[] pair = e.key.compareTo(entry.key) < 0
+                        ? new Entry<?>[]{e, entry} : new Entry<?>[]{entry, e};
+                return new Collision(e.hash, pair);
+            }
+            return split(e, entry, level);
+        }
+        if (node instanceof Collision c) {
+            if (c.hash != entry.hash) {
+                added[0] = true;
+                return split(c, entry, level);
+            }
+            int i = c.indexOf(entry.key);
+            Entry<?>[] entries;
+            if (i >= 0) {
+                entries = c.entries.clone();
+                entries[i] = entry;
+            } else {
+                added[0] = true;
+                int at = -(i + 1);
+                entries = new Entry<?>[c.entries.length + 1];
+                System.arraycopy(c.entries, 0, entries, 0, at);
+                entries[at] = entry;
+                System.arraycopy(c.entries, at, entries, at + 1, c.entries.length - at);
+            }
+            return new Collision(c.hash, entries);
+        }
+        Branch b = (Branch) node;
+        int bit = 1 << index(entry.hash, level);
+        int pos = b.position(bit);
+        if ((b.bitmap & bit) != 0) {
+            Object child = b.children[pos];
+            Object newChild = put(child, level + 1, entry, added);
+            Object[] children = b.children.clone();
+            children[pos] = newChild;
+            return new Branch(b.bitmap, children);
+        }
+        added[0] = true;
+        Object[] children = new Object[b.children.length + 1];
+        System.arraycopy(b.children, 0, children, 0, pos);
+        children[pos] = entry;
+        System.arraycopy(b.children, pos, children, pos + 1, b.children.length - pos);
+        return new Branch(b.bitmap | bit, children);
+    }
+
+    // deux feuilles de hash différents : on descend jusqu'au niveau où leurs slots divergent
+    private static Object split(Object existing, Entry<?> entry, int level) {
+        int ia = index(hashOf(existing), level);
+        int ib = index(entry.hash, level);
+        if (ia == ib) {
+            return new Branch(1 << ia, new Object[]{split(existing, entry, level + 1)});
+        }
+        Object[] children = ia < ib ? new Object[]{existing, entry} : new Object[]{entry, existing};
+        return new Branch((1 << ia) | (1 << ib), children);
+    }
+
+    private static Object remove(Object node, int level, String key, int hash) {
+        if (node == null) return null;
+        if (node instanceof Entry<?> e) {
+            return e.key.equals(key) ? null : node;
+        }
+        if (node instanceof Collision c) {
+            int i = c.indexOf(key);
+            if (i < 0) return node;
+            if (c.entries.length == 2) return c.entries[1 - i];
+            Entry<?>[] entries = new Entry<?>[c.entries.length - 1];
+            System.arraycopy(c.entries, 0, entries, 0, i);
+            System.arraycopy(c.entries, i + 1, entries, i, entries.length - i);
+            return new Collision(c.hash, entries);
+        }
+        Branch b = (Branch) node;
+        int bit = 1 << index(hash, level);
+        if ((b.bitmap & bit) == 0) return node;
+        int pos = b.position(bit);
+        Object child = b.children[pos];
+        Object newChild = remove(child, level + 1, key, hash);
+        if (newChild == child) return node;
+        if (newChild == null) {
+            if (b.children.length == 1) return null;
+            Object[] children = new Object[b.children.length - 1];
+            System.arraycopy(b.children, 0, children, 0, pos);
+            System.arraycopy(b.children, pos + 1, children, pos, children.length - pos);
+            // une seule feuille restante : elle peut remonter d'un niveau
+            if (children.length == 1 && !(children[0] instanceof Branch)) return children[0];
+            return new Branch(b.bitmap & ~bit, children);
+        }
+        if (b.children.length == 1 && !(newChild instanceof Branch)) return newChild;
+        Object[] children = b.children.clone();
+        children[pos] = newChild;
+        return new Branch(b.bitmap, children);
+    }
+
+    /* =====================================================
+     *  Parcours
+     * ===================================================== */
+
+    private static final class NodeIterator<T> implements Iterator<T> {
+        // 7 niveaux de branches (voir index), plus une collision et une entrée
+        private static final int MAX_DEPTH = (32 + BITS - 1) / BITS + 2;
+
+        // pile de (noeud, position du prochain enfant) : tableaux fixes, rien n'est alloué
+        // pendant le parcours
+        private final Object[] nodes = new Object[MAX_DEPTH];
+        private final int[] positions = new int[MAX_DEPTH];
+        private int depth;
+        private Entry<?> next;
+
+        NodeIterator(Object root, String afterKey) {
+            if (root != null) {
+                if (afterKey == null) push(root, 0);
+                else seek(root, 0, hash(afterKey), afterKey);
+            }
+            advance();
+        }
+
+        private void push(Object node, int position) {
+            nodes[depth] = node;
+            positions[depth] = position;
+            depth++;
+        }
+
+        // empile le chemin vers afterKey en sautant tout ce qui est avant
+        private void seek(Object node, int level, int hash, String key) {
+            if (node instanceof Entry<?> e) {
+                if (compare(e.hash, e.key, hash, key) > 0) push(e, 0);
+                return;
+            }
+            if (node instanceof Collision c) {
+                int cmp = Integer.compareUnsigned(c.hash, hash);
+                if (cmp > 0) {
+                    push(c, 0);
+                } else if (cmp == 0) {
+                    int i = c.indexOf(key);
+                    push(c, i >= 0 ? i + 1 : -(i + 1));
+                }
+                return;
+            }
+            Branch b = (Branch) node;
+            int bit = 1 << index(hash, level);
+            int pos = b.position(bit);
+            if ((b.bitmap & bit) != 0) {
+                push(b, pos + 1);
+                seek(b.children[pos], level + 1, hash, key);
+            } else {
+                push(b, pos);
+            }
+        }
+
+        private void advance() {
+            next = null;
+            while (depth > 0) {
+                Object node = nodes[depth - 1];
+                if (node instanceof Entry<?> e) {
+                    nodes[--depth] = null;
+                    next = e;
+                    return;
+                }
+                Object[] children = node instanceof Branch b ? b.children : ((Collision) node).entries;
+                int pos = positions[depth - 1];
+                if (pos >= children.length) {
+                    nodes[--depth] = null;
+                    continue;
+                }
+                positions[depth - 1] = pos + 1;
+                if (children[pos] instanceof Entry<?> e) {
+                    next = e;
+                    return;
+                }
+                push(children[pos], 0);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public T next() {
+            if (next == null) throw new NoSuchElementException();
+            T value = value(next);
+            advance();
+            return value;
+        }
+    }
+}
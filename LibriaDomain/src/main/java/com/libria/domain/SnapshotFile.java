@@ -0,0 +1,224 @@
+package com.libria.domain;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+/**
+ * Format binaire compact d'une Library (livres, utilisateurs, téléchargements),
+ * écrit de façon atomique et relu par mapping mémoire sans tout décoder au démarrage.
+ *
+ * En-tête de 64 octets :
+ *   int magic, short version du format, short taille de l'en-tête,
+ *   int nb livres, int nb users, long nb téléchargements,
+ *   long position index livres, long position index users, long version du catalogue.
+ * Puis les enregistrements livres (format BookView) triés par ISBN, leur index (int positions),
+ * les enregistrements users triés par id et leur index.
+ *
+ * Enregistrement user : [int longueur][byte rôle][userId][nom][email][mot de passe]
+ *   [int nb téléchargements][int rang du livre]...
+ *
+ * Chaque enregistrement commence par sa longueur et l'en-tête donne sa propre taille : un
+ * lecteur relit les formats plus anciens (la version 3 a ajouté la version du livre en fin
+ * d'enregistrement), mais refuse un format plus récent que le sien.
+ */
+public final class SnapshotFile {
+
+    static final int MAGIC = 0x4C425253; // "LBRS"
+    static final short FORMAT_VERSION = 3;
+    static final int HEADER_BYTES = 64;
+
+    static final byte ROLE_MEMBER = 0;
+    static final byte ROLE_ADMIN = 1;
+
+    private SnapshotFile() {
+    }
+
+    /** Écrit la Library dans un fichier temporaire puis le renomme atomiquement. */
+    public static void write(Library library, Path path) throws IOException {
+        Snapshot<Book> books = library.catalogSnapshot();
+        Snapshot<User> users = library.userSnapshot();
+
+        List<Book> sortedBooks = sortByKey(books, Book::getIsbn);
+        Map<String, Integer> ordinals = new HashMap<>();
+        for (int i = 0; i < sortedBooks.size(); i++) {
+            ordinals.put(sortedBooks.get(i).getIsbn(), i);
+        }
+        List<User> sortedUsers = sortByKey(users, User::getUserId);
+
+        // les champs et les téléchargements d'un user changent sous son verrou : on les encode
+        // tous sous les verrous users, avant d'écrire quoi que ce soit
+        List<byte[]> userRecords = new ArrayList<>(sortedUsers.size());
+        long[] edges = {0};
+        library.withAllUserLocks(() -> {
+            for (User user : sortedUsers) {
+                List<Integer> downloads = new ArrayList<>();
+                for (Book book : user.downloadedBooksView()) {
+                    Integer ordinal = ordinals.get(book.getIsbn());
+                    if (ordinal != null) downloads.add(ordinal);
+                }
+                userRecords.add(encodeUser(user, downloads));
+                edges[0] += downloads.size();
+            }
+        });
+
+        Path dir = path.toAbsolutePath().getParent();
+        Path tmp = Files.createTempFile(dir, path.getFileName().toString(), ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+            long pos = HEADER_BYTES;
+            out.write(new byte[HEADER_BYTES]);
+
+            int[] bookOffsets = new int[sortedBooks.size()];
+            for (int i = 0; i < sortedBooks.size(); i++) {
+                byte[] record = BookView.encode(sortedBooks.get(i));
+                bookOffsets[i] = checkedOffset(pos);
+                out.write(record);
+                pos += record.length;
+            }
+            long bookIndex = pos;
+            for (int offset : bookOffsets) out.writeInt(offset);
+            pos += 4L * bookOffsets.length;
+
+            int[] userOffsets = new int[userRecords.size()];
+            for (int i = 0; i < userRecords.size(); i++) {
+                byte[] record = userRecords.get(i);
+                userOffsets[i] = checkedOffset(pos);
+                out.write(record);
+                pos += record.length;
+            }
+            long userIndex = pos;
+            for (int offset : userOffsets) out.writeInt(offset);
+            pos += 4L * userOffsets.length;
+            checkedOffset(pos);
+            out.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC);
+            header.putShort(FORMAT_VERSION);
+            header.putShort((short) HEADER_BYTES);
+            header.putInt(sortedBooks.size());
+            header.putInt(sortedUsers.size());
+            header.putLong(edges[0]);
+            header.putLong(bookIndex);
+            header.putLong(userIndex);
+            header.putLong(books.version());
+            header.clear();
+            channel.write(header, 0);
+            channel.force(true);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        syncDirectory(dir);
+    }
+
+    // le renommage n'est durable qu'une fois le répertoire lui-même forcé sur disque
+    private static void syncDirectory(Path dir) throws IOException {
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (AccessDeniedException e) {
+            // Windows n'ouvre pas les répertoires : NTFS journalise déjà le renommage
+        }
+    }
+
+    /** Ouvre le fichier par mapping mémoire : seul l'en-tête est lu tout de suite. */
+    public static MappedCatalog open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot trop volumineux pour un seul mapping : " + channel.size());
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new MappedCatalog(buffer);
+        }
+    }
+
+    /** Reconstruit une Library modifiable à partir du fichier (décode tout). */
+    public static Library load(Path path) throws IOException {
+        return open(path).toLibrary();
+    }
+
+    private record Keyed<T>(byte[] key, T value) {
+    }
+
+    // tri sur les octets UTF-8 non signés, chaque clé n'est encodée qu'une fois
+    private static <T> List<T> sortByKey(Collection<T> values, Function<T, String> key) {
+        List<Keyed<T>> keyed = new ArrayList<>(values.size());
+        for (T value : values) {
+            keyed.add(new Keyed<>(utf8(key.apply(value)), value));
+        }
+        keyed.sort((a, b) -> Arrays.compareUnsigned(a.key(), b.key()));
+        List<T> sorted = new ArrayList<>(keyed.size());
+        for (Keyed<T> k : keyed) sorted.add(k.value());
+        return sorted;
+    }
+
+    private static int checkedOffset(long pos) throws IOException {
+        if (pos > Integer.MAX_VALUE) {
+            throw new IOException("Snapshot limité à 2 Go par fichier.");
+        }
+        return (int) pos;
+    }
+
+    static byte[] utf8(String s) {
+        return s == null ? null : s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    static byte[] encodeUser(User user, List<Integer> downloads) {
+        byte[][] fields = {utf8(user.getUserId()), utf8(user.getName()), utf8(user.getEmail()), utf8(user.getPassword())};
+        int length = 4 + 1 + 4 + 4 * downloads.size();
+        for (byte[] field : fields) {
+            length += 4 + (field == null ? 0 : field.length);
+        }
+        ByteBuffer record = ByteBuffer.allocate(length);
+        record.putInt(length);
+        record.put("ADMIN".equals(user.getRole()) ? ROLE_ADMIN : ROLE_MEMBER);
+        for (byte[] field : fields) {
+            record.putInt(field == null ? -1 : field.length);
+            if (field != null) record.put(field);
+        }
+        record.putInt(downloads.size());
+        for (int ordinal : downloads) record.putInt(ordinal);
+        return record.array();
+    }
+
+    /** Décode un enregistrement user ; books donne le livre de chaque rang téléchargé. */
+    static User decodeUser(ByteBuffer buffer, int offset, IntFunction<Book> books) {
+        byte role = buffer.get(offset + 4);
+        int pos = offset + 5;
+        String[] fields = new String[4];
+        for (int i = 0; i < fields.length; i++) {
+            int len = buffer.getInt(pos);
+            pos += 4;
+            if (len >= 0) {
+                byte[] bytes = new byte[len];
+                buffer.get(pos, bytes);
+                fields[i] = new String(bytes, StandardCharsets.UTF_8);
+                pos += len;
+            }
+        }
+        User user = role == ROLE_ADMIN
+                ? new Admin(fields[0], fields[1], fields[2], fields[3])
+                : new Member(fields[0], fields[1], fields[2], fields[3]);
+        int downloads = buffer.getInt(pos);
+        pos += 4;
+        for (int i = 0; i < downloads; i++) {
+            user.downloadBook(books.apply(buffer.getInt(pos + 4 * i)));
+        }
+        return user;
+    }
+}
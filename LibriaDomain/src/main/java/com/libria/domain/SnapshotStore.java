@@ -0,0 +1,53 @@
+package com.libria.domain;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Moteur en mémoire rendu durable : au démarrage, le dernier snapshot est rechargé et le
+ * journal rejoué par-dessus ; chaque écriture est ensuite journalisée avant de rendre la
+ * main. checkpoint() réécrit le snapshot et vide le journal.
+ */
+public class SnapshotStore extends MemoryStore implements AutoCloseable {
+
+    static final String SNAPSHOT_FILE = "libria.snapshot";
+    static final String JOURNAL_FILE = "libria.journal";
+
+    private final LibraryJournal journal;
+    private final Path snapshot;
+
+    private SnapshotStore(Library library, LibraryJournal journal, Path snapshot) {
+        super(library);
+        this.journal = journal;
+        this.snapshot = snapshot;
+    }
+
+    /** Ouvre (ou crée) le stockage du dossier dir. */
+    public static SnapshotStore open(Path dir) throws IOException {
+        if (dir == null) throw new IllegalArgumentException("Dossier null");
+        Files.createDirectories(dir);
+        Path snapshot = dir.resolve(SNAPSHOT_FILE);
+        Path journalPath = dir.resolve(JOURNAL_FILE);
+        Library library = LibraryJournal.recover(snapshot, journalPath);
+        LibraryJournal journal = LibraryJournal.open(journalPath);
+        library.attachJournal(journal);
+        return new SnapshotStore(library, journal, snapshot);
+    }
+
+    public void checkpoint() throws IOException {
+        journal.checkpoint(library(), snapshot);
+    }
+
+    /** Taille du journal depuis le dernier checkpoint, en octets. */
+    public long journalSize() throws IOException {
+        return journal.size();
+    }
+
+    // le snapshot écrit à la fermeture évite de rejouer tout le journal au prochain démarrage
+    @Override
+    public void close() throws IOException {
+        checkpoint();
+        journal.close();
+    }
+}
@@ -0,0 +1,104 @@
+package com.libria.domain;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Dictionnaire des métadonnées très répétées (genre, auteur) : chaque valeur distincte
+ * n'existe qu'en une seule instance et reçoit un petit code entier.
+ * Chaque catalogue (Library, ColumnarCatalog) a le sien : les valeurs vivent aussi longtemps
+ * que lui, pas celles des Book de passage (désérialisation JSON, entités JPA).
+ *
+ * Une valeur n'en sort jamais : le catalogue le reconstruit à partir de ses livres
+ * (Library au checkpoint, ColumnarCatalog au compactage) pour oublier celles qui ne servent plus.
+ */
+public final class StringDictionary {
+
+    private final Map<String, Integer> codes = new ConcurrentHashMap<>();
+    // écrit sous le verrou, l'élément est publié avant la clé dans codes
+    private volatile String[] values = new String[64];
+    private int size;
+
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder deduplicated = new LongAdder();
+    private final LongAdder bytesSaved = new LongAdder();
+
+    /** Instance canonique de s (null reste null). */
+    public String canonical(String s) {
+        if (s == null) return null;
+        lookups.increment();
+        int code = code(s); // avant de lire values : code() peut agrandir le tableau
+        String canonical = values[code];
+        if (canonical != s) {
+            deduplicated.increment();
+            bytesSaved.add(footprint(s));
+        }
+        return canonical;
+    }
+
+    /** Code entier stable de s, attribué à la première rencontre. */
+    public int code(String s) {
+        Integer code = codes.get(s);
+        if (code != null) return code;
+        synchronized (this) {
+            code = codes.get(s);
+            if (code != null) return code;
+            int next = size++;
+            String[] current = values;
+            if (next == current.length) {
+                current = Arrays.copyOf(current, current.length * 2);
+            }
+            current[next] = s;
+            values = current;
+            codes.put(s, next);
+            return next;
+        }
+    }
+
+    /** Code de s s'il est déjà connu, -1 sinon (n'ajoute rien). */
+    public int find(String s) {
+        Integer code = codes.get(s);
+        return code == null ? -1 : code;
+    }
+
+    public String decode(int code) {
+        String[] current = values;
+        if (code < 0 || code >= current.length || current[code] == null) {
+            throw new IllegalArgumentException("Code inconnu : " + code);
+        }
+        return current[code];
+    }
+
+    /** Dictionnaire vide qui reprend les compteurs de celui-ci, pour le reconstruire. */
+    StringDictionary emptyCopy() {
+        StringDictionary copy = new StringDictionary();
+        copy.lookups.add(lookups.sum());
+        copy.deduplicated.add(deduplicated.sum());
+        copy.bytesSaved.add(bytesSaved.sum());
+        return copy;
+    }
+
+    /** Prend s tel quel comme instance canonique (reconstruction), sans compter de recherche. */
+    void adopt(String s) {
+        if (s != null) code(s);
+    }
+
+    public DictionaryStats stats() {
+        return new DictionaryStats(codes.size(), lookups.sum(), deduplicated.sum(), bytesSaved.sum());
+    }
+
+    // Taille estimée d'une String (JVM 64 bits, oops compressés, Latin-1 compact) :
+    // objet String 24 octets + tableau byte[] 16 octets d'en-tête + contenu aligné sur 8
+    static long footprint(String s) {
+        long content = s.length();
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) > 0xFF) {
+                content = 2L * s.length();
+                break;
+            }
+        }
+        return 24 + ((16 + content + 7) & ~7L);
+    }
+}
@@ -0,0 +1,337 @@
+package com.libria.domain;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntSupplier;
+
+/**
+ * Autocomplétion sur les titres et auteurs : un trie des mots (et des titres / auteurs
+ * complets) sous leur forme repliée, où chaque nœud connaît le plus grand poids de son
+ * sous-arbre. Le poids d'un livre est son nombre de téléchargements.
+ *
+ * suggest() part du nœud du préfixe et explore toujours la branche la plus prometteuse
+ * d'abord : les N meilleurs livres sortent sans parcourir toutes les complétions.
+ *
+ * Les enfants sont rangés dans des tableaux triés (char[] + Node[]) et les livres d'un
+ * nœud par poids décroissant, pour rester compact et éviter une map par nœud.
+ *
+ * Les changements de poids (un par téléchargement) ne prennent pas le verrou de l'arbre :
+ * ils s'accumulent par ISBN et sont appliqués d'un bloc par la lecture suivante, un seul
+ * déplacement par livre quel que soit le nombre de téléchargements entre-temps.
+ */
+public final class SuggestIndex {
+
+    private static final char[] NO_LABELS = {};
+    private static final Node[] NO_CHILDREN = {};
+    private static final Entry[] NO_ENTRIES = {};
+
+    private static final Comparator<Entry> BY_WEIGHT =
+            Comparator.comparingInt((Entry e) -> -e.weight).thenComparing(e -> e.book.getIsbn());
+
+    private static final class Entry {
+        final Book book;
+        String[] terms;
+        int weight;
+
+        Entry(Book book, int weight) {
+            this.book = book;
+            this.weight = weight;
+        }
+    }
+
+    private static final class Node {
+        char[] labels = NO_LABELS;
+        Node[] children = NO_CHILDREN;
+        Entry[] entries = NO_ENTRIES;   // livres dont un terme s'arrête ici, poids décroissant
+        int size;
+        int bound = -1;                 // plus grand poids du sous-arbre, -1 s'il est vide
+
+        Node child(char c) {
+            int i = Arrays.binarySearch(labels, c);
+            return i < 0 ? null : children[i];
+        }
+    }
+
+    // entry = -1 : tout le sous-arbre de node ; sinon le livre node.entries[entry]
+    private record Step(Node node, int entry, int weight) {}
+
+    private static final Comparator<Step> BEST_FIRST =
+            Comparator.comparingInt((Step s) -> -s.weight).thenComparingInt(s -> s.entry < 0 ? 1 : 0);
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Node root = new Node();
+    private final Map<String, Entry> byIsbn = new HashMap<>();
+    private final Map<String, Integer> pending = new ConcurrentHashMap<>();   // deltas pas encore appliqués
+
+    /* =====================================================
+     *  Écritures
+     * ===================================================== */
+
+    /**
+     * Ajoute le livre ou recalcule ses termes après un changement de titre / auteur.
+     * weight n'est lu que pour un nouveau livre (sous le verrou) ; sinon le poids est gardé.
+     */
+    public void put(Book book, IntSupplier weight) {
+        if (book == null || book.getIsbn() == null) throw new IllegalArgumentException("Book invalide");
+        lock.writeLock().lock();
+        try {
+            Entry entry = byIsbn.get(book.getIsbn());
+            if (entry == null) pending.remove(book.getIsbn());   // weight les compte déjà
+            if (entry == null || entry.book != book) {
+                if (entry != null) unlink(entry);
+                entry = new Entry(book, entry != null ? entry.weight : weight.getAsInt());
+                byIsbn.put(book.getIsbn(), entry);
+            } else {
+                unlink(entry);
+            }
+            entry.terms = terms(book);
+            for (String term : entry.terms) link(term, entry);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String isbn) {
+        lock.writeLock().lock();
+        try {
+            Entry entry = byIsbn.remove(isbn);
+            if (entry != null) unlink(entry);
+            pending.remove(isbn);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Ajoute delta au poids du livre (sans effet si le livre n'est pas indexé). */
+    public void adjustWeight(String isbn, int delta) {
+        if (delta == 0 || isbn == null) return;
+        pending.merge(isbn, delta, (a, b) -> a + b == 0 ? null : a + b);
+    }
+
+    // applique les deltas accumulés ; appelé avant chaque lecture
+    private void drain() {
+        if (pending.isEmpty()) return;
+        lock.writeLock().lock();
+        try {
+            for (String isbn : pending.keySet()) {
+                Integer delta = pending.remove(isbn);
+                Entry entry = delta == null ? null : byIsbn.get(isbn);
+                if (entry != null) reweigh(entry, Math.max(0, entry.weight + delta));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // les positions sont cherchées avec l'ancien poids, puis le livre glisse à sa nouvelle place
+    private void reweigh(Entry entry, int weight) {
+        if (weight == entry.weight) return;
+        Node[][] paths = new Node[entry.terms.length][];
+        int[] at = new int[entry.terms.length];
+        for (int t = 0; t < entry.terms.length; t++) {
+            paths[t] = path(entry.terms[t]);
+            at[t] = indexOf(paths[t][entry.terms[t].length()], entry);
+        }
+        entry.weight = weight;
+        for (int t = 0; t < entry.terms.length; t++) {
+            Node[] path = paths[t];
+            Node last = path[path.length - 1];
+            System.arraycopy(last.entries, at[t] + 1, last.entries, at[t], last.size - at[t] - 1);
+            last.size--;
+            insertSorted(last, entry);
+            for (int i = path.length - 1; i >= 0; i--) tighten(path[i]);
+        }
+    }
+
+    private static String[] terms(Book book) {
+        Set<String> terms = new LinkedHashSet<>();
+        collect(book.titleKey(), terms);
+        collect(book.authorKey(), terms);
+        return terms.toArray(new String[0]);
+    }
+
+    // chaque mot, plus la clé entière pour compléter "harry po" sur "harry potter"
+    private static void collect(String key, Set<String> out) {
+        if (key == null) return;
+        String whole = key.strip();
+        if (whole.isEmpty()) return;
+        out.add(whole);
+        int start = -1;
+        for (int i = 0; i <= whole.length(); i++) {
+            boolean word = i < whole.length() && Character.isLetterOrDigit(whole.charAt(i));
+            if (word && start < 0) {
+                start = i;
+            } else if (!word && start >= 0) {
+                out.add(whole.substring(start, i));
+                start = -1;
+            }
+        }
+    }
+
+    private void link(String term, Entry entry) {
+        Node node = root;
+        node.bound = Math.max(node.bound, entry.weight);
+        for (int i = 0; i < term.length(); i++) {
+            char c = term.charAt(i);
+            int at = Arrays.binarySearch(node.labels, c);
+            if (at < 0) {
+                at = -at - 1;
+                node.labels = insert(node.labels, at, c);
+                node.children = insert(node.children, at, new Node());
+            }
+            node = node.children[at];
+            node.bound = Math.max(node.bound, entry.weight);
+        }
+        insertSorted(node, entry);
+    }
+
+    private void unlink(Entry entry) {
+        for (String term : entry.terms) {
+            Node[] path = path(term);
+            Node last = path[term.length()];
+            int at = indexOf(last, entry);
+            System.arraycopy(last.entries, at + 1, last.entries, at, last.size - at - 1);
+            last.entries[--last.size] = null;
+            // on remonte en recalculant les bornes et en coupant les branches vides
+            for (int i = path.length - 1; i >= 0; i--) {
+                tighten(path[i]);
+                if (i > 0 && path[i].bound < 0) detach(path[i - 1], term.charAt(i - 1));
+            }
+        }
+    }
+
+    private Node[] path(String term) {
+        Node[] path = new Node[term.length() + 1];
+        path[0] = root;
+        for (int i = 0; i < term.length(); i++) {
+            path[i + 1] = path[i].child(term.charAt(i));
+        }
+        return path;
+    }
+
+    // dichotomie : les livres du nœud sont triés par (poids, ISBN), l'ISBN départage
+    private static int indexOf(Node node, Entry entry) {
+        int i = Arrays.binarySearch(node.entries, 0, node.size, entry, BY_WEIGHT);
+        if (i < 0 || node.entries[i] != entry) {
+            throw new IllegalStateException("Terme absent de l'index de suggestions");
+        }
+        return i;
+    }
+
+    private static void insertSorted(Node node, Entry entry) {
+        if (node.size == node.entries.length) {
+            node.entries = Arrays.copyOf(node.entries, Math.max(2, node.size * 2));
+        }
+        int at = -Arrays.binarySearch(node.entries, 0, node.size, entry, BY_WEIGHT) - 1;
+        System.arraycopy(node.entries, at, node.entries, at + 1, node.size - at);
+        node.entries[at] = entry;
+        node.size++;
+    }
+
+    private static void tighten(Node node) {
+        int bound = node.size > 0 ? node.entries[0].weight : -1;
+        for (Node child : node.children) bound = Math.max(bound, child.bound);
+        node.bound = bound;
+    }
+
+    private static void detach(Node parent, char c) {
+        int at = Arrays.binarySearch(parent.labels, c);
+        if (at < 0) return;
+        char[] labels = new char[parent.labels.length - 1];
+        Node[] children = new Node[labels.length];
+        System.arraycopy(parent.labels, 0, labels, 0, at);
+        System.arraycopy(parent.labels, at + 1, labels, at, labels.length - at);
+        System.arraycopy(parent.children, 0, children, 0, at);
+        System.arraycopy(parent.children, at + 1, children, at, children.length - at);
+        parent.labels = labels.length == 0 ? NO_LABELS : labels;
+        parent.children = children.length == 0 ? NO_CHILDREN : children;
+    }
+
+    private static char[] insert(char[] array, int at, char value) {
+        char[] copy = new char[array.length + 1];
+        System.arraycopy(array, 0, copy, 0, at);
+        copy[at] = value;
+        System.arraycopy(array, at, copy, at + 1, array.length - at);
+        return copy;
+    }
+
+    private static Node[] insert(Node[] array, int at, Node value) {
+        Node[] copy = new Node[array.length + 1];
+        System.arraycopy(array, 0, copy, 0, at);
+        copy[at] = value;
+        System.arraycopy(array, at, copy, at + 1, array.length - at);
+        return copy;
+    }
+
+    /* =====================================================
+     *  Lecture
+     * ===================================================== */
+
+    /**
+     * Les limit livres les plus téléchargés dont un mot du titre ou de l'auteur (ou le titre /
+     * l'auteur entier) commence par prefix. Accents et casse sont ignorés.
+     */
+    public List<Book> suggest(String prefix, int limit) {
+        if (limit <= 0) throw new IllegalArgumentException("La limite doit être positive.");
+        if (prefix == null) return new ArrayList<>();
+        String key = SearchKey.fold(prefix).stripLeading();
+        if (key.isEmpty()) return new ArrayList<>();
+
+        List<Book> result = new ArrayList<>(Math.min(limit, 16));
+        drain();
+        lock.readLock().lock();
+        try {
+            Node node = root;
+            for (int i = 0; i < key.length() && node != null; i++) {
+                node = node.child(key.charAt(i));
+            }
+            if (node == null || node.bound < 0) return result;
+
+            // un livre peut avoir plusieurs termes sous le préfixe : on ne le rend qu'une fois
+            Set<String> seen = new HashSet<>();
+            PriorityQueue<Step> queue = new PriorityQueue<>(BEST_FIRST);
+            queue.add(new Step(node, -1, node.bound));
+            Step step;
+            while (result.size() < limit && (step = queue.poll()) != null) {
+                Node n = step.node();
+                if (step.entry() < 0) {
+                    if (n.size > 0) queue.add(new Step(n, 0, n.entries[0].weight));
+                    for (Node child : n.children) {
+                        if (child.bound >= 0) queue.add(new Step(child, -1, child.bound));
+                    }
+                } else {
+                    Entry entry = n.entries[step.entry()];
+                    if (seen.add(entry.book.getIsbn())) result.add(entry.book);
+                    int next = step.entry() + 1;
+                    if (next < n.size) queue.add(new Step(n, next, n.entries[next].weight));
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Poids actuel du livre, -1 s'il n'est pas indexé. */
+    public int weight(String isbn) {
+        drain();
+        lock.readLock().lock();
+        try {
+            Entry entry = byIsbn.get(isbn);
+            return entry == null ? -1 : entry.weight;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return byIsbn.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.libria.domain;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Index inversé par trigrammes (3 caractères consécutifs) sur la forme de recherche d'un
+ * texte (SearchKey).
+ * Chaque trigramme pointe vers l'ensemble des ISBN dont le texte le contient.
+ * Les listes renvoyées sont des candidats : l'appelant doit encore vérifier le contains.
+ */
+class TrigramIndex {
+    static final int GRAM = 3;
+
+    private final Map<String, Set<String>> postings = new ConcurrentHashMap<>();
+
+    // key : texte déjà passé par SearchKey.fold
+    void add(String isbn, String key) {
+        if (key == null) return;
+        for (String gram : grams(key)) {
+            // compute est atomique par clé : pas de course avec un remove qui viderait la liste
+            postings.compute(gram, (k, set) -> {
+                if (set == null) set = ConcurrentHashMap.newKeySet();
+                set.add(isbn);
+                return set;
+            });
+        }
+    }
+
+    void remove(String isbn, String key) {
+        if (key == null) return;
+        for (String gram : grams(key)) {
+            postings.computeIfPresent(gram, (k, set) -> {
+                set.remove(isbn);
+                return set.isEmpty() ? null : set;
+            });
+        }
+    }
+
+    /**
+     * Renvoie les ISBN candidats pour une sous-chaîne déjà normalisée,
+     * ou null si la requête est trop courte pour utiliser l'index.
+     */
+    Collection<String> candidates(String normalizedQuery) {
+        if (normalizedQuery.length() < GRAM) return null;
+
+        Set<String> grams = grams(normalizedQuery);
+        List<Set<String>> lists = new ArrayList<>(grams.size());
+        for (String gram : grams) {
+            Set<String> set = postings.get(gram);
+            if (set == null) return List.of();
+            lists.add(set);
+        }
+        // on part de la liste la plus courte et on intersecte avec les autres
+        lists.sort(Comparator.comparingInt(Set::size));
+        Set<String> smallest = lists.get(0);
+        List<String> result = new ArrayList<>(smallest.size());
+        outer:
+        for (String isbn : smallest) {
+            for (int i = 1; i < lists.size(); i++) {
+                if (!lists.get(i).contains(isbn)) continue outer;
+            }
+            result.add(isbn);
+        }
+        return result;
+    }
+
+    /**
+     * Borne haute du nombre de candidats (plus petite liste de trigrammes) sans faire
+     * l'intersection, ou -1 si la requête est trop courte pour l'index.
+     */
+    int estimate(String normalizedQuery) {
+        if (normalizedQuery.length() < GRAM) return -1;
+        int smallest = Integer.MAX_VALUE;
+        for (int i = 0; i + GRAM <= normalizedQuery.length(); i++) {
+            Set<String> set = postings.get(normalizedQuery.substring(i, i + GRAM));
+            if (set == null) return 0;
+            smallest = Math.min(smallest, set.size());
+        }
+        return smallest;
+    }
+
+    private static Set<String> grams(String text) {
+        if (text.length() < GRAM) return Set.of();
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            grams.add(text.substring(i, i + GRAM));
+        }
+        return grams;
+    }
+}
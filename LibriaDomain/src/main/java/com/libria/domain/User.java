@@ -4,7 +4,10 @@ import jakarta.persistence.*;
 
 import javax.security.auth.login.LoginException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 import java.util.Objects;
 
 @Entity
@@ -27,24 +30,26 @@ public abstract class User {
     @Column(nullable = false)
     private String password;
 
+    // Set : appartenance et retrait en temps constant (Book.equals/hashCode ne portent que
+    // sur l'ISBN), DownloadSet pour garder l'ordre des téléchargements en mémoire
     @ManyToMany
     @JoinTable(
             name = "user_book_downloads",
             joinColumns = @JoinColumn(name = "user_id"),
             inverseJoinColumns = @JoinColumn(name = "isbn")
     )
-    private List<Book> downloadedBooks;
+    private Set<Book> downloadedBooks;
 
 
     public User() {
-        this.downloadedBooks = new ArrayList<>();
+        this.downloadedBooks = new DownloadSet();
     }
     public User(String userId, String name, String email, String password) {
         this.userId = userId;
         this.name = name;
         this.email = email;
         this.password = password;
-        this.downloadedBooks = new ArrayList<>();
+        this.downloadedBooks = new DownloadSet();
     }
 
     public abstract String getRole();
@@ -60,27 +65,53 @@ public abstract class User {
     }
 
     public void downloadBook(Book book) throws BookAlreadyExistException {
-        if (downloadedBooks.contains(book)) {
+        if (!downloadedBooks.add(book)) {
             throw new BookAlreadyExistException("Book déja existente.");
         }
-        downloadedBooks.add(book);
     }
 
     public void removeBook(Book book) throws BookNotFoundException {
-        if(!downloadedBooks.contains(book)) {
+        if (!downloadedBooks.remove(book)) {
             throw new BookNotFoundException("Ce livre n'est pas dans votre liste");
         }
-        downloadedBooks.remove(book);
+    }
+
+    // retrait silencieux, pour la suppression en cascade d'un livre du catalogue
+    boolean discardBook(Book book) {
+        return downloadedBooks.remove(book);
+    }
+
+    // remplace le livre par sa version à jour, à la même place dans la liste
+    // (Book.equals ne regarde que l'ISBN : un add seul garderait l'ancienne version).
+    // En place avec un DownloadSet ; une collection chargée par JPA est reconstruite.
+    boolean refreshBook(Book current) {
+        if (downloadedBooks instanceof DownloadSet books) return books.replace(current);
+        if (!downloadedBooks.contains(current)) return false;
+        List<Book> books = new ArrayList<>(downloadedBooks);
+        downloadedBooks.clear();
+        for (Book book : books) {
+            downloadedBooks.add(book.equals(current) ? current : book);
+        }
+        return true;
     }
 
     public List<Book> listDownloadedBooks() {
         return new ArrayList<>(downloadedBooks);
     }
 
+    // Vue en lecture seule sans copie (pas de préfixe get : ne doit pas finir dans le JSON)
+    public Collection<Book> downloadedBooksView() {
+        return Collections.unmodifiableCollection(downloadedBooks);
+    }
+
     public boolean hasBook(Book book) {
         return downloadedBooks.contains(book);
     }
 
+    public int downloadCount() {
+        return downloadedBooks.size();
+    }
+
     public void setUserId(String userId) { this.userId = userId; }
     public String getUserId() {
         return userId;
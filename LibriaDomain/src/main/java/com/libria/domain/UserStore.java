@@ -0,0 +1,43 @@
+package com.libria.domain;
+
+import com.libria.exception.BookAlreadyExistException;
+import com.libria.exception.BookNotFoundException;
+import com.libria.exception.UserAlreadyExistException;
+import com.libria.exception.UserNotFoundException;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Moteur de stockage des users et de leurs téléchargements, pendant de CatalogStore.
+ * Les deux sont fournis par le même objet : un téléchargement relie un user à un livre
+ * du même moteur.
+ */
+public interface UserStore {
+
+    User getUser(String userId) throws UserNotFoundException;
+
+    /** Recherche sans tenir compte de la casse. */
+    User getUserByEmail(String email) throws UserNotFoundException;
+
+    List<User> listUsers();
+
+    boolean hasAdmin();
+
+    /** Refusé si l'id ou l'email (casse ignorée) est déjà pris. */
+    void registerUser(User user) throws UserAlreadyExistException;
+
+    /** Change le nom, l'email et/ou le mot de passe (null = inchangé). Renvoie le user à jour. */
+    User updateUser(String userId, String name, String email, String password)
+            throws UserNotFoundException, UserAlreadyExistException;
+
+    void removeUser(String userId) throws UserNotFoundException;
+
+    void addDownload(String userId, String isbn)
+            throws UserNotFoundException, BookNotFoundException, BookAlreadyExistException;
+
+    void removeDownload(String userId, String isbn) throws UserNotFoundException, BookNotFoundException;
+
+    /** ISBN -> nombre de users l'ayant téléchargé (les livres jamais téléchargés sont absents). */
+    Map<String, Integer> downloadCounts();
+}
@@ -0,0 +1,50 @@
+package com.libria.domain;
+
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+
+/**
+ * Index trié des années de publication : année -> ISBN. Une plage d'années ne parcourt que
+ * les années concernées, dans l'ordre, et un Stream limité s'arrête dès qu'il a assez de livres.
+ */
+class YearIndex {
+
+    private final ConcurrentSkipListMap<Integer, Set<String>> isbnsByYear = new ConcurrentSkipListMap<>();
+
+    void add(String isbn, int year) {
+        isbnsByYear.compute(year, (k, set) -> {
+            if (set == null) set = ConcurrentHashMap.newKeySet();
+            set.add(isbn);
+            return set;
+        });
+    }
+
+    void remove(String isbn, int year) {
+        isbnsByYear.computeIfPresent(year, (k, set) -> {
+            set.remove(isbn);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    /** Nombre de livres publiés entre from et to inclus. */
+    int count(int from, int to) {
+        int total = 0;
+        for (Set<String> set : isbnsByYear.subMap(from, true, to, true).values()) {
+            total += set.size();
+        }
+        return total;
+    }
+
+    /**
+     * ISBN des livres publiés entre from et to, par année croissante (ou décroissante),
+     * puis par ISBN dans une même année. Paresseux : seules les années consommées sont triées.
+     */
+    Stream<String> range(int from, int to, boolean newestFirst) {
+        NavigableMap<Integer, Set<String>> years = isbnsByYear.subMap(from, true, to, true);
+        if (newestFirst) years = years.descendingMap();
+        return years.values().stream().flatMap(set -> set.stream().sorted());
+    }
+}
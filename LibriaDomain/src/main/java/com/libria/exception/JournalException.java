@@ -0,0 +1,8 @@
+package com.libria.exception;
+
+public class JournalException extends LibriaException {
+    public JournalException(String message, Throwable cause) {
+        super(message);
+        initCause(cause);
+    }
+}
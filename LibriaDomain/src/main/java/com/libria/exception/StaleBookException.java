@@ -0,0 +1,7 @@
+package com.libria.exception;
+
+public class StaleBookException extends LibriaException {
+    public StaleBookException(String message) {
+        super(message);
+    }
+}
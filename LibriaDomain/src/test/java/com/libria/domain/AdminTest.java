@@ -7,6 +7,9 @@ import com.libria.domain.Library;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class AdminTest {
@@ -63,6 +66,38 @@ class AdminTest {
         assertEquals("newPdf", found.getPdf());
     }
 
+    @Test
+    void updateBookInLibrary_shouldPublishNewVersionWithoutTouchingOldOne() throws Exception {
+        admin.addBookToLibrary(library, book1);
+        Member member = new Member("U1", "Lina", "lina@libria.com", "pwd");
+        library.registerUser(member);
+        library.downloadBook("U1", book1.getIsbn());
+        Book before = library.getBook(book1.getIsbn());
+
+        Book updated = new Book();
+        updated.setTitle("Harry Potter 2");
+        updated.setAvailable(true);
+        admin.updateBookInLibrary(library, book1.getIsbn(), updated, before.getVersion());
+
+        Book after = library.getBook(book1.getIsbn());
+        assertNotSame(before, after);
+        assertEquals("Harry Potter", before.getTitle());
+        assertEquals("Harry Potter 2", after.getTitle());
+        assertEquals(before.getVersion() + 1, after.getVersion());
+        assertSame(after, member.listDownloadedBooks().get(0));
+
+        // version périmée : refusée, rien ne change
+        updated.setTitle("Harry Potter 3");
+        assertThrows(StaleBookException.class,
+                () -> admin.updateBookInLibrary(library, book1.getIsbn(), updated, before.getVersion()));
+        assertSame(after, library.getBook(book1.getIsbn()));
+        assertTrue(library.searchByTitle("Harry Potter 3").isEmpty());
+
+        admin.setBookAvailability(library, book1.getIsbn(), false);
+        assertTrue(after.isAvailable());
+        assertEquals(after.getVersion() + 1, library.getBook(book1.getIsbn()).getVersion());
+    }
+
     @Test
     void updateBookInLibrary_shouldThrowIfBookNotFound() {
         assertThrows(BookNotFoundException.class, () -> admin.updateBookInLibrary(library, "INVALID_ISBN", book1));
@@ -126,4 +161,80 @@ class AdminTest {
         assertThrows(IllegalArgumentException.class, () -> admin.removeBookFromLibrary(library, null));
         assertThrows(IllegalArgumentException.class, () -> admin.removeBookFromLibrary(library, "  "));
     }
-}
\ No newline at end of file
+
+    @Test
+    void updateBookInLibrary_shouldReindexTitle() throws Exception {
+        admin.addBookToLibrary(library, book1);
+        Book updated = new Book(book1.getIsbn(), "Le Seigneur des Anneaux", "X", 2000, "New", true, "xx", "xx");
+
+        admin.updateBookInLibrary(library, book1.getIsbn(), updated);
+
+        assertTrue(library.searchByTitle("potter").isEmpty());
+        assertEquals(1, library.searchByTitle("anneaux").size());
+    }
+
+    @Test
+    void updateBookInLibrary_shouldMoveBookBetweenGenreAndAuthorIndexes() throws Exception {
+        admin.addBookToLibrary(library, book1);
+        Book updated = new Book(book1.getIsbn(), "Harry Potter", "Rowling", 1997, "Jeunesse", true, "xx", "xx");
+
+        admin.updateBookInLibrary(library, book1.getIsbn(), updated);
+
+        assertTrue(library.searchByGenre("fantasy").isEmpty());
+        assertTrue(library.searchByAuthor("J.K. Rowling").isEmpty());
+        assertEquals(1, library.searchByGenre("JEUNESSE").size());
+        assertEquals(1, library.searchByAuthor("rowling").size());
+
+        admin.removeBookFromLibrary(library, book1.getIsbn());
+        assertTrue(library.searchByGenre("jeunesse").isEmpty());
+        assertTrue(library.searchByAuthor("rowling").isEmpty());
+    }
+
+    @Test
+    void applyBatch_shouldApplyMixedOperationsAndReportRejections() throws Exception {
+        admin.addBookToLibrary(library, book1);
+        Book book2 = new Book("ISBN-2", "Les Misérables", "Victor Hugo", 1862, "Classique", true, "xx", "xx");
+        Book update = new Book();
+        update.setGenre("Jeunesse");
+        update.setAvailable(false);
+
+        BatchResult result = admin.applyBatch(library, new BookBatch()
+                .add(book2)
+                .add(new Book("978-0-7475-3269-9", "Doublon", "X", 2000, "Fantasy", true, "xx", "xx"))
+                .update("978-0-7475-3269-9", update)
+                .remove("INCONNU")
+                .add(null));
+
+        assertEquals(2, result.getApplied());
+        assertEquals(3, result.getRejected());
+        assertTrue(result.getItems().get(0).isApplied());
+        assertEquals("Livre déjà existant !", result.getItems().get(1).getError());
+        assertEquals("Livre introuvable !", result.getItems().get(3).getError());
+        assertEquals(2, library.catalogSnapshot().size());
+        assertEquals(1, library.searchByGenre("jeunesse").size());
+        assertFalse(library.getBook("978-0-7475-3269-9").isAvailable());
+    }
+
+    @Test
+    void addBooksToLibrary_shouldIndexEveryBook() throws Exception {
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            books.add(new Book("ISBN-" + i, "Tome " + i, "Auteur " + (i % 10), 2000, "Genre " + (i % 7), true, "xx", "xx"));
+        }
+
+        BatchResult result = admin.addBooksToLibrary(library, books);
+
+        assertTrue(result.isComplete());
+        assertEquals(5000, library.bookCount());
+        assertEquals(5000, library.catalogSnapshot().size());
+        assertEquals(500, library.searchByAuthor("auteur 3").size());
+        assertEquals(1, library.searchByTitle("tome 4999").size());
+    }
+
+    @Test
+    void applyBatch_shouldThrowIfNotAdmin() {
+        FakeAdmin fake = new FakeAdmin("X1", "Fake", "fake@libria.com", "pwd");
+        assertThrows(AccessDeniedException.class, () -> fake.applyBatch(library, new BookBatch().add(book1)));
+        assertFalse(library.containsBook(book1.getIsbn()));
+    }
+}
@@ -0,0 +1,100 @@
+package com.libria.domain;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BookQueryTest {
+
+    private static final String[] AUTHORS = {"Victor Hugo", "Émile Zola", "George Sand", "Albert Camus"};
+    private static final String[] GENRES = {"Roman", "Poésie", "Théâtre"};
+    private static final String[] WORDS = {"nuit", "misère", "peste", "mer", "rouge", "été"};
+
+    private Library library;
+
+    @BeforeEach
+    void setUp() {
+        library = new Library();
+        Random rnd = new Random(3);
+        for (int i = 0; i < 2000; i++) {
+            String title = WORDS[rnd.nextInt(WORDS.length)] + " " + WORDS[rnd.nextInt(WORDS.length)];
+            library.addBook(new Book("Q-" + i, title, AUTHORS[rnd.nextInt(AUTHORS.length)],
+                    1800 + rnd.nextInt(200), GENRES[rnd.nextInt(GENRES.length)], rnd.nextBoolean(), "c", "p"));
+        }
+        // un auteur rare : l'index auteur doit être préféré
+        library.addBook(new Book("RARE-1", "La peste", "Auteur Rare", 1947, "Roman", true, "c", "p"));
+        library.addBook(new Book("RARE-2", "Nuit rouge", "Auteur Rare", 1950, "Roman", false, "c", "p"));
+    }
+
+    private List<Book> bruteForce(Predicate<Book> filter) {
+        return library.listBooks().stream().filter(filter).sorted(Comparator.comparing(Book::getIsbn)).toList();
+    }
+
+    private static List<Book> byIsbn(List<Book> books) {
+        return books.stream().sorted(Comparator.comparing(Book::getIsbn)).toList();
+    }
+
+    @Test
+    void search_shouldMatchBruteForce() {
+        BookQuery query = new BookQuery().titleContains("PESTE").genre("roman").years(1850, 1950).available(true);
+        List<Book> expected = bruteForce(b -> SearchKey.fold(b.getTitle()).contains("peste")
+                && b.getGenre().equals("Roman") && b.getYear() >= 1850 && b.getYear() <= 1950 && b.isAvailable());
+
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, byIsbn(library.search(query)));
+
+        List<Book> byAuthor = library.search(new BookQuery().author("emile zola").genre("poesie"));
+        assertEquals(bruteForce(b -> b.getAuthor().equals("Émile Zola") && b.getGenre().equals("Poésie")), byIsbn(byAuthor));
+    }
+
+    @Test
+    void explain_shouldPickMostSelectiveIndex() {
+        String plan = library.explain(new BookQuery().genre("Roman").author("auteur rare").titleContains("peste"));
+        assertTrue(plan.startsWith("index auteur 'auteur rare' (~2 candidats"), plan);
+        assertTrue(plan.contains("filtres : titre 'peste', genre 'roman'"), plan);
+
+        assertTrue(library.explain(new BookQuery().years(1900, 1910)).startsWith("index années 1900..1910"));
+        assertTrue(library.explain(new BookQuery().years(1800, 2000)).startsWith("parcours complet"));
+        assertEquals(2, library.search(new BookQuery().author("Auteur Rare").genre("Roman")).size());
+    }
+
+    @Test
+    void search_shouldSortAndLimit() {
+        List<Book> top = library.search(new BookQuery().genre("Théâtre").sortBy(BookQuery.Sort.YEAR_DESC).limit(5));
+        List<Book> expected = library.listBooks().stream()
+                .filter(b -> b.getGenre().equals("Théâtre"))
+                .sorted(Comparator.comparingInt(Book::getYear).reversed().thenComparing(Book::getIsbn))
+                .limit(5)
+                .toList();
+
+        assertEquals(expected, top);
+        assertEquals(3, library.search(new BookQuery().limit(3)).size());
+        assertTrue(library.explain(new BookQuery().sortBy(BookQuery.Sort.TITLE).limit(3)).endsWith("tri TITLE ; limite 3"));
+    }
+
+    @Test
+    void search_sortedByYear_shouldWalkYearIndexInOrder() {
+        BookQuery query = new BookQuery().available(true).sortBy(BookQuery.Sort.YEAR_DESC).limit(10);
+        List<Book> expected = library.listBooks().stream()
+                .filter(Book::isAvailable)
+                .sorted(Comparator.comparingInt(Book::getYear).reversed().thenComparing(Book::getIsbn))
+                .limit(10)
+                .toList();
+
+        assertEquals(expected, library.search(query));
+        assertEquals("index années (~2002 candidats sur 2002) parcouru dans l'ordre ; filtres : disponible=true ; limite 10",
+                library.explain(query));
+
+        List<Book> oldest = library.search(new BookQuery().years(1900, 1950).sortBy(BookQuery.Sort.YEAR));
+        assertEquals(bruteForce(b -> b.getYear() >= 1900 && b.getYear() <= 1950).size(), oldest.size());
+        for (int i = 1; i < oldest.size(); i++) {
+            assertTrue(BookQuery.Sort.YEAR.order().compare(oldest.get(i - 1), oldest.get(i)) < 0);
+        }
+    }
+}
@@ -75,7 +75,8 @@ class BookTest {
 
     @Test
     void getIsbn_shouldReturnCorrectIsbn() {
-        assertEquals("978-0-7475-3269-9", book.getIsbn());
+        // forme canonique : sans tirets
+        assertEquals("9780747532699", book.getIsbn());
     }
 
     @Test
@@ -178,4 +179,21 @@ class BookTest {
         assertTrue(result.contains("J.K. Rowling"));
         assertTrue(result.contains("available=true"));
     }
-}
\ No newline at end of file
+
+    @Test
+    void genreAndAuthor_shouldShareCanonicalInstancesWithinALibrary() {
+        Library library = new Library();
+        Book other = new Book("1", "T", new String("J.K. Rowling"), 2000, new String("Fantasy"), true, "c", "p");
+        library.addBook(book);
+        library.addBook(other);
+
+        assertSame(book.getGenre(), other.getGenre());
+        assertSame(book.getAuthor(), other.getAuthor());
+        assertEquals(4, library.dictionaryStats().getDistinctValues()); // valeurs + formes de recherche
+
+        // hors catalogue, rien n'est retenu
+        Book loose = new Book();
+        loose.setAuthor(new String("J.K. Rowling"));
+        assertNotSame(book.getAuthor(), loose.getAuthor());
+    }
+}
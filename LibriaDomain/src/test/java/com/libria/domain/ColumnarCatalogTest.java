@@ -0,0 +1,108 @@
+package com.libria.domain;
+
+import com.libria.exception.BookAlreadyExistException;
+import com.libria.exception.BookNotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ColumnarCatalogTest {
+
+    private ColumnarCatalog catalog;
+    private Book b1, b2;
+
+    @BeforeEach
+    void setUp() {
+        catalog = new ColumnarCatalog();
+        b1 = new Book("ISBN-1", "Harry Potter", "J.K. Rowling", 1997, "Fantasy", true, "cover/harry.png", "pdf/harry.pdf");
+        b2 = new Book("ISBN-2", "Les Misérables", "Victor Hugo", 1862, "Classique", false, "cover/mis.png", "pdf/mis.pdf");
+    }
+
+    @Test
+    void getBook_shouldMaterializeAllFields() {
+        catalog.addBook(b2);
+        Book found = catalog.getBook("ISBN-2");
+
+        assertEquals("Les Misérables", found.getTitle());
+        assertEquals("Victor Hugo", found.getAuthor());
+        assertEquals(1862, found.getYear());
+        assertEquals("Classique", found.getGenre());
+        assertFalse(found.isAvailable());
+        assertEquals("cover/mis.png", found.getCoverImage());
+        assertEquals("pdf/mis.pdf", found.getPdf());
+        assertThrows(BookNotFoundException.class, () -> catalog.getBook("NOPE"));
+    }
+
+    @Test
+    void addAndRemove_shouldBehaveLikeLibrary() {
+        catalog.addBook(b1);
+        assertThrows(BookAlreadyExistException.class, () -> catalog.addBook(b1));
+        assertTrue(catalog.containsBook("ISBN-1"));
+
+        catalog.removeBook("ISBN-1");
+        assertFalse(catalog.containsBook("ISBN-1"));
+        assertEquals(0, catalog.bookCount());
+        assertThrows(BookNotFoundException.class, () -> catalog.removeBook("ISBN-1"));
+    }
+
+    @Test
+    void filters_shouldRunOnColumns() {
+        catalog.addBook(b1);
+        catalog.addBook(b2);
+
+        assertEquals(List.of(b2), catalog.searchByYearRange(1800, 1900));
+        assertEquals(List.of(b1), catalog.searchByAvailability(true));
+        assertEquals(List.of(b2), catalog.searchByTitle("MISÉ"));
+        assertEquals(List.of(b1), catalog.searchByGenre("fantasy"));
+        assertEquals(List.of(b2), catalog.searchByAuthor("victor hugo"));
+        assertTrue(catalog.searchByGenre("inconnu").isEmpty());
+    }
+
+    @Test
+    void replaceBook_shouldRewriteColumns() {
+        catalog.addBook(b1);
+        Book updated = new Book("ISBN-1", "Harry Potter 2", "J.K. Rowling", 1998, "Jeunesse", false, "c", "p");
+
+        catalog.replaceBook(updated);
+
+        Book found = catalog.getBook("ISBN-1");
+        assertEquals("Harry Potter 2", found.getTitle());
+        assertEquals("Jeunesse", found.getGenre());
+        assertTrue(catalog.searchByGenre("Fantasy").isEmpty());
+    }
+
+    @Test
+    void searches_shouldMatchLibraryAfterManyMutations() {
+        Library library = new Library();
+        String[] genres = {"Roman", "Poésie", "Théâtre", "Essai"};
+        String[] authors = {"Hugo", "Zola", "Sand", "Colette"};
+        Random rnd = new Random(7);
+        for (int i = 0; i < 5000; i++) {
+            Book book = new Book("C-" + i, "Titre " + rnd.nextInt(500), authors[rnd.nextInt(4)],
+                    1800 + rnd.nextInt(200), genres[rnd.nextInt(4)], rnd.nextBoolean(), "c", "p");
+            library.addBook(book);
+            catalog.addBook(book);
+        }
+        // assez de suppressions pour déclencher le compactage
+        for (int i = 0; i < 5000; i += 2) {
+            library.removeBook("C-" + i);
+            catalog.removeBook("C-" + i);
+        }
+
+        assertEquals(library.bookCount(), catalog.bookCount());
+        assertEquals(isbns(library.searchByTitle("titre 12")), isbns(catalog.searchByTitle("titre 12")));
+        assertEquals(isbns(library.searchByGenre("poésie")), isbns(catalog.searchByGenre("poésie")));
+        assertEquals(isbns(library.searchByAuthor("ZOLA")), isbns(catalog.searchByAuthor("ZOLA")));
+        assertEquals(isbns(library.listBooks()), isbns(catalog.listBooks()));
+    }
+
+    private static Set<String> isbns(List<Book> books) {
+        return books.stream().map(Book::getIsbn).collect(Collectors.toSet());
+    }
+}
@@ -0,0 +1,100 @@
+package com.libria.domain;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompactBitmapTest {
+
+    private static int[] toArray(Set<Integer> set) {
+        return set.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    @Test
+    void addRemoveContains_shouldMatchTreeSet() {
+        Random rnd = new Random(7);
+        CompactBitmap bitmap = new CompactBitmap();
+        TreeSet<Integer> expected = new TreeSet<>();
+        // valeurs denses (conteneur bitmap) et éparses (conteneurs tableau)
+        for (int i = 0; i < 50_000; i++) {
+            int value = rnd.nextBoolean() ? rnd.nextInt(10_000) : rnd.nextInt(5_000_000);
+            assertEquals(expected.add(value), bitmap.add(value));
+        }
+        for (int i = 0; i < 30_000; i++) {
+            int value = rnd.nextInt(10_000);
+            assertEquals(expected.remove(value), bitmap.remove(value));
+        }
+
+        assertEquals(expected.size(), bitmap.cardinality());
+        assertArrayEquals(toArray(expected), bitmap.toArray());
+        assertTrue(bitmap.contains(expected.first()));
+        assertFalse(bitmap.contains(-1));
+    }
+
+    @Test
+    void andOr_shouldMatchSetOperations() {
+        Random rnd = new Random(11);
+        for (int round = 0; round < 20; round++) {
+            TreeSet<Integer> a = new TreeSet<>();
+            TreeSet<Integer> b = new TreeSet<>();
+            int range = round % 2 == 0 ? 8_000 : 300_000;
+            for (int i = 0; i < 6_000; i++) {
+                a.add(rnd.nextInt(range));
+                b.add(rnd.nextInt(range));
+            }
+            CompactBitmap ba = CompactBitmap.of(toArray(a));
+            CompactBitmap bb = CompactBitmap.of(toArray(b));
+
+            TreeSet<Integer> inter = new TreeSet<>(a);
+            inter.retainAll(b);
+            TreeSet<Integer> union = new TreeSet<>(a);
+            union.addAll(b);
+
+            assertArrayEquals(toArray(inter), CompactBitmap.and(ba, bb).toArray());
+            assertEquals(inter.size(), CompactBitmap.andCardinality(ba, bb));
+            assertArrayEquals(toArray(union), CompactBitmap.or(ba, bb).toArray());
+        }
+    }
+
+    @Test
+    void denseContainer_shouldShrinkBackToArray() {
+        CompactBitmap bitmap = new CompactBitmap();
+        for (int i = 0; i < 10_000; i++) bitmap.add(i);
+        long dense = bitmap.sizeInBytes();
+        for (int i = 100; i < 10_000; i++) bitmap.remove(i);
+
+        assertEquals(100, bitmap.cardinality());
+        assertTrue(bitmap.sizeInBytes() < dense);
+        for (int i = 0; i < 100; i++) bitmap.remove(i);
+        assertTrue(bitmap.isEmpty());
+    }
+
+    @Test
+    void remove_shouldKeepBitmapUntilWellBelowArrayMax() {
+        CompactBitmap bitmap = new CompactBitmap();
+        for (int i = 0; i <= 4096; i++) bitmap.add(i * 2);
+        long asBitmap = bitmap.sizeInBytes();
+
+        // aller-retour autour du seuil : le conteneur reste un bitmap
+        for (int round = 0; round < 100; round++) {
+            bitmap.remove(0);
+            bitmap.remove(2);
+            bitmap.add(0);
+            bitmap.add(2);
+        }
+        for (int i = 0; i < 512; i++) bitmap.remove(i * 2);
+        assertEquals(4097 - 512, bitmap.cardinality());
+        assertEquals(asBitmap, bitmap.sizeInBytes());
+
+        bitmap.remove(512 * 2);
+        bitmap.remove(513 * 2);
+        assertTrue(bitmap.sizeInBytes() < asBitmap);
+        assertTrue(bitmap.contains(514 * 2));
+        assertFalse(bitmap.contains(513 * 2));
+        assertEquals(4097 - 514, bitmap.cardinality());
+    }
+}
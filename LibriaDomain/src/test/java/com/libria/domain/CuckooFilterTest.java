@@ -0,0 +1,54 @@
+package com.libria.domain;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CuckooFilterTest {
+
+    @Test
+    void addedKeys_shouldAlwaysBeFound_andRemovable() {
+        CuckooFilter filter = new CuckooFilter(10_000);
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.add("978-" + i));
+        }
+        assertEquals(10_000, filter.size());
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContain("978-" + i));
+        }
+        for (int i = 0; i < 10_000; i += 2) {
+            assertTrue(filter.remove("978-" + i));
+        }
+        for (int i = 1; i < 10_000; i += 2) {
+            assertTrue(filter.mightContain("978-" + i), "faux négatif après suppression");
+        }
+        assertEquals(5_000, filter.size());
+    }
+
+    @Test
+    void unknownKeys_shouldRarelyPass() {
+        CuckooFilter filter = new CuckooFilter(20_000);
+        for (int i = 0; i < 20_000; i++) filter.add("ISBN-" + i);
+
+        int positives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain("INCONNU-" + i)) positives++;
+        }
+        double observed = positives / 100_000.0;
+        assertTrue(observed < 0.001, "taux observé " + observed);
+        assertTrue(filter.expectedFalsePositiveRate() > 0 && filter.expectedFalsePositiveRate() < 0.001);
+    }
+
+    @Test
+    void fullFilter_shouldRefuseWithoutLosingKeys() {
+        CuckooFilter filter = new CuckooFilter(100);
+        int added = 0;
+        while (filter.add("K-" + added)) added++;
+
+        assertTrue(added >= 100, "rempli après " + added);
+        assertEquals(added, filter.size());
+        for (int i = 0; i < added; i++) {
+            assertTrue(filter.mightContain("K-" + i));
+        }
+    }
+}
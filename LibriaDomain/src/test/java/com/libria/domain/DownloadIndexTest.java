@@ -0,0 +1,77 @@
+package com.libria.domain;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DownloadIndexTest {
+
+    @Test
+    void removedUsersAndBooks_shouldGiveTheirIdsBack() {
+        DownloadIndex index = new DownloadIndex();
+        index.add("M-keep", "ISBN-keep");
+        for (int i = 0; i < 1_000; i++) {
+            index.add("M-" + i, "ISBN-" + i);
+            index.add("M-" + i, "ISBN-keep");
+            index.removeUser("M-" + i);
+        }
+        // ISBN-i est vidé par removeUser, M-i aussi : au plus une paire de plus que le départ
+        assertTrue(index.allocatedIds() <= 4, "ids : " + index.allocatedIds());
+        assertEquals(List.of("M-keep"), index.downloadersOf("ISBN-keep"));
+        assertEquals(0, index.downloadCount("ISBN-999"));
+
+        index.add("M-a", "ISBN-x");
+        index.add("M-b", "ISBN-x");
+        assertEquals(Set.of("M-a", "M-b"), Set.copyOf(index.removeBook("ISBN-x")));
+        assertTrue(index.booksOf("M-a").isEmpty());
+        index.add("M-c", "ISBN-y");
+        assertEquals(List.of("ISBN-y"), index.booksOf("M-c"));
+        assertEquals(List.of("ISBN-y"), index.commonBooks(List.of("M-c")));
+        assertTrue(index.commonBooks(List.of("M-c", "M-a")).isEmpty());
+    }
+
+    @Test
+    void concurrentWriters_shouldKeepBothSidesInSync() throws Exception {
+        DownloadIndex index = new DownloadIndex();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                int thread = t;
+                futures.add(pool.submit(() -> {
+                    for (int i = 0; i < 2_000; i++) {
+                        String user = "M-" + thread + "-" + (i % 20);
+                        String isbn = "ISBN-" + (i % 50);
+                        if (i % 3 == 2) index.remove(user, isbn);
+                        else index.add(user, isbn);
+                        if (i % 500 == 499) index.removeBook("ISBN-" + (i % 7));
+                    }
+                }));
+            }
+            for (Future<?> f : futures) f.get();
+        } finally {
+            pool.shutdown();
+        }
+
+        int edges = 0;
+        for (int b = 0; b < 50; b++) {
+            String isbn = "ISBN-" + b;
+            for (String user : index.downloadersOf(isbn)) {
+                assertTrue(index.booksOf(user).contains(isbn), user + " / " + isbn);
+                edges++;
+            }
+        }
+        int reverse = 0;
+        for (int t = 0; t < 8; t++) {
+            for (int u = 0; u < 20; u++) reverse += index.booksOf("M-" + t + "-" + u).size();
+        }
+        assertEquals(edges, reverse);
+    }
+}
@@ -0,0 +1,65 @@
+package com.libria.domain;
+
+import com.libria.exception.BookNotFoundException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IsbnTest {
+
+    @Test
+    void normalize_shouldMapAllVariantsToIsbn13() {
+        assertEquals("9782070368228", Isbn.normalize("978-2-07-036822-8"));
+        assertEquals("9782070368228", Isbn.normalize(" 978 2 07 036822 8 "));
+        assertEquals("9782070368228", Isbn.normalize("2-07-036822-X"));
+        assertEquals("9782070368228", Isbn.normalize("207036822x"));
+        assertEquals("9780747532699", Isbn.normalize("0-7475-3269-9"));
+        assertEquals("9780306406157", Isbn.normalize("0-306-40615-2"));
+        assertEquals("9780804429573", Isbn.normalize("080442957X"));
+        // identifiants libres gardés tels quels
+        assertEquals("ISBN-1", Isbn.normalize("ISBN-1"));
+        assertNull(Isbn.normalize(null));
+    }
+
+    @Test
+    void normalize_shouldRejectBadChecksum() {
+        assertThrows(IllegalArgumentException.class, () -> Isbn.normalize("978-2-07-036822-9"));
+        assertThrows(IllegalArgumentException.class, () -> Isbn.normalize("0-306-40615-3"));
+        assertNull(Isbn.tryNormalize("9782070368229"));
+        assertNull(Isbn.tryNormalize("2-07-036822-1"));
+        assertEquals("9782070368228", Isbn.tryNormalize("2-07-036822-x"));
+        assertEquals("ISBN-1", Isbn.tryNormalize("ISBN-1"));
+        assertNull(Isbn.tryNormalize(null));
+        assertFalse(Isbn.isValid("ISBN-1"));
+        assertTrue(Isbn.isValid("0-306-40615-2"));
+    }
+
+    @Test
+    void pack_shouldRoundTrip() {
+        long packed = Isbn.pack("9782070368228");
+        assertEquals(9782070368228L, packed);
+        assertEquals("9782070368228", Isbn.unpack(packed));
+        assertEquals(Isbn.NOT_PACKED, Isbn.pack("ISBN-1"));
+        assertEquals(Isbn.NOT_PACKED, Isbn.pack("978-2-07-036822-8"));
+    }
+
+    @Test
+    void badChecksum_shouldOnlyBeRejectedWhenCreatingABook() throws Exception {
+        assertThrows(IllegalArgumentException.class,
+                () -> new Book("978-2-07-036822-9", "Titre", "Auteur", 1950, "Roman", true, "c", "p"));
+
+        Library library = new Library();
+        library.addBook(new Book("978-2-07-036822-8", "Titre", "Auteur", 1950, "Roman", true, "c", "p"));
+        // en lecture, une clé de contrôle fausse veut dire "introuvable"
+        assertEquals("978-2-07-036822-9", Isbn.lookupKey("978-2-07-036822-9"));
+        assertFalse(library.containsBook("978-2-07-036822-9"));
+        assertThrows(BookNotFoundException.class, () -> library.getBook("978-2-07-036822-9"));
+        assertThrows(BookNotFoundException.class, () -> library.removeBook("978-2-07-036822-9"));
+        assertTrue(library.downloadersOf("978-2-07-036822-9").isEmpty());
+        assertThrows(BookNotFoundException.class, () -> new PartitionedLibrary(4).getBook("978-2-07-036822-9"));
+
+        Book probe = new Book();
+        probe.setIsbn("978-2-07-036822-9");
+        assertEquals("978-2-07-036822-9", probe.getIsbn());
+    }
+}
@@ -0,0 +1,150 @@
+package com.libria.domain;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LibraryEventTest {
+
+    private Library library;
+    private Book book;
+    private Member member;
+
+    @BeforeEach
+    void setUp() {
+        library = new Library();
+        book = new Book("ISBN-1", "Harry Potter", "J.K. Rowling", 1997, "Fantasy", true, "c", "p");
+        member = new Member("M001", "Amir", "amir@libria.com", "abcd");
+    }
+
+    @Test
+    void subscribe_shouldReceiveEveryMutationInOrder() throws Exception {
+        List<LibraryEvent> events = new ArrayList<>();
+        EventSubscription subscription = library.subscribe(events::add);
+
+        library.addBook(book);
+        library.registerUser(member);
+        library.downloadBook("M001", "ISBN-1");
+        Book update = new Book();
+        update.setTitle("Harry Potter 2");
+        update.setAvailable(true);
+        library.updateBook("ISBN-1", update);
+        library.setAvailability("ISBN-1", false);
+        library.removeDownload("M001", "ISBN-1");
+        library.removeBook("ISBN-1");
+        library.removeUser("M001");
+        subscription.close();
+        library.addBook(new Book("ISBN-2", "Autre", "X", 2000, "G", true, "c", "p"));
+
+        assertEquals(8, events.size());
+        assertEquals(new LibraryEvent.BookAdded(book), events.get(0));
+        assertEquals(new LibraryEvent.UserRegistered(member), events.get(1));
+        assertEquals(new LibraryEvent.DownloadAdded("M001", "ISBN-1"), events.get(2));
+        LibraryEvent.BookUpdated updated = (LibraryEvent.BookUpdated) events.get(3);
+        assertEquals(List.of(new LibraryEvent.FieldChange("title", "Harry Potter", "Harry Potter 2")), updated.changes());
+        LibraryEvent.BookUpdated availability = (LibraryEvent.BookUpdated) events.get(4);
+        assertEquals("available", availability.changes().get(0).field());
+        assertEquals(new LibraryEvent.DownloadRemoved("M001", "ISBN-1"), events.get(5));
+        assertInstanceOf(LibraryEvent.BookRemoved.class, events.get(6));
+        assertInstanceOf(LibraryEvent.UserRemoved.class, events.get(7));
+    }
+
+    @Test
+    void failingListener_shouldNotBreakWrites() {
+        library.subscribe(event -> {
+            throw new IllegalStateException("listener en panne");
+        });
+        Thread.currentThread().setUncaughtExceptionHandler((t, e) -> { });
+        try {
+            library.addBook(book);
+        } finally {
+            Thread.currentThread().setUncaughtExceptionHandler(null);
+        }
+        assertTrue(library.containsBook("ISBN-1"));
+    }
+
+    @Test
+    void subscribeAsync_shouldDeliverInBatchesWithBackpressure() throws Exception {
+        int total = 200;
+        List<LibraryEvent> received = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger largestBatch = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        LibraryListener slow = new LibraryListener() {
+            @Override
+            public void onEvent(LibraryEvent event) {
+                received.add(event);
+            }
+
+            @Override
+            public void onEvents(List<LibraryEvent> events) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                largestBatch.accumulateAndGet(events.size(), Math::max);
+                received.addAll(events);
+            }
+        };
+        EventSubscription subscription = library.subscribeAsync(slow, 4, 16);
+
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < total; i++) {
+                library.addBook(new Book("A-" + i, "Tome " + i, "X", 2000, "G", true, "c", "p"));
+            }
+        });
+        writer.start();
+        writer.join(300);
+        // listener bloqué : la file (4) est pleine et l'écrivain attend
+        assertTrue(writer.isAlive());
+        assertTrue(library.bookCount() < total);
+        assertEquals(4, subscription.pending());
+
+        release.countDown();
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+        subscription.close();
+
+        assertFalse(writer.isAlive());
+        assertEquals(total, received.size());
+        assertTrue(largestBatch.get() <= 16);
+        assertEquals(new LibraryEvent.BookAdded(library.getBook("A-0")), received.get(0));
+    }
+
+    @Test
+    void subscribeAsync_shouldSurviveErrorsAndCloseFromItsOwnThread() throws Exception {
+        List<LibraryEvent> received = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch closed = new CountDownLatch(1);
+        EventSubscription[] self = new EventSubscription[1];
+        LibraryListener listener = new LibraryListener() {
+            @Override
+            public void onEvent(LibraryEvent event) {
+                received.add(event);
+            }
+
+            @Override
+            public void onEvents(List<LibraryEvent> events) {
+                if (events.get(0) instanceof LibraryEvent.BookAdded) throw new AssertionError("listener en panne");
+                received.addAll(events);
+                self[0].close();   // depuis le thread de livraison : ne doit pas s'attendre lui-même
+                closed.countDown();
+            }
+        };
+        self[0] = library.subscribeAsync(listener, 1, 1);
+
+        library.addBook(book);
+        library.registerUser(member);
+
+        assertTrue(closed.await(10, TimeUnit.SECONDS));
+        library.downloadBook("M001", "ISBN-1");   // plus abonné : rien n'est reçu, rien n'attend
+        assertEquals(List.of(new LibraryEvent.UserRegistered(member)), received);
+        assertEquals(0, self[0].pending());
+    }
+}
@@ -0,0 +1,274 @@
+package com.libria.domain;
+
+import com.libria.exception.JournalException;
+import com.libria.exception.StaleBookException;
+import com.libria.exception.UserNotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LibraryJournalTest {
+
+    @TempDir
+    Path dir;
+
+    private Path journalFile;
+    private Path snapshotFile;
+
+    @BeforeEach
+    void setUp() {
+        journalFile = dir.resolve("library.journal");
+        snapshotFile = dir.resolve("library.lbrs");
+    }
+
+    private static Book book(String isbn) {
+        return new Book(isbn, "Titre " + isbn, "Victor Hugo", 1862, "Classique", true, "cover.png", "book.pdf");
+    }
+
+    @Test
+    void replay_shouldRestoreAllMutations() throws Exception {
+        Library library = new Library();
+        try (LibraryJournal journal = LibraryJournal.open(journalFile)) {
+            library.attachJournal(journal);
+            library.addBook(book("ISBN-1"));
+            library.addBook(book("ISBN-2"));
+            library.addBook(book("ISBN-3"));
+            library.removeBook("ISBN-2");
+            library.setAvailability("ISBN-1", false);
+            Book update = new Book();
+            update.setTitle("Les Misérables");
+            update.setAvailable(true);
+            library.updateBook("ISBN-3", update);
+            library.registerUser(new Member("M001", "Amir", "amir@libria.com", "abcd"));
+            library.registerUser(new Admin("A001", "Zak", "zak@libria.com", "1234"));
+            library.removeUser("M001");
+        }
+
+        Library restored = LibraryJournal.recover(snapshotFile, journalFile);
+
+        assertEquals(2, restored.bookCount());
+        assertFalse(restored.containsBook("ISBN-2"));
+        assertFalse(restored.getBook("ISBN-1").isAvailable());
+        assertEquals("Les Misérables", restored.getBook("ISBN-3").getTitle());
+        assertEquals(1, restored.searchByTitle("misérables").size());
+        assertEquals("ADMIN", restored.getUser("A001").getRole());
+        assertEquals(1, restored.listUsers().size());
+    }
+
+    @Test
+    void replay_shouldRestoreDownloads() throws Exception {
+        Library library = new Library();
+        try (LibraryJournal journal = LibraryJournal.open(journalFile)) {
+            library.attachJournal(journal);
+            library.addBook(book("ISBN-1"));
+            library.addBook(book("ISBN-2"));
+            library.registerUser(new Member("M001", "Amir", "amir@libria.com", "abcd"));
+            library.downloadBook("M001", "ISBN-1");
+            library.downloadBook("M001", "ISBN-2");
+            library.removeDownload("M001", "ISBN-1");
+        }
+
+        Library restored = LibraryJournal.recover(snapshotFile, journalFile);
+
+        assertEquals(1, restored.getUser("M001").downloadCount());
+        assertEquals(1, restored.downloadCount("ISBN-2"));
+        assertEquals(0, restored.downloadCount("ISBN-1"));
+    }
+
+    @Test
+    void checkpoint_shouldEmptyJournalAndKeepState() throws Exception {
+        Library library = new Library();
+        try (LibraryJournal journal = LibraryJournal.open(journalFile)) {
+            library.attachJournal(journal);
+            library.addBook(book("ISBN-1"));
+            journal.checkpoint(library, snapshotFile);
+            assertEquals(0, journal.size());
+            library.addBook(book("ISBN-2"));
+        }
+
+        Library restored = LibraryJournal.recover(snapshotFile, journalFile);
+
+        assertTrue(restored.containsBook("ISBN-1"));
+        assertTrue(restored.containsBook("ISBN-2"));
+    }
+
+    @Test
+    void recover_shouldKeepBookVersions() throws Exception {
+        Library library = new Library();
+        try (LibraryJournal journal = LibraryJournal.open(journalFile)) {
+            library.attachJournal(journal);
+            library.addBook(book("ISBN-1"));
+            library.addBook(book("ISBN-2"));
+            library.setAvailability("ISBN-1", false);
+            journal.checkpoint(library, snapshotFile);
+            library.setAvailability("ISBN-1", true);
+            library.setAvailability("ISBN-2", false);
+            library.setAvailability("ISBN-2", true);
+        }
+        long v1 = library.getBook("ISBN-1").getVersion();
+        long v2 = library.getBook("ISBN-2").getVersion();
+
+        Library restored = LibraryJournal.recover(snapshotFile, journalFile);
+
+        // un If-Match lu avant l'arrêt doit toujours désigner le même état
+        assertEquals(2, v1);
+        assertEquals(v1, restored.getBook("ISBN-1").getVersion());
+        assertEquals(v2, restored.getBook("ISBN-2").getVersion());
+        assertThrows(StaleBookException.class, () -> restored.updateBook("ISBN-2", book("ISBN-2"), v2 - 1));
+    }
+
+    @Test
+    void replay_shouldBeIdempotentOverSnapshot() throws Exception {
+        Library library = new Library();
+        try (LibraryJournal journal = LibraryJournal.open(journalFile)) {
+            library.attachJournal(journal);
+            library.addBook(book("ISBN-1"));
+            library.registerUser(new Member("M001", "Amir", "amir@libria.com", "abcd"));
+        }
+        // snapshot pris sans vider le journal : les enregistrements y sont déjà
+        SnapshotFile.write(library, snapshotFile);
+
+        Library restored = LibraryJournal.recover(snapshotFile, journalFile);
+
+        assertEquals(1, restored.bookCount());
+        assertEquals(1, restored.listUsers().size());
+    }
+
+    @Test
+    void open_shouldCutTornTail() throws Exception {
+        Library library = new Library();
+        try (LibraryJournal journal = LibraryJournal.open(journalFile)) {
+            library.attachJournal(journal);
+            library.addBook(book("ISBN-1"));
+            library.addBook(book("ISBN-2"));
+        }
+        // arrêt brutal au milieu du dernier enregistrement
+        try (FileChannel channel = FileChannel.open(journalFile, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        assertEquals(1, LibraryJournal.replay(journalFile, new Library()));
+
+        Library reopened = LibraryJournal.recover(snapshotFile, journalFile);
+        try (LibraryJournal journal = LibraryJournal.open(journalFile)) {
+            reopened.attachJournal(journal);
+            reopened.addBook(book("ISBN-3"));
+        }
+        Library restored = LibraryJournal.recover(snapshotFile, journalFile);
+        assertTrue(restored.containsBook("ISBN-1"));
+        assertFalse(restored.containsBook("ISBN-2"));
+        assertTrue(restored.containsBook("ISBN-3"));
+    }
+
+    @Test
+    void concurrentWriters_shouldAllBeJournaled() throws Exception {
+        Library library = new Library();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try (LibraryJournal journal = LibraryJournal.open(journalFile)) {
+            library.attachJournal(journal);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                int thread = t;
+                futures.add(pool.submit(() -> {
+                    for (int i = 0; i < 50; i++) library.addBook(book("ISBN-" + thread + "-" + i));
+                }));
+            }
+            for (Future<?> f : futures) f.get();
+        } finally {
+            pool.shutdown();
+        }
+
+        assertEquals(400, LibraryJournal.recover(snapshotFile, journalFile).bookCount());
+    }
+
+    @Test
+    void failedAppend_shouldLeaveMemoryAsOnDisk() throws Exception {
+        Library library = new Library();
+        LibraryJournal journal = LibraryJournal.open(journalFile);
+        library.attachJournal(journal);
+        library.addBook(book("ISBN-1"));
+        library.registerUser(new Member("M001", "Amir", "amir@libria.com", "abcd"));
+        library.downloadBook("M001", "ISBN-1");
+        journal.close();   // toute écriture suivante échoue
+
+        assertThrows(JournalException.class, () -> library.addBook(book("ISBN-2")));
+        assertFalse(library.containsBook("ISBN-2"));
+        assertTrue(library.searchByTitle("ISBN-2").isEmpty());
+
+        Book update = new Book();
+        update.setTitle("Les Misérables");
+        update.setAvailable(true);
+        assertThrows(JournalException.class, () -> library.updateBook("ISBN-1", update));
+        assertEquals("Titre ISBN-1", library.getBook("ISBN-1").getTitle());
+        assertTrue(library.searchByTitle("misérables").isEmpty());
+
+        assertThrows(JournalException.class, () -> library.removeBook("ISBN-1"));
+        assertTrue(library.containsBook("ISBN-1"));
+
+        assertThrows(JournalException.class, () -> library.updateUser("M001", null, "a@libria.com", null));
+        assertEquals("amir@libria.com", library.getUserByEmail("amir@libria.com").getEmail());
+        assertThrows(UserNotFoundException.class, () -> library.getUserByEmail("a@libria.com"));
+        assertThrows(JournalException.class, () -> library.removeDownload("M001", "ISBN-1"));
+        assertEquals(List.of(library.getUser("M001")), library.downloadersOf("ISBN-1"));
+        assertThrows(JournalException.class, () -> library.removeUser("M001"));
+        assertEquals(1, library.listUsers().size());
+
+        Library restored = LibraryJournal.recover(snapshotFile, journalFile);
+        assertEquals(1, restored.bookCount());
+        assertEquals(1, restored.getUser("M001").downloadCount());
+    }
+
+    @Test
+    void checkpoint_concurrentWithWrites_shouldLoseNothing() throws Exception {
+        Library library = new Library();
+        ExecutorService pool = Executors.newFixedThreadPool(5);
+        try (LibraryJournal journal = LibraryJournal.open(journalFile)) {
+            library.attachJournal(journal);
+            List<Future<?>> writers = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                int thread = t;
+                writers.add(pool.submit(() -> {
+                    for (int i = 0; i < 300; i++) {
+                        String isbn = "ISBN-" + thread + "-" + i;
+                        library.addBook(book(isbn));
+                        Book update = new Book();
+                        update.setTitle("Tome " + i);
+                        update.setAvailable(i % 2 == 0);
+                        library.updateBook(isbn, update);
+                        if (i % 3 == 0) library.removeBook(isbn);
+                    }
+                    return null;
+                }));
+            }
+            Future<?> checkpoints = pool.submit(() -> {
+                while (writers.stream().anyMatch(f -> !f.isDone())) {
+                    journal.checkpoint(library, snapshotFile);
+                }
+                return null;
+            });
+            for (Future<?> f : writers) f.get();
+            checkpoints.get();
+        } finally {
+            pool.shutdown();
+        }
+
+        Library restored = LibraryJournal.recover(snapshotFile, journalFile);
+        assertEquals(library.bookCount(), restored.bookCount());
+        for (Book expected : library.listBooks()) {
+            Book actual = restored.getBook(expected.getIsbn());
+            assertEquals(expected.getTitle(), actual.getTitle());
+            assertEquals(expected.isAvailable(), actual.isAvailable());
+        }
+    }
+}
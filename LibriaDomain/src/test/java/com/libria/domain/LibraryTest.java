@@ -4,12 +4,26 @@ import com.libria.exception.BookAlreadyExistException;
 import com.libria.exception.BookNotFoundException;
 import com.libria.exception.UserAlreadyExistException;
 import com.libria.exception.UserNotFoundException;
+import com.sun.management.ThreadMXBean;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Flow;
+import java.util.stream.Collectors;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 class LibraryTest {
 
@@ -116,6 +130,21 @@ class LibraryTest {
         assertThrows(IllegalArgumentException.class, () -> library.removeUser("  "));
     }
 
+    @Test
+    void hasAdmin_shouldFollowRegisterAndRemove() throws Exception {
+        library.registerUser(member);
+        assertFalse(library.hasAdmin());
+
+        library.registerUser(admin);
+        assertTrue(library.hasAdmin());
+        // doublon refusé : le compte ne bouge pas
+        assertThrows(UserAlreadyExistException.class,
+                () -> library.registerUser(new Admin("A002", "Zak", "ZAK@libria.com", "1234")));
+
+        library.removeUser("A001");
+        assertFalse(library.hasAdmin());
+    }
+
     @Test
     void containsBook_shouldReturnTrueOnlyIfPresent() {
         assertFalse(library.containsBook("ISBN-1"));
@@ -175,6 +204,21 @@ class LibraryTest {
         assertEquals("ISBN-3", classic.get(0).getIsbn());
     }
 
+    @Test
+    void searchByAuthor_shouldBeCaseInsensitiveAndExact() {
+        library.addBook(b1);
+        library.addBook(b2);
+        library.addBook(b3);
+
+        List<Book> tolkien = library.searchByAuthor("j.r.r. TOLKIEN");
+        assertEquals(1, tolkien.size());
+        assertEquals("ISBN-2", tolkien.get(0).getIsbn());
+
+        assertTrue(library.searchByAuthor("Tolkien").isEmpty());
+        assertTrue(library.searchByAuthor(null).isEmpty());
+        assertTrue(library.searchByGenre(null).isEmpty());
+    }
+
     @Test
     void listBooks_shouldReturnDefensiveCopy() {
         library.addBook(b1);
@@ -216,4 +260,437 @@ class LibraryTest {
         assertTrue(s.contains("books=2"));
         assertTrue(s.contains("users=1"));
     }
-}
\ No newline at end of file
+
+    @Test
+    void removeUser_shouldReleaseEmail() throws Exception {
+        library.registerUser(member);
+        library.removeUser("M001");
+
+        assertThrows(UserNotFoundException.class, () -> library.getUserByEmail("amir@libria.com"));
+        // l'email peut être réutilisé par un autre compte
+        Member other = new Member("M002", "Autre", "AMIR@libria.com", "pwd");
+        assertDoesNotThrow(() -> library.registerUser(other));
+        assertEquals(other, library.getUserByEmail("amir@libria.com"));
+    }
+
+    @Test
+    void registerUser_shouldKeepIndexesConsistentUnderConcurrency() throws Exception {
+        int threads = 16;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger accepted = new AtomicInteger();
+        try {
+            for (int i = 0; i < threads; i++) {
+                String id = "U" + i;
+                pool.submit(() -> {
+                    start.await();
+                    try {
+                        // tout le monde veut le même email : un seul doit gagner
+                        library.registerUser(new Member(id, "n", "same@libria.com", "p"));
+                        accepted.incrementAndGet();
+                    } catch (UserAlreadyExistException ignored) {
+                    }
+                    return null;
+                });
+            }
+            start.countDown();
+        } finally {
+            pool.shutdown();
+            assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        }
+
+        assertEquals(1, accepted.get());
+        assertEquals(1, library.listUsers().size());
+        User winner = library.getUserByEmail("same@libria.com");
+        assertEquals(winner, library.listUsers().get(0));
+    }
+
+    @Test
+    void addBook_shouldAcceptConcurrentWriters() throws Exception {
+        int threads = 8, perThread = 500;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            for (int t = 0; t < threads; t++) {
+                int base = t * perThread;
+                pool.submit(() -> {
+                    for (int i = base; i < base + perThread; i++) {
+                        library.addBook(new Book("C-" + i, "Titre " + i, "Auteur", 2000, "Genre", true, "c", "p"));
+                    }
+                });
+            }
+        } finally {
+            pool.shutdown();
+            assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        }
+
+        assertEquals(threads * perThread, library.listBooks().size());
+        assertTrue(library.containsBook("C-0"));
+        assertFalse(library.containsBook(null));
+    }
+
+    @Test
+    void searchByTitle_shouldMatchLinearScanResults() {
+        String[] words = {"Le", "Petit", "Prince", "rouge", "NOIR", "été", "harry", "Potter", "Mer", "Vingt"};
+        Random rnd = new Random(42);
+        for (int i = 0; i < 300; i++) {
+            StringBuilder title = new StringBuilder();
+            for (int w = 0; w < 1 + rnd.nextInt(4); w++) {
+                title.append(words[rnd.nextInt(words.length)]).append(' ');
+            }
+            library.addBook(new Book("R-" + i, title.toString().trim(), "A", 2000, "G", true, "c", "p"));
+        }
+        library.removeBook("R-7");
+
+        for (String q : List.of("", "e", "pe", "pet", "PRINCE", "ce ro", "tter", "été", "xyz", "rouge noir")) {
+            Set<String> expected = library.listBooks().stream()
+                    .filter(b -> SearchKey.fold(b.getTitle()).contains(SearchKey.fold(q)))
+                    .map(Book::getIsbn)
+                    .collect(Collectors.toSet());
+            Set<String> actual = library.searchByTitle(q).stream()
+                    .map(Book::getIsbn)
+                    .collect(Collectors.toSet());
+            assertEquals(expected, actual, "requête : " + q);
+        }
+    }
+
+    @Test
+    void catalogSnapshot_shouldBeImmutableAndVersioned() {
+        library.addBook(b1);
+        Snapshot<Book> before = library.catalogSnapshot();
+
+        library.addBook(b2);
+        library.removeBook("ISBN-1");
+        Snapshot<Book> after = library.catalogSnapshot();
+
+        // l'ancien snapshot n'a pas bougé
+        assertEquals(1, before.size());
+        assertEquals(b1, before.get("ISBN-1"));
+        assertEquals(1, after.size());
+        assertEquals(b2, after.get("ISBN-2"));
+        assertNull(after.get("ISBN-1"));
+        assertTrue(after.version() > before.version());
+        assertThrows(UnsupportedOperationException.class, () -> after.add(b3));
+    }
+
+    @Test
+    void userSnapshot_shouldFollowRegistrations() throws Exception {
+        library.registerUser(admin);
+        library.registerUser(member);
+        library.removeUser("A001");
+
+        Snapshot<User> users = library.userSnapshot();
+        assertEquals(1, users.size());
+        assertEquals(member, users.get("M001"));
+    }
+
+    @Test
+    void listBooksPaged_shouldVisitEveryBookOnce_evenWithWritesBetweenPages() {
+        for (int i = 0; i < 50; i++) {
+            library.addBook(new Book("P-" + i, "Titre " + i, "Auteur", 2000, "Genre", true, "c", "p"));
+        }
+
+        List<String> seen = new ArrayList<>();
+        Page<Book> page = library.listBooks(null, 7);
+        seen.addAll(page.getItems().stream().map(Book::getIsbn).toList());
+        // une écriture entre deux pages ne doit pas casser le curseur
+        library.removeBook(seen.get(0));
+        while (page.hasNext()) {
+            page = library.listBooks(page.getNextCursor(), 7);
+            assertTrue(page.getItems().size() <= 7);
+            seen.addAll(page.getItems().stream().map(Book::getIsbn).toList());
+        }
+
+        assertEquals(50, seen.size());
+        assertEquals(50, new HashSet<>(seen).size());
+    }
+
+    @Test
+    void searchPaged_shouldMatchListSearch() {
+        for (int i = 0; i < 40; i++) {
+            String genre = i % 2 == 0 ? "Roman" : "Poésie";
+            library.addBook(new Book("S-" + i, "Le titre " + i, "Auteur", 2000, genre, true, "c", "p"));
+        }
+
+        Set<Book> paged = new HashSet<>();
+        String cursor = null;
+        do {
+            Page<Book> page = library.searchByGenre("roman", cursor, 6);
+            paged.addAll(page.getItems());
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        assertEquals(new HashSet<>(library.searchByGenre("ROMAN")), paged);
+        assertEquals(20, paged.size());
+        assertEquals(5, library.searchByTitle("titre", null, 5).getItems().size());
+        assertThrows(IllegalArgumentException.class, () -> library.listBooks(null, 0));
+        assertThrows(IllegalArgumentException.class, () -> library.listBooks("%%%", 5));
+    }
+
+    @Test
+    void listUsersPaged_shouldWork() throws Exception {
+        library.registerUser(admin);
+        library.registerUser(member);
+
+        Page<User> first = library.listUsers(null, 1);
+        Page<User> second = library.listUsers(first.getNextCursor(), 1);
+
+        assertEquals(1, first.getItems().size());
+        assertEquals(1, second.getItems().size());
+        assertNotEquals(first.getItems().get(0), second.getItems().get(0));
+    }
+
+    @Test
+    void streamByTitle_shouldStopEarly() {
+        library.addBook(b1);
+        library.addBook(b2);
+        library.addBook(b3);
+
+        assertEquals(1, library.streamByTitle("o").limit(1).count());
+        assertEquals(3, library.streamBooks().count());
+    }
+
+    @Test
+    void publishBooks_shouldRespectDemand() {
+        for (int i = 0; i < 10; i++) {
+            library.addBook(new Book("F-" + i, "Titre", "Auteur", 2000, "Genre", true, "c", "p"));
+        }
+        List<Book> received = new ArrayList<>();
+        boolean[] completed = new boolean[1];
+
+        library.publishBooks().subscribe(new Flow.Subscriber<>() {
+            private Flow.Subscription subscription;
+
+            @Override
+            public void onSubscribe(Flow.Subscription s) {
+                subscription = s;
+                s.request(3);
+            }
+
+            @Override
+            public void onNext(Book item) {
+                received.add(item);
+                if (received.size() == 3) subscription.cancel();
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                fail(t);
+            }
+
+            @Override
+            public void onComplete() {
+                completed[0] = true;
+            }
+        });
+
+        assertEquals(3, received.size());
+        assertFalse(completed[0]);
+    }
+
+    @Test
+    void search_shouldIgnoreAccentsAndCase() {
+        library.addBook(new Book("ISBN-10", "Les Misérables", "Émile Zola", 1862, "Théâtre", true, "c", "p"));
+        library.addBook(new Book("ISBN-11", "ŒUVRES complètes", "Victor Hugo", 1880, "Poésie", true, "c", "p"));
+
+        assertEquals(1, library.searchByTitle("miserables").size());
+        assertEquals(1, library.searchByTitle("MISÉRABLES").size());
+        assertEquals(1, library.searchByTitle("oeuvres").size());
+        assertEquals(1, library.searchByAuthor("emile zola").size());
+        assertEquals(1, library.searchByGenre("theatre").size());
+        assertEquals(1, library.searchByGenre("POÉSIE").size());
+    }
+
+    @Test
+    void fullScanSearch_shouldNotAllocatePerBook() {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof ThreadMXBean);
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        int books = 20_000;
+        for (int i = 0; i < books; i++) {
+            library.addBook(new Book("SCAN-" + i, "Tome " + i, "Auteur", 2000, "Genre", true, "c", "p"));
+        }
+        // requête de 2 caractères : pas de trigramme, parcours de tout le catalogue
+        for (int i = 0; i < 5; i++) library.searchByTitle("zq");
+
+        long tid = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(tid);
+        List<Book> result = library.searchByTitle("zq");
+        long allocated = threads.getThreadAllocatedBytes(tid) - before;
+
+        assertTrue(result.isEmpty());
+        // seul le coût fixe de la requête (stream, itérateur, liste vide) : < 1 octet par livre
+        assertTrue(allocated < books, "octets alloués : " + allocated);
+    }
+
+    @Test
+    void downloadIndex_shouldAnswerWhoAndInCommon() throws Exception {
+        library.addBook(b1);
+        library.addBook(b2);
+        library.addBook(b3);
+        library.registerUser(admin);
+        library.registerUser(member);
+
+        library.downloadBook(member.getUserId(), b1.getIsbn());
+        library.downloadBook(member.getUserId(), b2.getIsbn());
+        library.downloadBook(admin.getUserId(), b2.getIsbn());
+        library.downloadBook(admin.getUserId(), b3.getIsbn());
+
+        assertTrue(member.hasBook(b1));
+        assertEquals(2, library.downloadCount(b2.getIsbn()));
+        assertEquals(Set.of(admin, member), new HashSet<>(library.downloadersOf(b2.getIsbn())));
+        assertEquals(List.of(b2), library.commonDownloads(List.of(admin.getUserId(), member.getUserId())));
+        assertEquals(3, library.anyDownloads(List.of(admin.getUserId(), member.getUserId())).size());
+        assertEquals(1, library.coDownloadCount(b1.getIsbn(), b2.getIsbn()));
+        assertThrows(BookAlreadyExistException.class, () -> library.downloadBook(member.getUserId(), b1.getIsbn()));
+
+        library.removeDownload(member.getUserId(), b2.getIsbn());
+        assertEquals(List.of(admin), library.downloadersOf(b2.getIsbn()));
+
+        library.removeUser(admin.getUserId());
+        assertEquals(0, library.downloadCount(b3.getIsbn()));
+    }
+
+    @Test
+    void removeBook_shouldCascadeToDownloaders() throws Exception {
+        library.addBook(b1);
+        library.addBook(b2);
+        library.registerUser(member);
+        library.registerUser(admin);
+        library.downloadBook(member.getUserId(), b1.getIsbn());
+        library.downloadBook(member.getUserId(), b2.getIsbn());
+        library.downloadBook(admin.getUserId(), b1.getIsbn());
+
+        library.removeBook(b1.getIsbn());
+
+        assertFalse(member.hasBook(b1));
+        assertFalse(admin.hasBook(b1));
+        assertTrue(member.hasBook(b2));
+        assertEquals(0, library.downloadCount(b1.getIsbn()));
+        assertThrows(BookNotFoundException.class, () -> library.downloadBook(admin.getUserId(), b1.getIsbn()));
+    }
+
+    // compte les retraits en cascade que la Library fait sur ce user
+    private static final class CountingMember extends Member {
+        static final AtomicInteger discards = new AtomicInteger();
+
+        CountingMember(String id, String name, String email) {
+            super(id, name, email, "pwd");
+        }
+
+        @Override
+        boolean discardBook(Book book) {
+            discards.incrementAndGet();
+            return super.discardBook(book);
+        }
+    }
+
+    @Test
+    void removeBook_with100kDownloaders_shouldOnlyTouchThem() throws Exception {
+        int downloaders = 100_000, others = 100_000;
+        library.addBook(b1);
+        library.addBook(b2);
+        List<User> holders = new ArrayList<>(downloaders);
+        for (int i = 0; i < downloaders; i++) {
+            Member m = new CountingMember("U" + i, "User " + i, "u" + i + "@libria.com");
+            library.registerUser(m);
+            library.downloadBook(m.getUserId(), b1.getIsbn());
+            holders.add(m);
+        }
+        for (int i = 0; i < others; i++) {
+            Member m = new CountingMember("O" + i, "Other " + i, "o" + i + "@libria.com");
+            library.registerUser(m);
+            library.downloadBook(m.getUserId(), b2.getIsbn());
+        }
+        library.downloadBook("U0", b2.getIsbn());
+        assertEquals(downloaders, library.downloadCount(b1.getIsbn()));
+
+        CountingMember.discards.set(0);
+        library.removeBook(b1.getIsbn());
+
+        // la cascade ne visite que les users qui avaient le livre, pas les 100k autres
+        assertEquals(downloaders, CountingMember.discards.get());
+        assertEquals(0, library.downloadCount(b1.getIsbn()));
+        assertTrue(library.downloadersOf(b1.getIsbn()).isEmpty());
+        assertTrue(holders.stream().noneMatch(u -> u.hasBook(b1)));
+        assertEquals(List.of(b2), holders.get(0).listDownloadedBooks());
+        assertEquals(others + 1, library.downloadCount(b2.getIsbn()));
+
+        // et un livre à un seul lecteur ne coûte qu'un retrait, quelle que soit la taille
+        CountingMember.discards.set(0);
+        library.removeBook(b2.getIsbn());
+        assertEquals(others + 1, CountingMember.discards.get());
+    }
+
+    @Test
+    void yearIndex_shouldAnswerRangesAndFollowUpdates() throws Exception {
+        library.addBook(b1);
+        library.addBook(b2);
+        library.addBook(b3);
+
+        assertEquals(List.of(b2, b3), library.searchByYearRange(1950, 1990));
+        assertEquals(List.of(b1, b3), library.newestBooks(2));
+        assertEquals(List.of(b2), library.oldestBooks(1));
+        assertEquals(List.of(b3, b2), library.streamByYear(1900, 1990, true).toList());
+
+        Book update = new Book();
+        update.setYear(2001);
+        library.updateBook("ISBN-2", update);
+        library.removeBook("ISBN-1");
+
+        assertEquals(List.of(b3), library.searchByYearRange(1950, 1999));
+        assertEquals(List.of(b2, b3), library.newestBooks(5));
+        assertThrows(IllegalArgumentException.class, () -> library.searchByYearRange(2000, 1990));
+    }
+
+    @Test
+    void suggest_shouldFollowDownloadsAndRenames() throws Exception {
+        library.addBook(b1);
+        library.addBook(b2);
+        library.addBook(b3);
+        library.registerUser(member);
+        library.registerUser(admin);
+        library.downloadBook("M001", "ISBN-2");
+        library.downloadBook("A001", "ISBN-2");
+        library.downloadBook("M001", "ISBN-3");
+
+        assertEquals(List.of(b2, b3), library.suggest("t", 10));
+        assertEquals(List.of(b1), library.suggest("POT", 10));
+
+        library.removeUser("A001");
+        library.removeDownload("M001", "ISBN-2");
+        assertEquals(List.of(b3, b2), library.suggest("t", 10));
+
+        Book update = new Book();
+        update.setTitle("Go Set a Watchman");
+        library.updateBook("ISBN-3", update);
+        assertEquals(List.of(b3), library.suggest("watch", 5));
+        assertTrue(library.suggest("mocking", 5).isEmpty());
+        assertEquals(List.of(b3), library.suggest("harper", 5));
+
+        library.removeBook("ISBN-3");
+        assertEquals(List.of(b1), library.suggest("h", 5));
+    }
+
+    @Test
+    void isbnVariants_shouldResolveToSameBook() throws Exception {
+        Book book = new Book("2-07-036822-X", "L'Étranger", "Albert Camus", 1942, "Roman", true, "c", "p");
+        library.addBook(book);
+
+        assertEquals("9782070368228", book.getIsbn());
+        assertSame(book, library.getBook("978-2-07-036822-8"));
+        assertTrue(library.containsBook("207036822X"));
+        assertFalse(library.containsBook("978-2-07-036822-9"));
+        assertThrows(BookAlreadyExistException.class,
+                () -> library.addBook(new Book("9782070368228", "Doublon", "X", 1942, "Roman", true, "c", "p")));
+
+        library.registerUser(member);
+        library.downloadBook("M001", "978 2 07 036822 8");
+        assertEquals(1, library.downloadCount("2-07-036822-X"));
+
+        library.removeBook("978-2-07-036822-8");
+        assertEquals(0, library.bookCount());
+        assertEquals(0, member.downloadCount());
+    }
+}
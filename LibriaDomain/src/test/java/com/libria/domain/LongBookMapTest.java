@@ -0,0 +1,33 @@
+package com.libria.domain;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongBookMapTest {
+
+    @Test
+    void operations_shouldMatchHashMap() {
+        LongBookMap map = new LongBookMap();
+        Map<Long, Book> oracle = new HashMap<>();
+        Random rnd = new Random(11);
+        for (int i = 0; i < 200_000; i++) {
+            long key = 9780000000000L + rnd.nextInt(50_000);
+            if (rnd.nextInt(3) == 0) {
+                assertSame(oracle.remove(key), map.remove(key));
+            } else {
+                Book b = new Book();
+                assertSame(oracle.putIfAbsent(key, b), map.putIfAbsent(key, b));
+            }
+        }
+        assertEquals(oracle.size(), map.size());
+        assertEquals(oracle.size(), map.values().size());
+        for (long key = 9780000000000L; key < 9780000050000L; key++) {
+            assertSame(oracle.get(key), map.get(key));
+        }
+    }
+}
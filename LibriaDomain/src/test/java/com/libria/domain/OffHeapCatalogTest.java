@@ -0,0 +1,100 @@
+package com.libria.domain;
+
+import com.libria.exception.BookAlreadyExistException;
+import com.libria.exception.BookNotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OffHeapCatalogTest {
+
+    private OffHeapCatalog catalog;
+    private Book b1, b2;
+
+    @BeforeEach
+    void setUp() {
+        // petits blocs pour exercer le changement de bloc et le compactage
+        catalog = new OffHeapCatalog(4096);
+        b1 = new Book("ISBN-1", "Harry Potter", "J.K. Rowling", 1997, "Fantasy", true, "cover/harry.png", "pdf/harry.pdf");
+        b2 = new Book("ISBN-2", "Les Misérables", "Victor Hugo", 1862, "Classique", false, "cover/mis.png", "pdf/mis.pdf");
+    }
+
+    @Test
+    void getBook_shouldDecodeEveryField() {
+        catalog.addBook(b2);
+        Book found = catalog.getBook("ISBN-2");
+
+        assertEquals("Les Misérables", found.getTitle());
+        assertEquals("Victor Hugo", found.getAuthor());
+        assertEquals(1862, found.getYear());
+        assertEquals("Classique", found.getGenre());
+        assertFalse(found.isAvailable());
+        assertEquals("cover/mis.png", found.getCoverImage());
+        assertEquals("pdf/mis.pdf", found.getPdf());
+        assertThrows(BookNotFoundException.class, () -> catalog.getBook("NOPE"));
+    }
+
+    @Test
+    void view_shouldDecodeLazily() {
+        catalog.addBook(b1);
+        BookView view = catalog.view("ISBN-1");
+
+        assertEquals("Harry Potter", view.getTitle());
+        assertEquals(1997, view.getYear());
+        assertNull(catalog.view("NOPE"));
+    }
+
+    @Test
+    void addRemoveReplace_shouldKeepTableConsistent() {
+        catalog.addBook(b1);
+        assertThrows(BookAlreadyExistException.class, () -> catalog.addBook(b1));
+
+        catalog.replaceBook(new Book("ISBN-1", "Harry Potter 2", "J.K. Rowling", 1998, "Fantasy", true, "c", "p"));
+        assertEquals("Harry Potter 2", catalog.getBook("ISBN-1").getTitle());
+        assertEquals(1, catalog.bookCount());
+
+        catalog.setAvailability("ISBN-1", false);
+        assertFalse(catalog.getBook("ISBN-1").isAvailable());
+
+        catalog.removeBook("ISBN-1");
+        assertFalse(catalog.containsBook("ISBN-1"));
+        assertThrows(BookNotFoundException.class, () -> catalog.removeBook("ISBN-1"));
+    }
+
+    @Test
+    void searches_shouldMatchLibraryAcrossChunksAndCompaction() {
+        Library library = new Library();
+        String[] genres = {"Roman", "Poésie", "Théâtre"};
+        String[] authors = {"Hugo", "Zola", "Sand"};
+        Random rnd = new Random(3);
+        for (int i = 0; i < 3000; i++) {
+            Book book = new Book("O-" + i, "Titre " + rnd.nextInt(300), authors[rnd.nextInt(3)],
+                    1800 + rnd.nextInt(200), genres[rnd.nextInt(3)], true, "c", "p");
+            library.addBook(book);
+            catalog.addBook(book);
+        }
+        for (int i = 0; i < 3000; i += 3) {
+            library.removeBook("O-" + i);
+            catalog.removeBook("O-" + i);
+        }
+        catalog.compact();
+
+        assertEquals(library.bookCount(), catalog.bookCount());
+        assertEquals(isbns(library.searchByTitle("titre 2")), isbns(catalog.searchByTitle("titre 2")));
+        assertEquals(isbns(library.searchByGenre("POÉSIE")), isbns(catalog.searchByGenre("POÉSIE")));
+        assertEquals(isbns(library.searchByAuthor("sand")), isbns(catalog.searchByAuthor("sand")));
+        assertEquals(isbns(library.listBooks()), isbns(catalog.listBooks()));
+        assertTrue(catalog.containsBook("O-1"));
+        assertFalse(catalog.containsBook("O-3"));
+    }
+
+    private static Set<String> isbns(List<Book> books) {
+        return books.stream().map(Book::getIsbn).collect(Collectors.toSet());
+    }
+}
@@ -0,0 +1,107 @@
+package com.libria.domain;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PartitionedLibraryTest {
+
+    private static final String[] AUTHORS = {"Victor Hugo", "Émile Zola", "George Sand", "Albert Camus"};
+    private static final String[] GENRES = {"Roman", "Poésie", "Théâtre"};
+    private static final String[] WORDS = {"nuit", "misère", "peste", "mer", "rouge", "été"};
+
+    private Library single;
+    private PartitionedLibrary partitioned;
+
+    @BeforeEach
+    void setUp() {
+        single = new Library();
+        partitioned = new PartitionedLibrary(8, new ForkJoinPool(4));
+        Random rnd = new Random(5);
+        for (int i = 0; i < 10_000; i++) {
+            String title = WORDS[rnd.nextInt(WORDS.length)] + " " + WORDS[rnd.nextInt(WORDS.length)];
+            String author = AUTHORS[rnd.nextInt(AUTHORS.length)];
+            String genre = GENRES[rnd.nextInt(GENRES.length)];
+            int year = 1800 + rnd.nextInt(200);
+            single.addBook(new Book("P-" + i, title, author, year, genre, true, "c", "p"));
+            partitioned.addBook(new Book("P-" + i, title, author, year, genre, true, "c", "p"));
+        }
+    }
+
+    private static List<String> isbns(List<Book> books) {
+        return books.stream().map(Book::getIsbn).toList();
+    }
+
+    private static List<String> sortedIsbns(List<Book> books) {
+        return books.stream().map(Book::getIsbn).sorted().toList();
+    }
+
+    @Test
+    void searches_shouldMatchSingleLibraryInIsbnOrder() {
+        assertEquals(sortedIsbns(single.searchByTitle("PESTE")), isbns(partitioned.searchByTitle("PESTE")));
+        assertEquals(sortedIsbns(single.searchByGenre("poesie")), isbns(partitioned.searchByGenre("poesie")));
+        assertEquals(sortedIsbns(single.searchByAuthor("emile zola")), isbns(partitioned.searchByAuthor("emile zola")));
+        assertEquals(10_000, partitioned.bookCount());
+        assertEquals(10_000, partitioned.listBooks().size());
+    }
+
+    @Test
+    void search_shouldMergeSortedTopK() {
+        BookQuery query = new BookQuery().genre("Roman").sortBy(BookQuery.Sort.YEAR_DESC).limit(25);
+        assertEquals(isbns(single.search(query)), isbns(partitioned.search(query)));
+
+        BookQuery byTitle = new BookQuery().titleContains("nuit").sortBy(BookQuery.Sort.TITLE);
+        List<Book> merged = partitioned.search(byTitle);
+        assertEquals(single.search(byTitle).size(), merged.size());
+        for (int i = 1; i < merged.size(); i++) {
+            assertTrue(BookQuery.Sort.TITLE.order().compare(merged.get(i - 1), merged.get(i)) < 0);
+        }
+    }
+
+    @Test
+    void writes_shouldBeRoutedByCanonicalIsbn() {
+        Book book = new Book("2-07-036822-X", "L'Étranger", "Albert Camus", 1942, "Roman", true, "c", "p");
+        partitioned.addBook(book);
+
+        assertSame(partitioned.shardFor("9782070368228"), partitioned.shardFor("978-2-07-036822-8"));
+        assertTrue(partitioned.shardFor("2-07-036822-X").containsBook("9782070368228"));
+        assertSame(book, partitioned.getBook("978-2-07-036822-8"));
+
+        Book update = new Book();
+        update.setTitle("La Peste");
+        partitioned.updateBook("9782070368228", update);
+        assertTrue(isbns(partitioned.searchByTitle("la peste")).contains("9782070368228"));
+
+        partitioned.removeBook("207036822X");
+        assertFalse(partitioned.containsBook("9782070368228"));
+        assertEquals(10_000, partitioned.bookCount());
+    }
+
+    @Test
+    void search_shouldNotDependOnPartitionCount() {
+        PartitionedLibrary one = new PartitionedLibrary(1);
+        PartitionedLibrary three = new PartitionedLibrary(3, new ForkJoinPool(2));
+        for (Book book : single.listBooks()) {
+            one.addBook(new Book(book.getIsbn(), book.getTitle(), book.getAuthor(), book.getYear(),
+                    book.getGenre(), true, "c", "p"));
+            three.addBook(new Book(book.getIsbn(), book.getTitle(), book.getAuthor(), book.getYear(),
+                    book.getGenre(), true, "c", "p"));
+        }
+        // sans tri ou avec beaucoup d'ex æquo (auteur, genre), la limite coupe au même endroit
+        for (BookQuery query : List.of(
+                new BookQuery().genre("Roman").limit(30),
+                new BookQuery().titleContains("mer").limit(30),
+                new BookQuery().genre("Poésie").sortBy(BookQuery.Sort.AUTHOR).limit(30),
+                new BookQuery().author("George Sand").sortBy(BookQuery.Sort.YEAR).limit(30))) {
+            List<String> expected = isbns(one.search(query));
+            assertEquals(30, expected.size(), query.toString());
+            assertEquals(expected, isbns(three.search(query)), query.toString());
+            assertEquals(expected, isbns(partitioned.search(query)), query.toString());
+        }
+    }
+}
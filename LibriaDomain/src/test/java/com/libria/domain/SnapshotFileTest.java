@@ -0,0 +1,140 @@
+package com.libria.domain;
+
+import com.libria.exception.BookNotFoundException;
+import com.libria.exception.UserNotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotFileTest {
+
+    @TempDir
+    Path dir;
+
+    private Library library;
+    private Book b1, b2;
+    private Admin admin;
+    private Member member;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        library = new Library();
+        b1 = new Book("ISBN-1", "Harry Potter", "J.K. Rowling", 1997, "Fantasy", true, "cover/harry.png", "pdf/harry.pdf");
+        b2 = new Book("ISBN-2", "Les Misérables", "Victor Hugo", 1862, "Classique", false, "cover/mis.png", "pdf/mis.pdf");
+        admin = new Admin("A001", "Zak", "zak@libria.com", "1234");
+        member = new Member("M001", "Amir", "amir@libria.com", "abcd");
+        library.addBook(b1);
+        library.addBook(b2);
+        member.downloadBook(b2);
+        library.registerUser(admin);
+        library.registerUser(member);
+    }
+
+    @Test
+    void open_shouldReadBooksLazily() throws Exception {
+        Path file = dir.resolve("catalog.lbrs");
+        SnapshotFile.write(library, file);
+
+        MappedCatalog mapped = SnapshotFile.open(file);
+        assertEquals(SnapshotFile.FORMAT_VERSION, mapped.formatVersion());
+        assertEquals(2, mapped.bookCount());
+        assertEquals(2, mapped.userCount());
+        assertEquals(1, mapped.downloadCount());
+        assertEquals("Les Misérables", mapped.getBook("ISBN-2").getTitle());
+        assertFalse(mapped.getBook("ISBN-2").isAvailable());
+        assertTrue(mapped.containsBook("ISBN-1"));
+        assertFalse(mapped.containsBook("ISBN-3"));
+        assertThrows(BookNotFoundException.class, () -> mapped.getBook("ISBN-3"));
+        assertEquals(1, mapped.searchByTitle("misé").size());
+        assertEquals(1, mapped.searchByAuthor("VICTOR HUGO").size());
+        assertEquals(1, mapped.searchByGenre("fantasy").size());
+    }
+
+    @Test
+    void open_shouldRestoreUsersAndDownloads() throws Exception {
+        Path file = dir.resolve("catalog.lbrs");
+        SnapshotFile.write(library, file);
+        MappedCatalog mapped = SnapshotFile.open(file);
+
+        User restored = mapped.getUser("M001");
+        assertTrue(restored instanceof Member);
+        assertEquals("amir@libria.com", restored.getEmail());
+        assertTrue(restored.hasBook(b2));
+        assertTrue(mapped.getUser("A001") instanceof Admin);
+        assertThrows(UserNotFoundException.class, () -> mapped.getUser("NOPE"));
+    }
+
+    @Test
+    void load_shouldRebuildAnEquivalentLibrary() throws Exception {
+        Path file = dir.resolve("catalog.lbrs");
+        SnapshotFile.write(library, file);
+
+        Library restored = SnapshotFile.load(file);
+        assertEquals(2, restored.bookCount());
+        assertEquals(2, restored.listUsers().size());
+        assertEquals("amir@libria.com", restored.getUserByEmail("AMIR@libria.com").getEmail());
+        // les téléchargements pointent vers les instances du catalogue restauré
+        assertSame(restored.getBook("ISBN-2"), restored.getUser("M001").listDownloadedBooks().get(0));
+    }
+
+    @Test
+    void write_shouldReplaceExistingFileAtomically() throws Exception {
+        Path file = dir.resolve("catalog.lbrs");
+        SnapshotFile.write(library, file);
+        library.removeBook("ISBN-1");
+        SnapshotFile.write(library, file);
+
+        assertEquals(1, SnapshotFile.open(file).bookCount());
+        try (var files = Files.list(dir)) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    @Test
+    void load_shouldKeepBookVersions() throws Exception {
+        library.setAvailability("ISBN-1", false);
+        library.setAvailability("ISBN-1", true);
+        Path file = dir.resolve("catalog.lbrs");
+        SnapshotFile.write(library, file);
+
+        assertEquals(2, SnapshotFile.open(file).getBook("ISBN-1").getVersion());
+        Library restored = SnapshotFile.load(file);
+        assertEquals(2, restored.getBook("ISBN-1").getVersion());
+        assertEquals(0, restored.getBook("ISBN-2").getVersion());
+    }
+
+    @Test
+    void open_shouldRejectUnknownFiles() throws Exception {
+        Path file = dir.resolve("garbage.bin");
+        Files.write(file, new byte[128]);
+        assertThrows(IllegalArgumentException.class, () -> SnapshotFile.open(file));
+    }
+
+    @Test
+    void open_shouldStillReadVersion1Files() throws Exception {
+        Path file = dir.resolve("catalog.lbrs");
+        SnapshotFile.write(library, file);
+        // en version 1 les formes de recherche gardaient les accents
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(2).putShort(0, (short) 1), 4);
+        }
+
+        MappedCatalog mapped = SnapshotFile.open(file);
+        assertEquals(1, mapped.formatVersion());
+        assertEquals(1, mapped.searchByTitle("miserables").size());
+        assertEquals(1, mapped.searchByAuthor("VICTOR HUGO").size());
+        assertEquals(1, mapped.searchByGenre("classique").size());
+
+        Library restored = SnapshotFile.load(file);
+        assertEquals(1, restored.searchByTitle("miserables").size());
+        assertTrue(restored.getUser("M001").hasBook(b2));
+    }
+}
@@ -0,0 +1,86 @@
+package com.libria.domain;
+
+import com.libria.exception.BookNotFoundException;
+import com.libria.exception.StaleBookException;
+import com.libria.exception.UserAlreadyExistException;
+import com.libria.exception.UserNotFoundException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotStoreTest {
+
+    @TempDir
+    Path dir;
+
+    private static Book book(String isbn, String title, int year) {
+        return new Book(isbn, title, "Victor Hugo", year, "Classique", true, "cover.png", "book.pdf");
+    }
+
+    @Test
+    void memoryStore_shouldServeCatalogAndUsers() {
+        MemoryStore store = new MemoryStore();
+        store.addBook(book("ISBN-1", "Les Misérables", 1862));
+        store.addBook(book("ISBN-2", "Notre-Dame de Paris", 1831));
+        store.registerUser(new Member("M1", "Lina", "lina@libria.com", "pwd"));
+        store.registerUser(new Member("M2", "Amir", "amir@libria.com", "pwd"));
+
+        assertEquals(2, store.searchByTitleOrAuthor("hugo").size());
+        assertEquals(List.of("ISBN-1"), store.searchByYearRange(1850, 1900, true, 10)
+                .stream().map(Book::getIsbn).toList());
+        assertFalse(store.hasAdmin());
+
+        store.addDownload("M1", "ISBN-1");
+        assertEquals(1, store.downloadCounts().get("ISBN-1"));
+
+        // email déjà pris (casse ignorée) : refusé, l'ancien reste valable
+        assertThrows(UserAlreadyExistException.class, () -> store.updateUser("M1", null, "AMIR@libria.com", null));
+        assertEquals("M1", store.getUserByEmail("lina@libria.com").getUserId());
+        store.updateUser("M1", "Lina B.", "lina.b@libria.com", null);
+        assertEquals("Lina B.", store.getUserByEmail("LINA.B@libria.com").getName());
+
+        long version = store.getBook("ISBN-1").getVersion();
+        Book update = new Book();
+        update.setTitle("Les Misérables (intégrale)");
+        update.setAvailable(true);
+        assertEquals(version + 1, store.updateBook("ISBN-1", update, version).getVersion());
+        assertThrows(StaleBookException.class, () -> store.updateBook("ISBN-1", update, version));
+
+        store.removeBook("ISBN-1");
+        assertTrue(store.getUser("M1").listDownloadedBooks().isEmpty());
+        assertThrows(BookNotFoundException.class, () -> store.removeBook("ISBN-1"));
+    }
+
+    @Test
+    void snapshotStore_shouldKeepWritesAcrossRestarts() throws Exception {
+        try (SnapshotStore store = SnapshotStore.open(dir)) {
+            store.addBook(book("ISBN-1", "Les Misérables", 1862));
+            store.registerUser(new Admin("A1", "Zakaria", "zakaria@libria.com", "1234"));
+            store.addDownload("A1", "ISBN-1");
+        }
+        try (SnapshotStore store = SnapshotStore.open(dir)) {
+            // rouvert depuis le snapshot écrit à la fermeture
+            assertEquals(0, store.journalSize());
+            assertTrue(store.hasAdmin());
+            store.updateUser("A1", null, "admin@libria.com", "secret");
+            store.addBook(book("ISBN-2", "Quatrevingt-treize", 1874));
+        }
+
+        // arrêt brutal : ni checkpoint ni fermeture, tout vient du journal
+        SnapshotStore crashed = SnapshotStore.open(dir);
+        crashed.removeDownload("A1", "ISBN-1");
+        crashed.addDownload("A1", "ISBN-2");
+
+        try (SnapshotStore store = SnapshotStore.open(dir)) {
+            assertEquals(2, store.bookCount());
+            User admin = store.getUserByEmail("admin@libria.com");
+            assertEquals("secret", admin.getPassword());
+            assertEquals(List.of("ISBN-2"), admin.listDownloadedBooks().stream().map(Book::getIsbn).toList());
+            assertThrows(UserNotFoundException.class, () -> store.getUserByEmail("zakaria@libria.com"));
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.libria.domain;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotTest {
+
+    @Test
+    void with_shouldNotModifyPreviousSnapshot() {
+        Snapshot<String> empty = Snapshot.empty();
+        Snapshot<String> s1 = empty.with("a", "A");
+        Snapshot<String> s2 = s1.with("b", "B");
+
+        assertEquals(0, empty.size());
+        assertEquals(1, s1.size());
+        assertEquals(2, s2.size());
+        assertNull(s1.get("b"));
+        assertEquals("B", s2.get("b"));
+        assertTrue(s2.version() > s1.version());
+    }
+
+    @Test
+    void with_shouldReplaceExistingKey() {
+        Snapshot<String> s = Snapshot.<String>empty().with("a", "A").with("a", "A2");
+        assertEquals(1, s.size());
+        assertEquals("A2", s.get("a"));
+    }
+
+    @Test
+    void without_shouldRemoveKey_andReturnSameSnapshotIfAbsent() {
+        Snapshot<String> s = Snapshot.<String>empty().with("a", "A").with("b", "B");
+        Snapshot<String> removed = s.without("a");
+
+        assertEquals(1, removed.size());
+        assertNull(removed.get("a"));
+        assertEquals("A", s.get("a"));
+        assertSame(removed, removed.without("zzz"));
+    }
+
+    @Test
+    void shouldHandleHashCollisions() {
+        // "Aa" et "BB" ont le même hashCode
+        assertEquals("Aa".hashCode(), "BB".hashCode());
+        Snapshot<String> s = Snapshot.<String>empty().with("Aa", "1").with("BB", "2").with("C", "3");
+
+        assertEquals("1", s.get("Aa"));
+        assertEquals("2", s.get("BB"));
+        assertEquals(3, s.size());
+
+        Snapshot<String> s2 = s.without("Aa");
+        assertNull(s2.get("Aa"));
+        assertEquals("2", s2.get("BB"));
+        assertEquals(2, s2.size());
+    }
+
+    @Test
+    void shouldBehaveLikeAMapOnManyKeys() {
+        Map<String, Integer> expected = new HashMap<>();
+        Snapshot<Integer> s = Snapshot.empty();
+        Random rnd = new Random(1);
+        for (int i = 0; i < 20_000; i++) {
+            String key = "K" + rnd.nextInt(5_000);
+            if (rnd.nextInt(3) == 0) {
+                expected.remove(key);
+                s = s.without(key);
+            } else {
+                expected.put(key, i);
+                s = s.with(key, i);
+            }
+        }
+
+        assertEquals(expected.size(), s.size());
+        for (Map.Entry<String, Integer> e : expected.entrySet()) {
+            assertEquals(e.getValue(), s.get(e.getKey()));
+        }
+        List<Integer> iterated = new ArrayList<>(s);
+        assertEquals(expected.size(), iterated.size());
+        assertEquals(new HashSet<>(expected.values()), new HashSet<>(iterated));
+    }
+
+    @Test
+    void iterationOrder_shouldBeStableAcrossVersions() {
+        Snapshot<String> s = Snapshot.empty();
+        for (int i = 0; i < 1000; i++) {
+            s = s.with("K" + i, "K" + i);
+        }
+        List<String> before = new ArrayList<>(s);
+        List<String> after = new ArrayList<>(s.with("NEW", "NEW").without("NEW"));
+        assertEquals(before, after);
+    }
+
+    @Test
+    void iteratorAfter_shouldResumeAfterKey_evenIfRemoved() {
+        Snapshot<String> s = Snapshot.empty();
+        for (int i = 0; i < 500; i++) {
+            s = s.with("K" + i, "K" + i);
+        }
+        s = s.with("Aa", "Aa").with("BB", "BB");
+        List<String> all = new ArrayList<>(s);
+
+        for (int i = 0; i < all.size(); i += 37) {
+            String key = all.get(i);
+            List<String> rest = new ArrayList<>();
+            s.without(key).iteratorAfter(key).forEachRemaining(rest::add);
+            assertEquals(all.subList(i + 1, all.size()), rest);
+        }
+        List<String> sorted = new ArrayList<>(all);
+        sorted.sort(Snapshot.KEY_ORDER);
+        assertEquals(sorted, all);
+    }
+}
@@ -0,0 +1,92 @@
+package com.libria.domain;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StringDictionaryTest {
+
+    @Test
+    void canonical_shouldReturnSameInstanceForEqualStrings() {
+        StringDictionary dict = new StringDictionary();
+        String a = new String("Science-fiction");
+        String b = new String("Science-fiction");
+
+        assertSame(dict.canonical(a), dict.canonical(b));
+        assertSame(a, dict.canonical(b));
+        assertNull(dict.canonical(null));
+    }
+
+    @Test
+    void code_shouldBeStableAndDecodable() {
+        StringDictionary dict = new StringDictionary();
+        int fantasy = dict.code("Fantasy");
+        int classic = dict.code("Classic");
+
+        assertNotEquals(fantasy, classic);
+        assertEquals(fantasy, dict.code(new String("Fantasy")));
+        assertEquals("Classic", dict.decode(classic));
+        assertThrows(IllegalArgumentException.class, () -> dict.decode(999));
+    }
+
+    @Test
+    void code_shouldGrowPastInitialCapacity() {
+        StringDictionary dict = new StringDictionary();
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, dict.code("Auteur " + i));
+        }
+        assertEquals("Auteur 999", dict.decode(999));
+    }
+
+    @Test
+    void stats_shouldCountDeduplicatedInstances() {
+        StringDictionary dict = new StringDictionary();
+        dict.canonical(new String("Roman"));
+        dict.canonical(new String("Roman"));
+        dict.canonical(new String("Roman"));
+
+        DictionaryStats stats = dict.stats();
+        assertEquals(1, stats.getDistinctValues());
+        assertEquals(3, stats.getLookups());
+        assertEquals(2, stats.getDeduplicated());
+        assertTrue(stats.getEstimatedBytesSaved() >= 2 * StringDictionary.footprint("Roman"));
+    }
+
+    @Test
+    void internMetadata_shouldCountEachSavedInstanceOnce() {
+        StringDictionary dict = new StringDictionary();
+        new Book("ISBN-1", "Titre", "collectif", 2000, "roman", true, "c", "p").internMetadata(dict);
+        // genre et auteur déjà en forme de recherche : valeur et clé sont le même objet
+        Book book = new Book("ISBN-2", "Titre", new String("collectif"), 2000, new String("roman"), true, "c", "p");
+        book.internMetadata(dict);
+
+        DictionaryStats stats = dict.stats();
+        assertEquals(2, stats.getDeduplicated());
+        assertEquals(StringDictionary.footprint("collectif") + StringDictionary.footprint("roman"),
+                stats.getEstimatedBytesSaved());
+
+        // un livre déjà internalisé ne fait rien économiser de plus
+        book.internMetadata(dict);
+        assertEquals(2, dict.stats().getDeduplicated());
+    }
+
+    @Test
+    void rebuild_shouldForgetValuesNoLongerInTheCatalog() {
+        Library library = new Library();
+        for (int i = 0; i < 1000; i++) {
+            library.addBook(new Book("D-" + i, "Titre", "Auteur " + i, 2000, "Roman", true, "c", "p"));
+        }
+        for (int i = 1; i < 1000; i++) library.removeBook("D-" + i);
+        assertTrue(library.dictionaryStats().getDistinctValues() >= 2000);
+
+        library.rebuildDictionary();
+
+        // "Auteur 0" / "auteur 0" et "Roman" / "roman" : les compteurs sont gardés
+        assertEquals(4, library.dictionaryStats().getDistinctValues());
+        long lookups = library.dictionaryStats().getLookups();
+        Book again = new Book("D-1", "Titre", new String("Auteur 0"), 2000, new String("Roman"), true, "c", "p");
+        library.addBook(again);
+        assertSame(library.getBook("D-0").getAuthor(), again.getAuthor());
+        assertTrue(library.dictionaryStats().getLookups() > lookups);
+    }
+}
@@ -0,0 +1,130 @@
+package com.libria.domain;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SuggestIndexTest {
+
+    private static final String[] WORDS = {"nuit", "nuages", "misère", "mer", "merveille", "peste", "été", "étoile"};
+
+    private static Book book(String isbn, String title, String author) {
+        return new Book(isbn, title, author, 1900, "Roman", true, "c", "p");
+    }
+
+    @Test
+    void suggest_shouldRankByWeightAndFollowUpdates() {
+        SuggestIndex index = new SuggestIndex();
+        Book harry = book("ISBN-1", "Harry Potter", "J.K. Rowling");
+        Book hugo = book("ISBN-2", "Les Misérables", "Victor Hugo");
+        Book hunger = book("ISBN-3", "Hunger Games", "Suzanne Collins");
+        index.put(harry, () -> 5);
+        index.put(hugo, () -> 9);
+        index.put(hunger, () -> 1);
+
+        assertEquals(List.of(hugo, harry, hunger), index.suggest("H", 10));
+        assertEquals(List.of(hugo, harry), index.suggest("h", 2));
+        assertEquals(List.of(hugo), index.suggest("mise", 10));
+        assertEquals(List.of(harry), index.suggest("harry po", 10));
+
+        index.adjustWeight("ISBN-3", 20);
+        assertEquals(List.of(hunger, hugo, harry), index.suggest("h", 10));
+
+        hugo.setTitle("Notre-Dame de Paris");
+        index.put(hugo, () -> 0);
+        assertEquals(20 + 1, index.weight("ISBN-3"));
+        assertEquals(9, index.weight("ISBN-2"));
+        assertTrue(index.suggest("mise", 10).isEmpty());
+        assertEquals(List.of(hugo), index.suggest("notre", 10));
+
+        index.remove("ISBN-3");
+        assertEquals(List.of(hugo, harry), index.suggest("h", 10));
+        assertTrue(index.suggest("hun", 10).isEmpty());
+        assertTrue(index.suggest("  ", 10).isEmpty());
+    }
+
+    @Test
+    void suggest_shouldMatchBruteForce() {
+        SuggestIndex index = new SuggestIndex();
+        Random rnd = new Random(7);
+        Map<String, Integer> weights = new HashMap<>();
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            Book b = book(String.format("S-%04d", i),
+                    WORDS[rnd.nextInt(WORDS.length)] + " " + WORDS[rnd.nextInt(WORDS.length)], "Auteur " + i % 50);
+            int weight = rnd.nextInt(1000);
+            books.add(b);
+            weights.put(b.getIsbn(), weight);
+            index.put(b, () -> weight);
+        }
+        for (int i = 0; i < 2000; i++) {
+            String isbn = books.get(rnd.nextInt(books.size())).getIsbn();
+            int delta = rnd.nextInt(21) - 10;
+            int next = Math.max(0, weights.get(isbn) + delta);
+            index.adjustWeight(isbn, next - weights.get(isbn));
+            weights.put(isbn, next);
+        }
+        for (int i = 0; i < 500; i++) {
+            Book removed = books.remove(rnd.nextInt(books.size()));
+            index.remove(removed.getIsbn());
+        }
+
+        for (String prefix : List.of("n", "me", "mer", "ete", "é", "auteur 1", "peste m")) {
+            String key = SearchKey.fold(prefix);
+            List<Integer> expected = books.stream()
+                    .filter(b -> Stream.of(b.titleKey(), b.authorKey()).anyMatch(k -> k.startsWith(key)
+                            || Arrays.stream(k.split(" ")).anyMatch(w -> w.startsWith(key))))
+                    .map(b -> weights.get(b.getIsbn()))
+                    .sorted(Comparator.reverseOrder())
+                    .limit(10)
+                    .toList();
+            List<Integer> actual = index.suggest(prefix, 10).stream().map(b -> weights.get(b.getIsbn())).toList();
+            assertEquals(expected, actual, prefix);
+        }
+    }
+
+    @Test
+    void adjustWeight_fromManyThreads_shouldAddUp() throws Exception {
+        SuggestIndex index = new SuggestIndex();
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Book b = book(String.format("W-%03d", i), WORDS[i % WORDS.length] + " " + i, "Auteur");
+            books.add(b);
+            index.put(b, () -> 0);
+        }
+        int threads = 8, rounds = 20_000;
+        ExecutorService pool = Executors.newFixedThreadPool(threads + 1);
+        AtomicBoolean done = new AtomicBoolean();
+        Future<?> reader = pool.submit(() -> {
+            while (!done.get()) assertFalse(index.suggest("auteur", 5).isEmpty());
+        });
+        List<Future<?>> writers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int seed = t;
+            writers.add(pool.submit(() -> {
+                for (int i = 0; i < rounds; i++) {
+                    index.adjustWeight(books.get((seed * 31 + i) % books.size()).getIsbn(), 1);
+                }
+            }));
+        }
+        for (Future<?> writer : writers) writer.get();
+        done.set(true);
+        reader.get();
+        pool.shutdown();
+
+        int total = 0;
+        for (Book b : books) total += index.weight(b.getIsbn());
+        assertEquals(threads * rounds, total);
+        List<Book> top = index.suggest("auteur", 100);
+        for (int i = 1; i < top.size(); i++) {
+            assertTrue(index.weight(top.get(i - 1).getIsbn()) >= index.weight(top.get(i).getIsbn()));
+        }
+    }
+}
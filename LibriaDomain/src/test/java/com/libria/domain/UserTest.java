@@ -6,6 +6,8 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import javax.security.auth.login.LoginException;
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -75,6 +77,47 @@ class UserTest {
         assertEquals(1, user.listDownloadedBooks().size());
     }
 
+    @Test
+    void downloadedBooksView_shouldBeReadOnlyAndLive() throws Exception {
+        var view = user.downloadedBooksView();
+        user.downloadBook(book1);
+        assertEquals(1, view.size());
+        assertThrows(UnsupportedOperationException.class, () -> view.add(book2));
+    }
+
+    @Test
+    void downloads_shouldKeepInsertionOrderAndMatchByIsbn() throws Exception {
+        List<String> isbns = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            Book book = new Book("D-" + i, "Tome " + i, "Auteur", 2000, "Genre", true, "c", "p");
+            user.downloadBook(book);
+            isbns.add(book.getIsbn());
+        }
+        Book copy = new Book("D-1000", "Autre instance", "Auteur", 2000, "Genre", true, "c", "p");
+
+        assertTrue(user.hasBook(copy));
+        assertThrows(BookAlreadyExistException.class, () -> user.downloadBook(copy));
+        user.removeBook(copy);
+        isbns.remove("D-1000");
+
+        assertEquals(1999, user.downloadCount());
+        assertEquals(isbns, user.listDownloadedBooks().stream().map(Book::getIsbn).toList());
+    }
+
+    @Test
+    void refreshBook_shouldSwapTheVersionInPlace() throws Exception {
+        user.downloadBook(book1);
+        user.downloadBook(book2);
+        Book next = book1.nextVersion();
+        next.setTitle("Harry Potter à l'école des sorciers");
+
+        assertTrue(user.refreshBook(next));
+        assertSame(next, user.listDownloadedBooks().get(0));
+        assertSame(book2, user.listDownloadedBooks().get(1));
+        assertFalse(user.refreshBook(new Book("ISBN-3", "Autre", "Auteur", 2000, "Genre", true, "c", "p")));
+        assertEquals(2, user.downloadCount());
+    }
+
     @Test
     void hasBook_shouldReturnTrueIfDownloaded() throws Exception {
         user.downloadBook(book1);
@@ -2,13 +2,27 @@ package com.libria.domain;
 
 import com.libria.exception.*;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
 import jakarta.transaction.Transactional;
+import jakarta.transaction.TransactionSynchronizationRegistry;
 
 import javax.security.auth.login.LoginException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 @ApplicationScoped
 public class ApplicationState {
@@ -16,9 +30,65 @@ public class ApplicationState {
     @PersistenceContext(unitName = "LibriaPU")
     private EntityManager em;
 
+    @Resource
+    private TransactionSynchronizationRegistry txRegistry;
+
+    // Moteur de stockage choisi au démarrage par la propriété système libria.store :
+    //   jpa (défaut) : MySQL via JPA
+    //   memory       : tout en mémoire, perdu au redémarrage
+    //   snapshot     : en mémoire, snapshot + journal dans libria.store.dir
+    // Les deux champs désignent le même objet.
+    private CatalogStore catalog;
+    private UserStore users;
+
+    // autocomplétion du moteur jpa, chargée au premier appel puis tenue à jour par les écritures
+    // (les moteurs en mémoire ont celle de leur Library)
+    private volatile SuggestIndex suggestIndex;
+
+    // ISBN connus : un ISBN absent du filtre n'est pas en base, inutile d'interroger MySQL.
+    // Chargé au premier accès, rechargé plus grand quand il est plein.
+    private volatile CuckooFilter isbnFilter;
+    private final Object isbnFilterLock = new Object();
+    // ISBN ajoutés par des transactions pas encore terminées (invisibles pour un rechargement)
+    private final Set<String> pendingIsbns = ConcurrentHashMap.newKeySet();
+    private final AtomicLong isbnLookups = new AtomicLong();
+    private final AtomicLong isbnDefiniteMisses = new AtomicLong();
+    private final AtomicLong isbnFalsePositives = new AtomicLong();
+
     @PostConstruct
     public void init() {
-        System.out.println("LibriaService - ApplicationState initialisé (aucune donnée seedée au démarrage)");
+        String engine = System.getProperty("libria.store", "jpa");
+        switch (engine) {
+            case "jpa" -> use(new JpaStore(em));
+            case "memory" -> use(new MemoryStore());
+            case "snapshot" -> {
+                Path dir = Path.of(System.getProperty("libria.store.dir", "libria-data"));
+                try {
+                    use(SnapshotStore.open(dir));
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Ouverture du stockage impossible : " + dir, e);
+                }
+            }
+            default -> throw new IllegalStateException("Moteur de stockage inconnu : " + engine);
+        }
+        System.out.println("LibriaService - ApplicationState initialisé, moteur " + engine
+                + " (aucune donnée seedée au démarrage)");
+    }
+
+    private <S extends CatalogStore & UserStore> void use(S store) {
+        this.catalog = store;
+        this.users = store;
+    }
+
+    @PreDestroy
+    public void close() {
+        if (catalog instanceof SnapshotStore store) {
+            try {
+                store.close();
+            } catch (IOException e) {
+                System.err.println("LibriaService - fermeture du stockage impossible : " + e.getMessage());
+            }
+        }
     }
 
     /* =====================================================
@@ -31,30 +101,38 @@ public class ApplicationState {
      */
     @Transactional
     public void ensureDefaultAdminExists() {
-        Long countAdmins = em.createQuery(
-                "SELECT COUNT(a) FROM Admin a", Long.class
-        ).getSingleResult();
-
-        if (countAdmins == 0L) {
+        if (!users.hasAdmin()) {
             Admin admin = new Admin(
                     "AD01",
                     "Super Admin",
                     "admin@libria.com",
                     "libria123"
             );
-            em.persist(admin);
+            users.registerUser(admin);
             System.out.println("LibriaService - Admin par défaut créé (admin@libria.com / libria123)");
         }
     }
 
+    // l'admin doit exister dans le moteur : un id inconnu est refusé comme un simple member
+    private void requireAdmin(String userId, String message) throws AccessDeniedException {
+        User user;
+        try {
+            user = userId == null ? null : users.getUser(userId);
+        } catch (UserNotFoundException e) {
+            user = null;
+        }
+        if (!(user instanceof Admin)) {
+            throw new AccessDeniedException(message);
+        }
+    }
+
     /* =====================================================
      *  BOOKS - LECTURE
      * ===================================================== */
 
     @Transactional(Transactional.TxType.SUPPORTS)
     public List<Book> listAllBooks() {
-        return em.createQuery("SELECT b FROM Book b", Book.class)
-                .getResultList();
+        return catalog.listBooks();
     }
 
     @Transactional(Transactional.TxType.SUPPORTS)
@@ -62,7 +140,7 @@ public class ApplicationState {
         if (isbn == null || isbn.isBlank()) {
             throw new IllegalArgumentException("ISBN invalide.");
         }
-        Book b = em.find(Book.class, isbn);
+        Book b = findBook(isbn);
         if (b == null) {
             throw new BookNotFoundException("Livre introuvable pour ISBN " + isbn);
         }
@@ -71,45 +149,174 @@ public class ApplicationState {
 
     @Transactional(Transactional.TxType.SUPPORTS)
     public List<Book> searchBooksByTitle(String title) {
-        if (title == null) title = "";
-        return em.createQuery(
-                        "SELECT b FROM Book b WHERE LOWER(b.title) LIKE LOWER(:t)",
-                        Book.class)
-                .setParameter("t", "%" + title + "%")
-                .getResultList();
+        return catalog.searchByTitle(title == null ? "" : title);
     }
 
     @Transactional(Transactional.TxType.SUPPORTS)
     public List<Book> searchBooksByAuthor(String author) {
-        if (author == null) author = "";
-        return em.createQuery(
-                        "SELECT b FROM Book b WHERE LOWER(b.author) LIKE LOWER(:a)",
-                        Book.class)
-                .setParameter("a", "%" + author + "%")
-                .getResultList();
+        return catalog.searchByAuthor(author == null ? "" : author);
     }
 
     @Transactional(Transactional.TxType.SUPPORTS)
     public List<Book> searchBooksByTitleOrAuthor(String q) {
-        if (q == null) q = "";
-        return em.createQuery("""
-                SELECT b FROM Book b
-                WHERE LOWER(b.title)  LIKE LOWER(CONCAT('%', :q, '%'))
-                   OR LOWER(b.author) LIKE LOWER(CONCAT('%', :q, '%'))
-                """, Book.class)
-                .setParameter("q", q)
-                .getResultList();
+        return catalog.searchByTitleOrAuthor(q == null ? "" : q);
     }
 
     @Transactional(Transactional.TxType.SUPPORTS)
     public List<Book> searchBooksByGenre(String genre) {
-        if (genre == null) genre = "";
-        return em.createQuery("""
-                SELECT b FROM Book b
-                WHERE LOWER(b.genre) = LOWER(:g)
-                """, Book.class)
-                .setParameter("g", genre)
-                .getResultList();
+        return catalog.searchByGenre(genre == null ? "" : genre);
+    }
+
+    /**
+     * Livres publiés entre from et to inclus, triés par année (newestFirst = plus récents
+     * d'abord), au plus limit : en base, l'index sur book_year arrête la requête à limit lignes.
+     */
+    @Transactional(Transactional.TxType.SUPPORTS)
+    public List<Book> searchBooksByYearRange(int from, int to, boolean newestFirst, int limit) {
+        return catalog.searchByYearRange(from, to, newestFirst, limit);
+    }
+
+    /** Autocomplétion : livres dont un mot du titre ou de l'auteur commence par prefix. */
+    @Transactional(Transactional.TxType.SUPPORTS)
+    public List<Book> suggestBooks(String prefix, int limit) {
+        if (catalog instanceof MemoryStore store) {
+            return store.library().suggest(prefix, limit);
+        }
+        return suggestIndex().suggest(prefix, limit);
+    }
+
+    private SuggestIndex suggestIndex() {
+        SuggestIndex index = suggestIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = suggestIndex;
+                if (index == null) {
+                    index = loadSuggestIndex();
+                    suggestIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    private SuggestIndex loadSuggestIndex() {
+        Map<String, Integer> downloads = users.downloadCounts();
+        SuggestIndex index = new SuggestIndex();
+        for (Book b : listAllBooks()) {
+            index.put(b, () -> downloads.getOrDefault(b.getIsbn(), 0));
+        }
+        return index;
+    }
+
+    // pas encore chargé (ou moteur en mémoire, jamais chargé) : rien à tenir à jour
+    private void onSuggestIndex(Consumer<SuggestIndex> change) {
+        SuggestIndex index = suggestIndex;
+        if (index != null) change.accept(index);
+    }
+
+    /* =====================================================
+     *  FILTRE DES ISBN
+     * ===================================================== */
+
+    // recherche de la forme canonique (Isbn.lookupKey, jamais d'exception sur une clé de
+    // contrôle fausse), puis de la forme reçue pour les lignes enregistrées avant la normalisation
+    private Book findBook(String isbn) {
+        String key = Isbn.lookupKey(isbn);
+        Book b = findBookByKey(key);
+        if (b == null && !key.equals(isbn)) b = findBookByKey(isbn);
+        return b;
+    }
+
+    // moteur précédé du filtre : un ISBN inconnu (faute de frappe, robot) ne va pas en base
+    private Book findBookByKey(String isbn) {
+        isbnLookups.incrementAndGet();
+        if (!isbnFilter().mightContain(isbn)) {
+            isbnDefiniteMisses.incrementAndGet();
+            return null;
+        }
+        try {
+            return catalog.getBook(isbn);
+        } catch (BookNotFoundException e) {
+            isbnFalsePositives.incrementAndGet();
+            return null;
+        }
+    }
+
+    private CuckooFilter isbnFilter() {
+        CuckooFilter filter = isbnFilter;
+        if (filter != null) return filter;
+        synchronized (isbnFilterLock) {
+            if (isbnFilter == null) {
+                List<String> isbns = catalog.listIsbns();
+                // de la marge pour les ajouts à venir avant d'avoir à recharger
+                filter = new CuckooFilter(Math.max(1024, 2 * (isbns.size() + pendingIsbns.size())));
+                for (String isbn : isbns) filter.add(isbn);
+                for (String isbn : pendingIsbns) filter.add(isbn);
+                isbnFilter = filter;
+            }
+            return isbnFilter;
+        }
+    }
+
+    // appelé dans la transaction de l'ajout : le filtre connaît l'ISBN avant qu'il soit visible
+    private void rememberIsbn(String isbn) {
+        synchronized (isbnFilterLock) {
+            pendingIsbns.add(isbn);
+            CuckooFilter filter = isbnFilter;
+            if (filter != null && !filter.add(isbn)) {
+                isbnFilter = null; // plein : rechargé plus grand au prochain accès
+            }
+        }
+        txRegistry.registerInterposedSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                pendingIsbns.remove(isbn);
+            }
+        });
+    }
+
+    // retirer une empreinte absente effacerait celle d'un autre ISBN : on ne retire qu'après
+    // le commit, et seulement du filtre qui contenait l'ISBN au moment de la suppression
+    private void forgetIsbnOnCommit(String isbn) {
+        CuckooFilter filter = isbnFilter;
+        if (filter == null) return;
+        txRegistry.registerInterposedSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status != Status.STATUS_COMMITTED) return;
+                synchronized (isbnFilterLock) {
+                    if (isbnFilter == filter) filter.remove(isbn);
+                }
+            }
+        });
+    }
+
+    /**
+     * Métriques du filtre : taux de faux positifs attendu (d'après le remplissage) et observé
+     * (part des ISBN inconnus que le filtre a laissé passer jusqu'à la base).
+     */
+    public Map<String, Object> isbnFilterStats() {
+        CuckooFilter filter = isbnFilter();
+        long misses = isbnDefiniteMisses.get();
+        long falsePositives = isbnFalsePositives.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("isbns", filter.size());
+        stats.put("capacity", filter.capacity());
+        stats.put("lookups", isbnLookups.get());
+        stats.put("definiteMisses", misses);
+        stats.put("falsePositives", falsePositives);
+        stats.put("expectedFalsePositiveRate", filter.expectedFalsePositiveRate());
+        stats.put("observedFalsePositiveRate",
+                misses + falsePositives == 0 ? 0.0 : (double) falsePositives / (misses + falsePositives));
+        return stats;
     }
 
     /* =====================================================
@@ -118,8 +325,7 @@ public class ApplicationState {
 
     @Transactional(Transactional.TxType.SUPPORTS)
     public List<User> findAllUsers() {
-        return em.createQuery("SELECT u FROM User u", User.class)
-                .getResultList();
+        return users.listUsers();
     }
 
     @Transactional(Transactional.TxType.SUPPORTS)
@@ -127,11 +333,7 @@ public class ApplicationState {
         if (userId == null || userId.isBlank()) {
             throw new IllegalArgumentException("ID utilisateur invalide.");
         }
-        User u = em.find(User.class, userId);
-        if (u == null) {
-            throw new UserNotFoundException("Utilisateur introuvable : " + userId);
-        }
-        return u;
+        return users.getUser(userId);
     }
 
     @Transactional(Transactional.TxType.SUPPORTS)
@@ -139,19 +341,7 @@ public class ApplicationState {
         if (email == null || email.isBlank()) {
             throw new IllegalArgumentException("Email invalide.");
         }
-
-        User u = em.createQuery(
-                        "SELECT u FROM User u WHERE LOWER(u.email) = LOWER(:mail)",
-                        User.class)
-                .setParameter("mail", email.toLowerCase())
-                .getResultStream()
-                .findFirst()
-                .orElse(null);
-
-        if (u == null) {
-            throw new UserNotFoundException("Aucun utilisateur trouvé avec cet email.");
-        }
-        return u;
+        return users.getUserByEmail(email);
     }
 
     @Transactional
@@ -159,18 +349,7 @@ public class ApplicationState {
         if (m == null) {
             throw new IllegalArgumentException("Member non fourni.");
         }
-
-        Long count = em.createQuery(
-                        "SELECT COUNT(u) FROM User u WHERE LOWER(u.email) = LOWER(:email)",
-                        Long.class
-                ).setParameter("email", m.getEmail())
-                .getSingleResult();
-
-        if (count > 0) {
-            throw new UserAlreadyExistException("Email déjà utilisé : " + m.getEmail());
-        }
-
-        em.persist(m);
+        users.registerUser(m);
     }
 
     @Transactional
@@ -178,15 +357,15 @@ public class ApplicationState {
         if (newPassword == null || newPassword.isBlank()) {
             throw new IllegalArgumentException("Nouveau mot de passe invalide.");
         }
-        User u = findUserById(userId);
-        u.setPassword(newPassword);
-        // pas besoin de merge, l'entité est gérée
+        findUserById(userId);
+        users.updateUser(userId, null, null, newPassword);
     }
 
     @Transactional
     public void deleteUser(String userId) throws UserNotFoundException {
-        User u = findUserById(userId);
-        em.remove(u);
+        List<Book> downloaded = findUserById(userId).listDownloadedBooks();
+        users.removeUser(userId);
+        onSuggestIndex(index -> downloaded.forEach(b -> index.adjustWeight(b.getIsbn(), -1)));
     }
 
     /* =====================================================
@@ -196,35 +375,37 @@ public class ApplicationState {
     @Transactional(Transactional.TxType.SUPPORTS)
     public List<Book> listDownloads(String userId) throws UserNotFoundException {
         User u = findUserById(userId);
-        return u.listDownloadedBooks(); // ManyToMany gérée par JPA
+        return u.listDownloadedBooks();
     }
 
     @Transactional
     public void addDownload(String userId, String isbn)
             throws UserNotFoundException, BookNotFoundException, BookAlreadyExistException {
 
-        User u = findUserById(userId);
+        findUserById(userId);
 
-        Book b = em.find(Book.class, isbn);
+        Book b = findBook(isbn);
         if (b == null) {
             throw new BookNotFoundException("Livre introuvable : " + isbn);
         }
 
-        u.downloadBook(b); // peut lancer BookAlreadyExistException
+        users.addDownload(userId, b.getIsbn()); // peut lancer BookAlreadyExistException
+        onSuggestIndex(index -> index.adjustWeight(b.getIsbn(), 1));
     }
 
     @Transactional
     public void removeDownload(String userId, String isbn)
             throws UserNotFoundException, BookNotFoundException {
 
-        User u = findUserById(userId);
+        findUserById(userId);
 
-        Book b = em.find(Book.class, isbn);
+        Book b = findBook(isbn);
         if (b == null) {
             throw new BookNotFoundException("Livre introuvable : " + isbn);
         }
 
-        u.removeBook(b);
+        users.removeDownload(userId, b.getIsbn());
+        onSuggestIndex(index -> index.adjustWeight(b.getIsbn(), -1));
     }
 
     @Transactional(Transactional.TxType.SUPPORTS)
@@ -238,13 +419,15 @@ public class ApplicationState {
             return list;
         }
 
-        String t = (title == null) ? "" : title.toLowerCase();
-        String g = (genre == null) ? "" : genre.toLowerCase();
+        // même repli que le catalogue (SearchKey) : "miserables" trouve "Les Misérables".
+        // Quelques titres en String : String.contains suffit, pas besoin de ByteScan
+        String t = (title == null) ? "" : SearchKey.fold(title);
+        String g = (genre == null) ? "" : SearchKey.fold(genre);
 
         return list.stream()
                 .filter(b ->
-                        (t.isBlank() || b.getTitle().toLowerCase().contains(t)) &&
-                                (g.isBlank() || g.equalsIgnoreCase(b.getGenre()))
+                        (t.isBlank() || (b.titleKey() != null && b.titleKey().contains(t))) &&
+                                (g.isBlank() || g.equals(b.genreKey()))
                 )
                 .toList();
     }
@@ -261,121 +444,75 @@ public class ApplicationState {
             throw new IllegalArgumentException("Book non fourni.");
         }
 
-        User user = em.find(User.class, userId);
-        if (user == null || !(user instanceof Admin)) {
-            throw new AccessDeniedException("Seul un administrateur peut ajouter des livres.");
-        }
+        requireAdmin(userId, "Seul un administrateur peut ajouter des livres.");
 
-        if (em.find(Book.class, book.getIsbn()) != null) {
+        if (findBook(book.getIsbn()) != null) {
             throw new BookAlreadyExistException("Livre déjà existant !");
         }
 
-        em.persist(book);
+        catalog.addBook(book);
+        rememberIsbn(book.getIsbn());
+        onSuggestIndex(index -> index.put(book, () -> 0));
     }
 
     @Transactional
     public void removeBook(String userId, String isbn)
             throws AccessDeniedException, BookNotFoundException {
 
-        User admin = em.find(User.class, userId);
-        if (admin == null || !(admin instanceof Admin)) {
-            throw new AccessDeniedException("Seul un administrateur peut supprimer des livres.");
-        }
+        requireAdmin(userId, "Seul un administrateur peut supprimer des livres.");
 
-        Book existing = em.find(Book.class, isbn);
+        Book existing = findBook(isbn);
         if (existing == null) {
             throw new BookNotFoundException("Livre introuvable !");
         }
 
-        // 1) Enlever le livre de tous les téléchargements
-        var users = em.createQuery("""
-                SELECT u FROM User u
-                JOIN u.downloadedBooks b
-                WHERE b.isbn = :isbn
-            """, User.class)
-                .setParameter("isbn", isbn)
-                .getResultList();
-
-        for (User u : users) {
-            u.removeBook(existing);  // met à jour la table de jointure
-        }
-
-        // 2) Supprimer le livre
-        em.remove(existing);
+        // le moteur retire aussi le livre des téléchargements de tous les users
+        String key = existing.getIsbn();
+        catalog.removeBook(key);
+        forgetIsbnOnCommit(key);
+        onSuggestIndex(index -> index.remove(key));
     }
+
     @Transactional
     public User updateProfile(String userId, String newName, String newEmail)
             throws UserNotFoundException, UserAlreadyExistException {
 
-        User u = findUserById(userId);  // entity MANAGÉE
-
-        if (newName != null && !newName.isBlank()) {
-            u.setName(newName);
-        }
-
-        if (newEmail != null && !newEmail.isBlank()) {
-
-            // Vérifier que l'email n'est pas déjà utilisé par un autre user
-            Long count = em.createQuery(
-                            "SELECT COUNT(u2) FROM User u2 " +
-                                    "WHERE LOWER(u2.email) = LOWER(:mail) " +
-                                    "AND u2.userId <> :id",
-                            Long.class)
-                    .setParameter("mail", newEmail.toLowerCase())
-                    .setParameter("id", userId)
-                    .getSingleResult();
-
-            if (count > 0) {
-                throw new UserAlreadyExistException("Email déjà utilisé : " + newEmail);
-            }
-
-            u.setEmail(newEmail);
-        }
-
-        // Pas besoin de em.merge(u) : u est MANAGÉ + @Transactional
-        return u;
+        findUserById(userId);
+        return users.updateUser(userId,
+                newName == null || newName.isBlank() ? null : newName,
+                newEmail == null || newEmail.isBlank() ? null : newEmail,
+                null);
     }
+
     @Transactional
     public void updateBook(String userId, String isbn, Book updated)
             throws AccessDeniedException, BookNotFoundException {
+        updateBook(userId, isbn, updated, null);
+    }
+
+    /**
+     * expectedVersion : version du livre lue par le client (null = pas de contrôle).
+     * Pas de verrou : en base la colonne @Version fait échouer l'écriture si un autre admin a
+     * modifié le livre entre-temps, en mémoire la Library compare les versions ; les deux cas
+     * finissent en StaleBookException.
+     */
+    @Transactional
+    public void updateBook(String userId, String isbn, Book updated, Long expectedVersion)
+            throws AccessDeniedException, BookNotFoundException, StaleBookException {
 
         if (updated == null) {
             throw new IllegalArgumentException("Book mis à jour non fourni.");
         }
 
-        User user = em.find(User.class, userId);
-        if (user == null || !(user instanceof Admin)) {
-            throw new AccessDeniedException("Seul un administrateur peut modifier des livres.");
-        }
+        requireAdmin(userId, "Seul un administrateur peut modifier des livres.");
 
-        Book existing = em.find(Book.class, isbn);
+        Book existing = findBook(isbn);
         if (existing == null) {
             throw new BookNotFoundException("Livre introuvable !");
         }
 
-        if (updated.getTitle() != null && !updated.getTitle().isBlank()) {
-            existing.setTitle(updated.getTitle());
-        }
-        if (updated.getAuthor() != null && !updated.getAuthor().isBlank()) {
-            existing.setAuthor(updated.getAuthor());
-        }
-        if (updated.getGenre() != null && !updated.getGenre().isBlank()) {
-            existing.setGenre(updated.getGenre());
-        }
-        if (updated.getYear() > 0) {
-            existing.setYear(updated.getYear());
-        }
-        if (updated.getPdf() != null && !updated.getPdf().isBlank()) {
-            existing.setPdf(updated.getPdf());
-        }
-        if (updated.getCoverImage() != null && !updated.getCoverImage().isBlank()) {
-            existing.setCoverImage(updated.getCoverImage());
-        }
-        if (updated.isAvailable() != existing.isAvailable()) {
-            existing.setAvailable(updated.isAvailable());
-        }
-
-        em.merge(existing);
+        Book current = catalog.updateBook(existing.getIsbn(), updated, expectedVersion);
+        onSuggestIndex(index -> index.put(current, () -> 0));
     }
 
     /* =====================================================
@@ -393,15 +530,10 @@ public class ApplicationState {
         // S'assure qu'il y a au moins l'admin par défaut en BDD
         ensureDefaultAdminExists();
 
-        User u = em.createQuery(
-                        "SELECT u FROM User u WHERE LOWER(u.email) = :mail",
-                        User.class)
-                .setParameter("mail", email.toLowerCase())
-                .getResultStream()
-                .findFirst()
-                .orElse(null);
-
-        if (u == null) {
+        User u;
+        try {
+            u = users.getUserByEmail(email);
+        } catch (UserNotFoundException e) {
             throw new UserNotFoundException("Utilisateur introuvable pour cet email.");
         }
 
@@ -7,6 +7,7 @@ import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import java.util.List;
+import java.util.Map;
 
 @Path("/admin")
 @Produces(MediaType.APPLICATION_JSON)
@@ -34,6 +35,12 @@ public class AdminResource {
         return state.findAllUsers();
     }
 
+    @GET
+    @Path("/stats/isbn-filter")
+    public Map<String, Object> isbnFilterStats() {
+        return state.isbnFilterStats();
+    }
+
     @POST
     @Path("/books/{userId}")
     @Consumes(MediaType.APPLICATION_JSON)
@@ -72,10 +79,21 @@ public class AdminResource {
     @Consumes(MediaType.APPLICATION_JSON)
     public Response updateBook(@PathParam("userId") String userId,
                                @PathParam("isbn") String isbn,
+                               @HeaderParam("If-Match") String ifMatch,
                                Book updated) {
+        Long expectedVersion;
+        try {
+            // If-Match porte la version lue par le client ("3" ou "\"3\""), absent = sans contrôle
+            expectedVersion = ifMatch == null || ifMatch.isBlank()
+                    ? null : Long.valueOf(ifMatch.replace("\"", "").trim());
+        } catch (NumberFormatException e) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("If-Match invalide : " + ifMatch).build();
+        }
         try {
-            state.updateBook(userId, isbn, updated);
+            state.updateBook(userId, isbn, updated, expectedVersion);
             return Response.noContent().build();
+        } catch (StaleBookException e) {
+            return Response.status(Response.Status.PRECONDITION_FAILED).entity(e.getMessage()).build();
         } catch (AccessDeniedException e) {
             return Response.status(Response.Status.FORBIDDEN).entity(e.getMessage()).build();
         } catch (BookNotFoundException e) {
@@ -53,6 +53,38 @@ public class LibraryResource {
         return state.searchBooksByTitle(title);
     }
 
+    @GET
+    @Path("/books/years")
+    public Response searchByYears(@QueryParam("from") @DefaultValue("0") int from,
+                                  @QueryParam("to") @DefaultValue("9999") int to,
+                                  @QueryParam("order") @DefaultValue("newest") String order,
+                                  @QueryParam("limit") @DefaultValue("50") int limit) {
+        try {
+            boolean newestFirst = !"oldest".equalsIgnoreCase(order);
+            return Response.ok(state.searchBooksByYearRange(from, to, newestFirst, limit)).build();
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(e.getMessage())
+                    .type(MediaType.TEXT_PLAIN)
+                    .build();
+        }
+    }
+
+    @GET
+    @Path("/books/suggest")
+    public Response suggest(@QueryParam("prefix") String prefix,
+                            @QueryParam("limit") @DefaultValue("10") int limit) {
+        if (prefix == null || prefix.isBlank()) return Response.ok(List.of()).build();
+        try {
+            return Response.ok(state.suggestBooks(prefix, limit)).build();
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(e.getMessage())
+                    .type(MediaType.TEXT_PLAIN)
+                    .build();
+        }
+    }
+
     @GET
     @Path("/books/genre/{genre}")
     public List<Book> searchByGenre(@PathParam("genre") String genre) {
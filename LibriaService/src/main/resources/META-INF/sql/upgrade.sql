@@ -0,0 +1,8 @@
+-- Mise à niveau d'une base créée avant le verrou optimiste et l'index des années des livres.
+-- schema-generation=create ne touche pas aux tables existantes : à lancer une seule fois.
+--   docker exec -i libria-mysql mysql -ulibria -plibria libria < upgrade.sql
+
+ALTER TABLE books ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+
+-- recherche par intervalle d'années (searchByYearRange) sans parcourir toute la table
+CREATE INDEX idx_books_year ON books(book_year);